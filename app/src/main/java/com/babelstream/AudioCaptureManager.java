@@ -12,8 +12,8 @@ import android.util.Log;
 public class AudioCaptureManager {
     private static final String TAG = "AudioCaptureManager";
 
-    private AudioRecord audioRecord;
-    private boolean isRecording = false;
+    private volatile AudioRecord audioRecord; // 仅录音线程替换；preferBuiltInMic 在其他线程读取
+    private volatile boolean isRecording = false;
     private Thread recordingThread;
     private AudioDataCallback callback;
 
@@ -25,10 +25,13 @@ public class AudioCaptureManager {
     private int bufferSize;
     private long lastLevelLogTs = 0L;
     // 重采样到请求采样率（如实际为48k而请求为16k，则在回调前重采样）
-    private Resampler resampler = null;
-    private short[] shortBuf = null;
-    private short[] resampleOut = null;
-    // 动态自适应：音源/采样率候选与当前位置
+    private PolyphaseResampler resampler = null;
+    private int resampleQuality = PolyphaseResampler.QUALITY_MEDIUM;
+    // 回调帧池：稳态下循环复用，不再每个缓冲分配 byte[]
+    private final AudioFrame.Pool framePool = new AudioFrame.Pool(4096, 16);
+    // 采集时刻与丢帧检测（仅录音线程使用）
+    private final CaptureClock clock = new CaptureClock();
+    // 动态自适应：音源/采样率候选与当前位置（启动后仅录音线程读写）
     private final int[] sourceCandidates = new int[] {
             MediaRecorder.AudioSource.VOICE_COMMUNICATION,
             MediaRecorder.AudioSource.MIC,
@@ -39,14 +42,47 @@ public class AudioCaptureManager {
     private int currentSourceIndex = -1;
     private java.util.List<Integer> rateCandidates = new java.util.ArrayList<>();
     private int currentRateIndex = -1;
-    // 静音检测与自动切换
+    // 零数据检测与自动切换：连续全零（音源被占用/静音的典型表现）超过窗口才试探下一个组合，
+    // 每次因此切换后窗口加倍，确认出声后复位；普通安静环境（有底噪）不会触发
     private long silentSinceMs = 0L;
-    private static final int SILENCE_LEVEL_THRESHOLD = 1; // 0-100
-    private static final long SILENCE_WINDOW_MS = 2000;   // 连续静音2秒触发切换
-    private boolean reconfiguring = false;
-
+    private static final long SILENCE_WINDOW_MS = 2000;
+    private static final long SILENCE_WINDOW_MAX_MS = 60000;
+    private long silenceWindowMs = SILENCE_WINDOW_MS;
+    private static final int VOICED_LEVEL = 2;             // 0-100，累计确认出声的电平下限
+    private static final int MAX_READ_ERRORS = 3;         // 连续读取错误（每次都会重开录音）超过此数放弃
+    // 切换请求：任意线程提交，录音线程在帧边界处理——先接后断：旧录音继续采集，新录音初始化成功后
+    // 排空旧录音已缓冲的数据，再启动新录音、释放旧录音，切换不留空档；
+    // 部分 HAL 不允许两个录音并存，此时退回先释放再打开，并记住本机不再尝试并存
+    private static final class SwitchRequest {
+        final boolean nextCombination;
+        final String reason;
+
+        SwitchRequest(boolean nextCombination, String reason) {
+            this.nextCombination = nextCombination;
+            this.reason = reason;
+        }
+    }
+    private final java.util.concurrent.atomic.AtomicReference<SwitchRequest> switchRequest = new java.util.concurrent.atomic.AtomicReference<>();
+    private static final int MAX_DRAIN_READS = 8;          // 交接时排空旧录音的非阻塞读取次数上限
+    private boolean concurrentOpenRejected = false;        // 仅录音线程读写
+    private AudioRecord handoffRecord = null;              // 交接中的旧录音：新录音启动前先排空（仅录音线程）
+    private short[] handoffBuffer = null;
+    private android.media.AudioDeviceCallback deviceCallback;
+    // 调用方要求优先内置麦克风：切换后的新录音同样应用
+    private volatile android.content.Context preferBuiltInContext = null;
+    // 能力缓存：按 机型/输入路由 记住确认有声的（音源, 采样率）组合，下次启动直接使用，免去逐个试探与静音切换
+    private ConfigManager capabilityStore;
+    private android.content.Context appContext;
+    private volatile String routeKey = null;
+    private int[] cachedCapability = null;   // {source, rate}
+    private boolean capabilityConfirmed = false;
+    private long voicedSamples = 0L;
+    private long startNs = 0L;
+    private static final int CONFIRM_VOICED_MS = 300;     // 累计有声 300ms 视为该组合可用
+
+    // 回调交出帧的所有权：接收方用完必须调用 frame.release()
     public interface AudioDataCallback {
-        void onAudioData(byte[] data, int length);
+        void onAudioData(AudioFrame frame);
         void onError(String error);
     }
 
@@ -61,6 +97,17 @@ public class AudioCaptureManager {
         this.callback = callback;
     }
 
+    // 重采样质量档位（PolyphaseResampler.QUALITY_*），需在 startRecording 前设置
+    public void setResampleQuality(int quality) {
+        this.resampleQuality = quality;
+    }
+
+    // 启用能力缓存（需在 startRecording 前设置）
+    public void setCapabilityCache(android.content.Context ctx, ConfigManager config) {
+        this.appContext = (ctx != null) ? ctx.getApplicationContext() : null;
+        this.capabilityStore = config;
+    }
+
     public boolean startRecording() {
         if (isRecording) {
             Log.w(TAG, "Already recording");
@@ -68,8 +115,16 @@ public class AudioCaptureManager {
         }
 
         try {
-            // 逐个音源 + 采样率回退，提升兼容性（小米/Android 15）
-            audioRecord = buildAudioRecordAny();
+            startNs = System.nanoTime();
+            capabilityConfirmed = false;
+            voicedSamples = 0L;
+            routeKey = resolveRouteKey();
+            // 优先使用本机型/本路由上次确认可用的组合，通常一次初始化即可出声
+            audioRecord = buildAudioRecordCached();
+            if (audioRecord == null) {
+                // 逐个音源 + 采样率回退，提升兼容性（小米/Android 15）；依次探测，同一时刻只持有一个录音
+                audioRecord = buildAudioRecordAny();
+            }
 
             if (audioRecord == null || audioRecord.getState() != AudioRecord.STATE_INITIALIZED) {
                 Log.e(TAG, "AudioRecord initialization failed for all sources");
@@ -87,21 +142,13 @@ public class AudioCaptureManager {
             isRecording = true;
 
             // 若实际采样率与请求不同，则建立重采样器到请求采样率
-            if (actualSampleRate > 0 && requestedSampleRate > 0 && actualSampleRate != requestedSampleRate) {
-                try {
-                    resampler = new Resampler(actualSampleRate, requestedSampleRate);
-                    // 预分配转换用缓冲区
-                    int maxInSamples = Math.max(bufferSize / 2, actualSampleRate / 5); // 粗略估计
-                    shortBuf = new short[maxInSamples];
-                    resampleOut = new short[maxInSamples * requestedSampleRate / Math.max(1, actualSampleRate) + 8];
-                    Log.i(TAG, "Resampling mic from " + actualSampleRate + " to " + requestedSampleRate);
-                } catch (Throwable t) {
-                    Log.w(TAG, "Init resampler failed, keep original rate: " + t.getMessage());
-                    resampler = null;
-                }
-            } else {
-                resampler = null;
-            }
+            setupResampler();
+
+            silenceWindowMs = SILENCE_WINDOW_MS;
+            switchRequest.set(null);
+            registerRouteCallback();
+
+            clock.reset(actualSampleRate, bufferFramesOf(audioRecord));
 
             // 启动录音线程
             recordingThread = new Thread(this::recordingLoop, "MicCaptureThread");
@@ -119,7 +166,39 @@ public class AudioCaptureManager {
         }
     }
 
+    // 按当前实际采样率（重新）建立重采样器；切换音源/采样率后也需调用
+    // 采样率一致时为直通内核，读取循环始终走同一条融合路径
+    private void setupResampler() {
+        int inRate = actualSampleRate > 0 ? actualSampleRate : requestedSampleRate;
+        int outRate = requestedSampleRate > 0 ? requestedSampleRate : inRate;
+        if (inRate <= 0) return;
+        try {
+            if (resampler == null || resampler.getInRate() != inRate || resampler.getOutRate() != outRate) {
+                resampler = new PolyphaseResampler(inRate, outRate, resampleQuality);
+            } else {
+                resampler.reset();
+            }
+            if (!resampler.isPassthrough()) {
+                Log.i(TAG, "Resampling mic from " + inRate + " to " + outRate + ", quality=" + resampleQuality);
+            }
+        } catch (Throwable t) {
+            Log.w(TAG, "Init resampler failed, keep original rate: " + t.getMessage());
+            resampler = new PolyphaseResampler(inRate, inRate, resampleQuality);
+        }
+    }
+
     private AudioRecord buildAudioRecord(int source, int sr) {
+        int[] bufOut = new int[1];
+        AudioRecord ar = openAudioRecord(source, sr, bufOut);
+        if (ar != null) {
+            this.actualSampleRate = sr;
+            this.bufferSize = bufOut[0];
+        }
+        return ar;
+    }
+
+    // 只负责初始化，不修改成员状态
+    private AudioRecord openAudioRecord(int source, int sr, int[] bufOut) {
         try {
             int minBuf = AudioRecord.getMinBufferSize(sr, channelConfig, audioFormat);
             if (minBuf <= 0) return null;
@@ -135,8 +214,7 @@ public class AudioCaptureManager {
                     .setBufferSizeInBytes(buf)
                     .build();
             if (ar.getState() == AudioRecord.STATE_INITIALIZED) {
-                this.actualSampleRate = sr;
-                this.bufferSize = buf;
+                bufOut[0] = buf;
                 return ar;
             }
             try { ar.release(); } catch (Throwable ignore) {}
@@ -147,15 +225,19 @@ public class AudioCaptureManager {
         }
     }
 
-    private AudioRecord buildAudioRecordWithRateFallback(int source) {
-        // 初始化采样率候选：优先 48k/44.1k，再融合请求值/16k，去重
+    // 默认采样率候选：优先 48k/44.1k，再融合请求值/16k，去重
+    private java.util.List<Integer> defaultRateCandidates() {
         java.util.LinkedHashSet<Integer> set = new java.util.LinkedHashSet<>();
         set.add(48000);
         set.add(44100);
         if (requestedSampleRate > 0) set.add(requestedSampleRate);
         set.add(16000);
         set.add(8000);
-        rateCandidates = new java.util.ArrayList<>(set);
+        return new java.util.ArrayList<>(set);
+    }
+
+    private AudioRecord buildAudioRecordWithRateFallback(int source) {
+        rateCandidates = defaultRateCandidates();
         // 遍历候选进行初始化
         int idx = 0;
         for (Integer sr : rateCandidates) {
@@ -183,50 +265,107 @@ public class AudioCaptureManager {
         return null;
     }
 
+    // 按缓存组合直接初始化；失败则清除该条缓存并返回 null，交给完整探测
+    private AudioRecord buildAudioRecordCached() {
+        cachedCapability = (capabilityStore != null && routeKey != null) ? capabilityStore.getMicCapability(routeKey) : null;
+        if (cachedCapability == null) return null;
+        int src = cachedCapability[0];
+        int sr = cachedCapability[1];
+        int srcIdx = -1;
+        for (int i = 0; i < sourceCandidates.length; i++) {
+            if (sourceCandidates[i] == src) { srcIdx = i; break; }
+        }
+        AudioRecord ar = (srcIdx >= 0) ? buildAudioRecord(src, sr) : null;
+        if (ar == null) {
+            Log.w(TAG, "Cached capability unusable: route=" + routeKey + ", source=" + src + ", sr=" + sr);
+            capabilityStore.clearMicCapability(routeKey);
+            cachedCapability = null;
+            return null;
+        }
+        rateCandidates = defaultRateCandidates();
+        int rateIdx = rateCandidates.indexOf(sr);
+        if (rateIdx < 0) { rateCandidates.add(0, sr); rateIdx = 0; }
+        currentSourceIndex = srcIdx;
+        currentRateIndex = rateIdx;
+        Log.i(TAG, "AudioRecord from capability cache: route=" + routeKey + ", source=" + src + ", sr=" + sr + ", buffer=" + bufferSize);
+        return ar;
+    }
 
-    // 优先路由到内置麦克风，避免外设/蓝牙抢占
+    // 预测本次录音的输入路由：有线/USB 耳麦及已连接的蓝牙 SCO 优先于内置麦克风（与系统默认路由一致）
+    private String resolveRouteKey() {
+        if (appContext == null) return null;
+        int type = android.media.AudioDeviceInfo.TYPE_BUILTIN_MIC;
+        try {
+            android.media.AudioManager am = (android.media.AudioManager) appContext.getSystemService(android.content.Context.AUDIO_SERVICE);
+            if (am != null) {
+                for (android.media.AudioDeviceInfo dev : am.getDevices(android.media.AudioManager.GET_DEVICES_INPUTS)) {
+                    int t = dev.getType();
+                    if (t == android.media.AudioDeviceInfo.TYPE_WIRED_HEADSET
+                            || t == android.media.AudioDeviceInfo.TYPE_USB_HEADSET
+                            || t == android.media.AudioDeviceInfo.TYPE_USB_DEVICE) {
+                        type = t;
+                        break;
+                    }
+                    if (t == android.media.AudioDeviceInfo.TYPE_BLUETOOTH_SCO && am.isBluetoothScoOn()) {
+                        type = t;
+                    }
+                }
+            }
+        } catch (Throwable ignore) {}
+        return android.os.Build.MODEL + "/" + type;
+    }
+
+    // 当前组合已确认有声：记录首个可用音频的耗时，并写入能力缓存（与已缓存值一致时不重复写）
+    private void confirmCapability() {
+        capabilityConfirmed = true;
+        silenceWindowMs = SILENCE_WINDOW_MS;
+        long ms = (System.nanoTime() - startNs) / 1_000_000L;
+        int src = (currentSourceIndex >= 0) ? sourceCandidates[currentSourceIndex] : -1;
+        int routed = 0;
+        try {
+            android.media.AudioDeviceInfo dev = audioRecord.getRoutedDevice();
+            if (dev != null) routed = dev.getType();
+        } catch (Throwable ignore) {}
+        Log.i(TAG, "Capture confirmed " + ms + "ms after start: source=" + src + ", sr=" + actualSampleRate + ", routed=" + routed + ", route=" + routeKey);
+        if (capabilityStore == null || routeKey == null || src < 0) return;
+        if (cachedCapability != null && cachedCapability[0] == src && cachedCapability[1] == actualSampleRate) return;
+        capabilityStore.setMicCapability(routeKey, src, actualSampleRate);
+        cachedCapability = new int[] { src, actualSampleRate };
+    }
+
+
+    // 优先路由到内置麦克风，避免外设/蓝牙抢占；之后切换音源/采样率时对新录音同样生效
     public void preferBuiltInMic(android.content.Context ctx) {
-        if (audioRecord == null) return;
+        if (ctx == null) return;
+        preferBuiltInContext = ctx.getApplicationContext();
+        applyPreferredDevice(audioRecord);
+    }
+
+    private void applyPreferredDevice(AudioRecord ar) {
+        android.content.Context ctx = preferBuiltInContext;
+        if (ar == null || ctx == null) return;
         try {
             android.media.AudioManager am = (android.media.AudioManager) ctx.getSystemService(android.content.Context.AUDIO_SERVICE);
             if (am == null) return;
             for (android.media.AudioDeviceInfo dev : am.getDevices(android.media.AudioManager.GET_DEVICES_INPUTS)) {
                 if (dev.getType() == android.media.AudioDeviceInfo.TYPE_BUILTIN_MIC) {
-                    try { audioRecord.setPreferredDevice(dev); } catch (Throwable ignore) {}
+                    try { ar.setPreferredDevice(dev); } catch (Throwable ignore) {}
                     break;
                 }
             }
         } catch (Throwable ignore) {}
     }
 
-
-    
-
-    // 计算16bit PCM电平：dBFS(-60..0) 映射到 0-100（仅用于日志观察）
-    private int calcLevelPercent(byte[] data, int length) {
-        if (data == null || length < 2) return 0;
-        long sum = 0;
-        int samples = 0;
-        for (int i = 0; i + 1 < length; i += 2) {
-            int lo = data[i] & 0xFF;
-            int hi = data[i + 1];
-            int sample = (hi << 8) | lo;
-            sum += (long) sample * (long) sample;
-            samples++;
+    private void recordingLoop() {
+        // 采集线程只负责读取、重采样成帧并交出，分析/分发在下游阶段线程完成
+        try {
+            android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_URGENT_AUDIO);
+        } catch (Throwable t) {
+            Log.w(TAG, "setThreadPriority failed: " + t.getMessage());
         }
-        if (samples == 0) return 0;
-        double mean = (double) sum / samples;
-        double rms = Math.sqrt(mean);
-        double rmsNorm = Math.max(1e-9, rms / 32768.0);
-        double dbfs = 20.0 * Math.log10(rmsNorm);
-        double clamped = Math.max(-60.0, Math.min(0.0, dbfs));
-        int level = (int) Math.round((clamped + 60.0) / 60.0 * 100.0);
-        if (level < 0) level = 0; if (level > 100) level = 100;
-        return level;
-    }
-
-private void recordingLoop() {
-        byte[] buffer = new byte[bufferSize];
+        // 直接按 short 读取（本机字节序），省去 bytes -> short 转换
+        short[] buffer = new short[Math.max(1, bufferSize / 2)];
+        int readErrors = 0;
 
         while (isRecording) {
             int readSize;
@@ -238,171 +377,313 @@ private void recordingLoop() {
             }
 
             if (readSize > 0) {
+                readErrors = 0;
+                AudioFrame frame = toFrame(audioRecord, buffer, readSize, System.nanoTime());
+
                 // 每秒打印一次电平，便于在 AudioCaptureManager 下观察
                 long now = System.currentTimeMillis();
-                int lvl = calcLevelPercent(buffer, readSize);
+                int lvl = frame.level;
                 if (now - lastLevelLogTs > 1000) {
                     Log.i(TAG, "level=" + lvl);
                     lastLevelLogTs = now;
                 }
-                // 静音检测：连续静音超过窗口则尝试切换下一个组合
-                if (lvl <= SILENCE_LEVEL_THRESHOLD) {
+                // 零数据检测：连续全零超过窗口则在本帧交付后试探下一个组合
+                if (frame.sumSquares == 0L) {
                     if (silentSinceMs == 0L) silentSinceMs = now;
-                    if (!reconfiguring && (now - silentSinceMs) >= SILENCE_WINDOW_MS) {
-                        trySwitchNextCombination();
-                        silentSinceMs = 0L; // 重置计时
-                        // 继续下一轮读取
-                        continue;
+                    if ((now - silentSinceMs) >= silenceWindowMs) {
+                        requestSwitch(true, "zero data " + silenceWindowMs + "ms");
+                        silentSinceMs = 0L;
+                        silenceWindowMs = Math.min(SILENCE_WINDOW_MAX_MS, silenceWindowMs * 2);
                     }
                 } else {
                     silentSinceMs = 0L;
+                    if (!capabilityConfirmed && lvl >= VOICED_LEVEL) {
+                        voicedSamples += frame.length;
+                        if (voicedSamples * 1000L >= (long) CONFIRM_VOICED_MS * frame.sampleRate) confirmCapability();
+                    }
                 }
                 if (callback != null) {
-                    if (resampler != null) {
-                        // bytes -> short（小端）
-                        int inSamples = Math.min(readSize / 2, shortBuf.length);
-                        for (int i = 0; i < inSamples; i++) {
-                            int lo = buffer[i * 2] & 0xFF;
-                            int hi = buffer[i * 2 + 1] << 8;
-                            shortBuf[i] = (short) (hi | lo);
-                        }
-                        int outSamples = resampler.process(shortBuf, inSamples, resampleOut);
-                        int outBytes = outSamples * 2;
-                        byte[] out = new byte[outBytes];
-                        for (int i = 0; i < outSamples; i++) {
-                            out[i * 2] = (byte) (resampleOut[i] & 0xFF);
-                            out[i * 2 + 1] = (byte) ((resampleOut[i] >> 8) & 0xFF);
-                        }
-                        callback.onAudioData(out, out.length);
-                    } else {
-                        // 原样回调
-                        callback.onAudioData(buffer, readSize);
+                    callback.onAudioData(frame);
+                } else {
+                    frame.release();
+                }
+                SwitchRequest req = switchRequest.getAndSet(null);
+                if (req != null) {
+                    if (!switchRecord(req.nextCombination, req.reason, buffer)) {
+                        if (callback != null) callback.onError("音频采集切换失败");
+                        break;
                     }
+                    if (buffer.length < bufferSize / 2) buffer = new short[bufferSize / 2];
                 }
             } else if (readSize < 0) {
+                // 读取错误（如音频服务重启导致 ERROR_DEAD_OBJECT）：按当前组合重开，连续失败才放弃
                 Log.e(TAG, "Audio read error: " + readSize);
-                if (callback != null) {
-                    callback.onError("音频读取错误");
+                if (++readErrors > MAX_READ_ERRORS || !switchRecord(false, "read error " + readSize, buffer)) {
+                    if (callback != null) {
+                        callback.onError("音频读取错误");
+                    }
+                    break;
                 }
-                break;
+                if (buffer.length < bufferSize / 2) buffer = new short[bufferSize / 2];
             }
         }
     }
 
+    // 融合内核：重采样（或直通）直接写入池化帧，同一趟循环累加平方和
+    private AudioFrame toFrame(AudioRecord ar, short[] buffer, int readSize, long readTs) {
+        PolyphaseResampler rs = resampler;
+        AudioFrame frame = framePool.acquire(rs.maxOutput(readSize));
+        frame.length = rs.processInterleaved(buffer, readSize, 1, frame.samples);
+        frame.sumSquares = rs.lastSumSquares();
+        frame.sampleRate = rs.getOutRate();
+        frame.captureTimeNs = clock.onRead(ar, readSize, readTs);
+        frame.level = LevelMeter.percentFromSumSquares(frame.sumSquares, frame.length);
+        return frame;
+    }
 
-    // 在录音线程内调用：切换到下一个（音源,采样率）组合
-    private void trySwitchNextCombination() {
-        if (reconfiguring) return;
-        reconfiguring = true;
-        try {
-            int startSourceIdx = currentSourceIndex < 0 ? 0 : currentSourceIndex;
-            int startRateIdx = currentRateIndex < 0 ? 0 : currentRateIndex;
+    // 交接时把旧录音已缓冲的数据读空（非阻塞）并照常交出；不做静音/出声判断，当前组合已指向新录音
+    private void drain(AudioRecord ar, short[] buffer) {
+        for (int i = 0; i < MAX_DRAIN_READS; i++) {
+            int n;
+            try {
+                n = ar.read(buffer, 0, buffer.length, AudioRecord.READ_NON_BLOCKING);
+            } catch (Throwable t) {
+                return;
+            }
+            if (n <= 0) return;
+            AudioFrame frame = toFrame(ar, buffer, n, System.nanoTime());
+            if (callback != null) {
+                callback.onAudioData(frame);
+            } else {
+                frame.release();
+            }
+        }
+    }
 
-            int srcIdx = startSourceIdx;
-            int rateIdx = startRateIdx + 1; // 从下一个采样率开始
+    // 请求切换录音（任意线程调用）：nextCombination=true 试探下一个（音源,采样率）组合，
+    // 否则按当前组合重建（路由变化后由系统按新默认设备路由）。由录音线程在下一帧边界执行；
+    // 未执行前的重复请求合并，试探下一个组合的请求优先
+    private void requestSwitch(boolean nextCombination, String reason) {
+        if (!isRecording) return;
+        SwitchRequest req = new SwitchRequest(nextCombination, reason);
+        for (;;) {
+            SwitchRequest cur = switchRequest.get();
+            if (cur != null && cur.nextCombination && !nextCombination) return;
+            if (switchRequest.compareAndSet(cur, req)) break;
+        }
+        Log.i(TAG, "AudioRecord switch requested: " + reason);
+    }
 
-            // 若可获得当前路由设备的支持采样率，优先采用其列表
+    // 录音线程内调用：先在旧录音仍采集时打开新组合，排空旧录音后启动新录音再释放旧录音；
+    // 打不开时释放旧录音后按同样顺序重试。全部失败时回到原组合，仍失败返回 false
+    private boolean switchRecord(boolean nextCombination, String reason, short[] buffer) {
+        final AudioRecord old = audioRecord;
+        final int srcIdx = currentSourceIndex < 0 ? 0 : currentSourceIndex;
+        final int rateIdx = currentRateIndex < 0 ? 0 : currentRateIndex;
+        final int curRate = actualSampleRate;
+        java.util.List<Integer> rates = new java.util.ArrayList<>(rateCandidates);
+        int[] devRates = null;
+        try {
+            android.media.AudioDeviceInfo curDev = (old != null) ? old.getRoutedDevice() : null;
+            if (curDev != null) devRates = curDev.getSampleRates();
+        } catch (Throwable ignore) {}
+        AudioRecord ar = null;
+        if (old != null && !concurrentOpenRejected) {
+            handoffRecord = old;
+            handoffBuffer = buffer;
             try {
-                android.media.AudioDeviceInfo curDev = (audioRecord != null) ? audioRecord.getRoutedDevice() : null;
-                if (curDev != null) {
-                    int[] devRates = curDev.getSampleRates();
-                    if (devRates != null && devRates.length > 0) {
-                        java.util.LinkedHashSet<Integer> set = new java.util.LinkedHashSet<>();
-                        for (int r : devRates) if (r > 0) set.add(r);
-                        // 追加常见采样率作为兜底
-                        set.add(48000);
-                        set.add(44100);
-                        if (requestedSampleRate > 0) set.add(requestedSampleRate);
-                        set.add(16000);
-                        set.add(8000);
-                        java.util.ArrayList<Integer> newList = new java.util.ArrayList<>(set);
-                        // 计算“当前采样率”在新列表中的位置
-                        int currentRate = (currentRateIndex >= 0 && currentRateIndex < rateCandidates.size())
-                                ? rateCandidates.get(currentRateIndex)
-                                : actualSampleRate;
-                        int idxInNew = newList.indexOf(currentRate);
-                        rateCandidates = newList;
-                        if (idxInNew >= 0) {
-                            rateIdx = idxInNew + 1; // 从当前的下一个开始
-                        }
-                    }
+                ar = openForSwitch(nextCombination, srcIdx, rateIdx, curRate, rates, devRates);
+            } finally {
+                handoffRecord = null;
+                handoffBuffer = null;
+            }
+        }
+        if (ar == null) {
+            // 不能与旧录音并存（或本机已知不支持）：排空并释放旧录音后再打开，中间有一段空档
+            if (old != null) drain(old, buffer);
+            audioRecord = null;
+            releaseQuietly(old);
+            boolean triedConcurrent = old != null && !concurrentOpenRejected;
+            ar = openForSwitch(nextCombination, srcIdx, rateIdx, curRate, rates, devRates);
+            if (ar != null && triedConcurrent) {
+                concurrentOpenRejected = true;
+                Log.w(TAG, "Second AudioRecord rejected while the first was open; switching sequentially from now on");
+            }
+        } else {
+            releaseQuietly(old);
+        }
+        if (ar == null) {
+            Log.e(TAG, "Switch (" + reason + ") failed: no usable AudioRecord");
+            return false;
+        }
+        audioRecord = ar;
+        applyPreferredDevice(ar);
+        setupResampler(); // 采样率可能已变化
+        clock.reset(actualSampleRate, bufferFramesOf(ar));
+        String routed = "";
+        try {
+            android.media.AudioDeviceInfo dev = ar.getRoutedDevice();
+            if (dev != null) routed = ", routedDevice=" + dev.getType() + "/" + dev.getProductName();
+        } catch (Throwable ignore) {}
+        Log.i(TAG, "Switched (" + reason + ") to source=" + sourceCandidates[currentSourceIndex] + ", sr=" + actualSampleRate + routed);
+        lastLevelLogTs = 0L; // 立刻打印新路径的 level
+        capabilityConfirmed = false; // 新组合出声后再写入缓存
+        voicedSamples = 0L;
+        return true;
+    }
+
+    private AudioRecord openForSwitch(boolean nextCombination, int srcIdx, int rateIdx, int curRate,
+                                      java.util.List<Integer> rates, int[] devRates) {
+        AudioRecord ar = null;
+        if (!nextCombination) ar = openStarted(srcIdx, rateIdx, curRate, rates);
+        if (ar == null) ar = openNextCombination(srcIdx, rateIdx, rates, curRate, devRates);
+        if (ar == null && nextCombination) {
+            Log.w(TAG, "No other combination works; reopening current one");
+            ar = openStarted(srcIdx, rateIdx, curRate, rates);
+        }
+        return ar;
+    }
+
+    // 录音线程内调用：初始化并启动一个组合，成功后更新当前组合（采样率、缓冲、候选位置）；
+    // 交接中则在启动前排空旧录音，旧录音的数据接上新录音的第一帧
+    private AudioRecord openStarted(int srcIdx, int rateIdx, int sr, java.util.List<Integer> rates) {
+        AudioRecord ar = buildAudioRecord(sourceCandidates[srcIdx], sr);
+        if (ar == null) return null;
+        if (handoffRecord != null) drain(handoffRecord, handoffBuffer);
+        try {
+            ar.startRecording();
+        } catch (Throwable t) {
+            Log.w(TAG, "startRecording failed: source=" + sourceCandidates[srcIdx] + ", sr=" + sr, t);
+            releaseQuietly(ar);
+            return null;
+        }
+        currentSourceIndex = srcIdx;
+        currentRateIndex = rateIdx;
+        rateCandidates = rates;
+        return ar;
+    }
+
+    // 录音线程内调用：从当前组合之后依次试探下一个（音源,采样率）组合
+    private AudioRecord openNextCombination(int startSourceIdx, int startRateIdx, java.util.List<Integer> rates,
+                                            int currentRate, int[] devRates) {
+        int srcIdx = startSourceIdx;
+        int rateIdx = startRateIdx + 1; // 从下一个采样率开始
+
+        // 若可获得当前路由设备的支持采样率，优先采用其列表
+        if (devRates != null && devRates.length > 0) {
+            java.util.LinkedHashSet<Integer> set = new java.util.LinkedHashSet<>();
+            for (int r : devRates) if (r > 0) set.add(r);
+            // 追加常见采样率作为兜底
+            set.addAll(defaultRateCandidates());
+            java.util.ArrayList<Integer> newList = new java.util.ArrayList<>(set);
+            // 计算“当前采样率”在新列表中的位置
+            int idxInNew = newList.indexOf(currentRate);
+            rates = newList;
+            if (idxInNew >= 0) {
+                rateIdx = idxInNew + 1; // 从当前的下一个开始
+            }
+        }
+
+        int maxAttempts = Math.max(1, sourceCandidates.length * Math.max(rates.size(), 1));
+        int attempts = 0;
+
+        while (attempts++ < maxAttempts && isRecording) {
+            if (rateIdx >= rates.size()) {
+                // 进入下一个音源，重建默认候选采样率
+                srcIdx = (srcIdx + 1) % sourceCandidates.length;
+                rates = defaultRateCandidates();
+                rateIdx = 0;
+                if (srcIdx == startSourceIdx) {
+                    // 已经完整绕一圈
+                    break;
                 }
-            } catch (Throwable ignore) {}
+                continue;
+            }
 
-            int maxAttempts = Math.max(1, sourceCandidates.length * Math.max(rateCandidates.size(), 1));
-            int attempts = 0;
-
-            while (attempts++ < maxAttempts && isRecording) {
-                int src = sourceCandidates[srcIdx];
-
-                if (rateIdx >= rateCandidates.size()) {
-                    // 进入下一个音源，重建默认候选采样率
-                    srcIdx = (srcIdx + 1) % sourceCandidates.length;
-                    java.util.LinkedHashSet<Integer> set = new java.util.LinkedHashSet<>();
-                    set.add(48000);
-                    set.add(44100);
-                    if (requestedSampleRate > 0) set.add(requestedSampleRate);
-                    set.add(16000);
-                    set.add(8000);
-                    rateCandidates = new java.util.ArrayList<>(set);
-                    rateIdx = 0;
-                    if (srcIdx == startSourceIdx && rateIdx == 0) {
-                        // 已经完整绕一圈
-                        break;
-                    }
-                    continue;
+            int sr = rates.get(rateIdx);
+            Log.i(TAG, "Switch try source=" + sourceCandidates[srcIdx] + ", sr=" + sr);
+            AudioRecord ar = openStarted(srcIdx, rateIdx, sr, rates);
+            if (ar != null) return ar;
+
+            // 尝试下一个采样率
+            rateIdx++;
+        }
+        return null;
+    }
+
+    // 输入设备插拔（有线/USB/蓝牙耳麦）时按当前组合重建录音，走系统新的默认路由
+    private void registerRouteCallback() {
+        if (appContext == null || deviceCallback != null) return;
+        try {
+            android.media.AudioManager am = (android.media.AudioManager) appContext.getSystemService(android.content.Context.AUDIO_SERVICE);
+            if (am == null) return;
+            deviceCallback = new android.media.AudioDeviceCallback() {
+                private boolean primed = false;
+
+                @Override
+                public void onAudioDevicesAdded(android.media.AudioDeviceInfo[] added) {
+                    // 注册时系统会先回调一次当前已有设备，忽略
+                    if (!primed) { primed = true; return; }
+                    if (hasInput(added)) onInputRouteChanged("input added");
                 }
 
-                int sr = rateCandidates.get(rateIdx);
-                Log.i(TAG, "Reconfiguring... try source=" + src + ", sr=" + sr);
-                AudioRecord newAR = buildAudioRecord(src, sr);
-                if (newAR != null && newAR.getState() == AudioRecord.STATE_INITIALIZED) {
-                    try { if (audioRecord != null) audioRecord.stop(); } catch (Throwable ignore) {}
-                    try { if (audioRecord != null) audioRecord.release(); } catch (Throwable ignore) {}
-                    audioRecord = newAR;
-                    actualSampleRate = sr;
-                    currentSourceIndex = srcIdx;
-                    currentRateIndex = rateIdx;
-                    try { audioRecord.startRecording(); } catch (Throwable t) {
-                        Log.w(TAG, "startRecording after reconfig failed", t);
-                        try { audioRecord.release(); } catch (Throwable ignore) {}
-                        audioRecord = null;
-                        rateIdx++;
-                        continue;
-                    }
-                    // 打印路由设备
-                    try {
-                        android.media.AudioDeviceInfo dev = audioRecord.getRoutedDevice();
-                        if (dev != null) {
-                            Log.i(TAG, "Switched to source=" + src + ", sr=" + sr + ", routedDevice=" + dev.getType() + "/" + dev.getProductName());
-                        } else {
-                            Log.i(TAG, "Switched to source=" + src + ", sr=" + sr);
-                        }
-                    } catch (Throwable ignore) {
-                        Log.i(TAG, "Switched to source=" + src + ", sr=" + sr);
-                    }
-                    lastLevelLogTs = 0L; // 立刻打印新路径的 level
-                    return; // 切换成功
+                @Override
+                public void onAudioDevicesRemoved(android.media.AudioDeviceInfo[] removed) {
+                    if (hasInput(removed)) onInputRouteChanged("input removed");
                 }
+            };
+            am.registerAudioDeviceCallback(deviceCallback, null);
+        } catch (Throwable t) {
+            deviceCallback = null;
+            Log.w(TAG, "register AudioDeviceCallback failed", t);
+        }
+    }
 
-                // 尝试下一个采样率
-                rateIdx++;
-            }
+    private void unregisterRouteCallback() {
+        if (appContext == null || deviceCallback == null) return;
+        try {
+            android.media.AudioManager am = (android.media.AudioManager) appContext.getSystemService(android.content.Context.AUDIO_SERVICE);
+            if (am != null) am.unregisterAudioDeviceCallback(deviceCallback);
+        } catch (Throwable ignore) {}
+        deviceCallback = null;
+    }
 
-            Log.w(TAG, "Reconfiguring exhausted combinations; keep current path");
+    private static boolean hasInput(android.media.AudioDeviceInfo[] devices) {
+        if (devices == null) return false;
+        for (android.media.AudioDeviceInfo d : devices) {
+            if (d != null && d.isSource()) return true;
+        }
+        return false;
+    }
+
+    private void onInputRouteChanged(String why) {
+        if (!isRecording) return;
+        routeKey = resolveRouteKey();
+        Log.i(TAG, "Input route changed (" + why + "), route=" + routeKey);
+        requestSwitch(false, why);
+    }
+
+    private int bufferFramesOf(AudioRecord ar) {
+        try {
+            return ar.getBufferSizeInFrames();
         } catch (Throwable t) {
-            Log.w(TAG, "trySwitchNextCombination error", t);
-        } finally {
-            reconfiguring = false;
+            return bufferSize / 2;
         }
     }
 
+    private static void releaseQuietly(AudioRecord ar) {
+        if (ar == null) return;
+        try { ar.stop(); } catch (Throwable ignore) {}
+        try { ar.release(); } catch (Throwable ignore) {}
+    }
+
     public void stopRecording() {
         if (!isRecording) {
             return;
         }
 
         isRecording = false;
+        unregisterRouteCallback();
 
         if (recordingThread != null) {
             try {
@@ -412,6 +693,7 @@ private void recordingLoop() {
             }
         }
 
+        switchRequest.set(null);
         if (audioRecord != null) {
             try { audioRecord.stop(); } catch (Throwable ignore) {}
             try { audioRecord.release(); } catch (Throwable ignore) {}
@@ -425,6 +707,9 @@ private void recordingLoop() {
         return isRecording;
     }
 
+    /** 采集丢帧/读取延迟摘要（诊断用） */
+    public String captureStats() { return clock.summary(); }
+
     public int getSampleRate() { return (actualSampleRate > 0) ? actualSampleRate : requestedSampleRate; }
 
     // 输出给识别器的采样率（若发生重采样，则为请求采样率）
@@ -432,30 +717,4 @@ private void recordingLoop() {
         if (actualSampleRate > 0 && requestedSampleRate > 0 && actualSampleRate != requestedSampleRate) return requestedSampleRate;
         return getSampleRate();
     }
-
-    // 简单重采样器（最近邻/累积步进），与 PlaybackCaptureManager 的实现保持一致
-    static class Resampler {
-        private final int inRate;
-        private final int outRate;
-        private final double step;
-        private double pos = 0;
-
-        Resampler(int inRate, int outRate) {
-            this.inRate = inRate;
-            this.outRate = outRate;
-            this.step = (double) inRate / outRate;
-        }
-
-        int process(short[] input, int inSamples, short[] output) {
-            int outCount = 0;
-            while (pos < inSamples && outCount < output.length) {
-                int idx = (int) pos;
-                output[outCount++] = input[idx];
-                pos += step;
-            }
-            pos -= inSamples;
-            if (pos < 0) pos = 0; // 防御
-            return outCount;
-        }
-    }
 }
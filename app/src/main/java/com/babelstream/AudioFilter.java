@@ -0,0 +1,20 @@
+package com.babelstream;
+
+/**
+ * 预处理滤波级（见 FilterChain）
+ * - 在链路提供的 float 工作区上原地处理，样本为 int16 量纲，中间结果允许越界，由链路末端统一截断
+ * - 实现内部不在 process 中分配内存；状态只属于一路音频流
+ */
+interface AudioFilter {
+    /** 诊断名（用于耗时统计） */
+    String name();
+
+    /** 原地处理 n 个样本 */
+    void process(float[] buf, int n);
+
+    /** 清除内部状态（如切换输入设备后） */
+    void reset();
+
+    /** 输出相对输入的延迟（样本数），FilterChain 据此前移帧的采集时刻 */
+    default int latencySamples() { return 0; }
+}
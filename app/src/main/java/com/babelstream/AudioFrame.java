@@ -0,0 +1,84 @@
+package com.babelstream;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 采集端与识别服务之间传递的一帧 PCM16 单声道音频（池化复用）
+ * - samples/length：样本数据与有效样本数
+ * - sampleRate：samples 的采样率（重采样后的输出采样率）
+ * - captureTimeNs：该帧首个样本的采集时刻（System.nanoTime 时基）
+ * - sumSquares/level：生成样本时顺带累加的平方和及对应电平（0-100），见 LevelMeter
+ * - source：来源（AudioMixer.SOURCE_*），双路采集时由识别服务在入队前标记
+ * 所有权约定：采集端通过回调交出帧后，接收方用完必须调用 release()；
+ * 若需交给多个下游并行使用，先 retain() 再分别 release()，计数归零后回到帧池。
+ */
+public final class AudioFrame {
+    public short[] samples;
+    public int length;
+    public int sampleRate;
+    public long captureTimeNs;
+    public long sumSquares;
+    public int level;
+    public int source;
+
+    private final Pool pool;
+    private final AtomicInteger refs = new AtomicInteger(0);
+
+    private AudioFrame(Pool pool, int capacity) {
+        this.pool = pool;
+        this.samples = new short[capacity];
+    }
+
+    /** 额外持有一次引用 */
+    public AudioFrame retain() {
+        refs.incrementAndGet();
+        return this;
+    }
+
+    /** 释放一次引用；归零后回收到帧池 */
+    public void release() {
+        if (refs.decrementAndGet() == 0 && pool != null) pool.recycle(this);
+    }
+
+    /**
+     * 定容帧池：空闲帧放在有界队列中，acquire/recycle 不产生垃圾；
+     * 池空时才新建帧（仅在启动或下游积压时发生），池满时多余的帧交给 GC。
+     */
+    public static final class Pool {
+        private final ArrayBlockingQueue<AudioFrame> free;
+        private final int defaultCapacity;
+        private final AtomicInteger allocated = new AtomicInteger(0);
+
+        public Pool(int frameCapacity, int maxPooled) {
+            this.defaultCapacity = Math.max(1, frameCapacity);
+            this.free = new ArrayBlockingQueue<>(Math.max(1, maxPooled));
+        }
+
+        /** 取一帧，保证容量不小于 minSamples，引用计数为 1 */
+        public AudioFrame acquire(int minSamples) {
+            AudioFrame f = free.poll();
+            if (f == null) {
+                f = new AudioFrame(this, Math.max(defaultCapacity, minSamples));
+                allocated.incrementAndGet();
+            } else if (f.samples.length < minSamples) {
+                f.samples = new short[minSamples];
+            }
+            f.length = 0;
+            f.sampleRate = 0;
+            f.captureTimeNs = 0L;
+            f.sumSquares = 0L;
+            f.level = 0;
+            f.source = 0;
+            f.refs.set(1);
+            return f;
+        }
+
+        /** 累计新建的帧数（稳态下应不再增长） */
+        public int allocatedCount() { return allocated.get(); }
+
+        private void recycle(AudioFrame f) {
+            free.offer(f);
+        }
+    }
+}
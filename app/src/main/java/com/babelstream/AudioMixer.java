@@ -0,0 +1,198 @@
+package com.babelstream;
+
+/**
+ * 麦克风 + 系统音频 双路汇合
+ * - 两路帧均带采集时刻（System.nanoTime 时基，见 CaptureClock），换算到同一采样时间轴上对齐
+ * - MODE_MIX：按时间轴逐样本相加（饱和截断）合成一路；一路迟迟无数据时最多等待 MAX_WAIT_MS，之后按静音补齐，
+ *   另一路不会因此被卡住；时间戳跳变超过容差的缺口补零，小抖动视为连续
+ * - MODE_DUAL：不混音，逐帧原样转交，由上层分别送入两个识别会话（“我”/“对方”）
+ * 仅在单一线程（音频阶段线程）上调用；稳态下混音只做一次加法与拷贝，输出帧来自帧池。
+ */
+public final class AudioMixer {
+    public static final int SOURCE_MIC = 0;
+    public static final int SOURCE_PLAYBACK = 1;
+    public static final int SOURCE_MIXED = 2;
+
+    public static final int MODE_MIX = 0;   // 混成一路送入一个识别会话
+    public static final int MODE_DUAL = 1;  // 两路分别送入 "me"/"them" 两个会话
+
+    private static final int MAX_WAIT_MS = 150;      // 一路无数据时的最长等待
+    private static final int GAP_TOLERANCE_MS = 20;  // 时间戳抖动容差
+    private static final int MAX_GAP_FILL_MS = 500;  // 单次缺口最多补零
+    private static final int LANE_CAPACITY_MS = 2000;
+    private static final int MAX_OUT_SAMPLES = 4096;
+
+    /** 输出回调：帧仅在回调期间有效，由混音器负责释放 */
+    public interface Sink {
+        void onFrame(int source, AudioFrame frame);
+    }
+
+    // 单路 FIFO：环形样本 + 首样本在时间轴上的位置
+    private static final class Lane {
+        final short[] buf;
+        int head = 0;
+        int count = 0;
+        long headIdx = 0L;
+        boolean started = false;
+
+        Lane(int capacity) { buf = new short[capacity]; }
+
+        long end() { return headIdx + count; }
+
+        int sampleAt(long idx) {
+            long off = idx - headIdx;
+            if (off < 0 || off >= count) return 0;
+            return buf[(int) ((head + off) % buf.length)];
+        }
+
+        void append(short[] s, int off, int n) {
+            int cap = buf.length;
+            if (n > cap) { off += n - cap; headIdx += count + (n - cap); head = 0; count = 0; n = cap; }
+            int overflow = count + n - cap;
+            if (overflow > 0) consume(overflow); // 积压超过容量：丢最旧
+            int tail = (head + count) % cap;
+            int first = Math.min(n, cap - tail);
+            System.arraycopy(s, off, buf, tail, first);
+            if (first < n) System.arraycopy(s, off + first, buf, 0, n - first);
+            count += n;
+        }
+
+        void appendZeros(int n) {
+            int cap = buf.length;
+            n = Math.min(n, cap);
+            int overflow = count + n - cap;
+            if (overflow > 0) consume(overflow);
+            int tail = (head + count) % cap;
+            int first = Math.min(n, cap - tail);
+            java.util.Arrays.fill(buf, tail, tail + first, (short) 0);
+            if (first < n) java.util.Arrays.fill(buf, 0, n - first, (short) 0);
+            count += n;
+        }
+
+        void consume(int n) {
+            n = Math.min(n, count);
+            head = (head + n) % buf.length;
+            count -= n;
+            headIdx += n;
+        }
+
+        // 丢弃时间轴上早于 idx 的样本（迟到数据）
+        void dropBefore(long idx) {
+            if (idx <= headIdx) return;
+            long n = idx - headIdx;
+            if (n >= count) {
+                head = 0;
+                count = 0;
+                headIdx = idx;
+            } else {
+                consume((int) n);
+            }
+        }
+    }
+
+    private final int mode;
+    private final int sampleRate;
+    private final Sink sink;
+    private final Lane[] lanes;
+    private final AudioFrame.Pool pool;
+    private final int maxWait;
+    private final int gapTolerance;
+    private final int maxGapFill;
+    private long baseNs = 0L;             // 时间轴原点
+    private long outIdx = Long.MIN_VALUE; // 下一个输出样本在时间轴上的位置
+
+    public AudioMixer(int mode, int sampleRate, Sink sink) {
+        this.mode = mode;
+        this.sampleRate = sampleRate > 0 ? sampleRate : 16000;
+        this.sink = sink;
+        int laneCap = this.sampleRate * LANE_CAPACITY_MS / 1000;
+        this.lanes = new Lane[] { new Lane(laneCap), new Lane(laneCap) };
+        this.pool = new AudioFrame.Pool(MAX_OUT_SAMPLES, 8);
+        this.maxWait = this.sampleRate * MAX_WAIT_MS / 1000;
+        this.gapTolerance = this.sampleRate * GAP_TOLERANCE_MS / 1000;
+        this.maxGapFill = this.sampleRate * MAX_GAP_FILL_MS / 1000;
+    }
+
+    public int getMode() { return mode; }
+
+    /** 送入一帧（不转移所有权，调用方仍负责释放） */
+    public void push(int source, AudioFrame frame) {
+        if (frame == null || frame.length <= 0 || source < 0 || source >= lanes.length) return;
+        if (mode == MODE_DUAL) {
+            sink.onFrame(source, frame);
+            return;
+        }
+        Lane lane = lanes[source];
+        long idx = toIndex(lane, frame.captureTimeNs);
+        if (!lane.started) {
+            lane.started = true;
+            lane.headIdx = idx;
+            lane.count = 0;
+            lane.head = 0;
+        } else {
+            long gap = idx - lane.end();
+            if (gap > gapTolerance) lane.appendZeros((int) Math.min(gap, maxGapFill));
+        }
+        lane.append(frame.samples, 0, frame.length);
+        if (outIdx != Long.MIN_VALUE) lane.dropBefore(outIdx);
+        mix();
+    }
+
+    private void mix() {
+        Lane a = lanes[SOURCE_MIC];
+        Lane b = lanes[SOURCE_PLAYBACK];
+        if (outIdx == Long.MIN_VALUE) {
+            if (a.started && b.started) {
+                outIdx = Math.min(a.headIdx, b.headIdx);
+            } else {
+                Lane only = a.started ? a : b;
+                // 另一路尚未开始：等待至多 maxWait 再单独输出
+                if (only.count < maxWait) return;
+                outIdx = only.headIdx;
+            }
+        }
+        for (;;) {
+            long endA = a.started ? a.end() : Long.MIN_VALUE;
+            long endB = b.started ? b.end() : Long.MIN_VALUE;
+            long hi = Math.max(endA, endB);
+            long lo = Math.min(a.started ? endA : hi, b.started ? endB : hi);
+            long target = Math.max(lo, hi - maxWait);
+            int n = (int) Math.min(MAX_OUT_SAMPLES, target - outIdx);
+            if (n <= 0) return;
+            AudioFrame out = pool.acquire(n);
+            short[] s = out.samples;
+            long sum = 0;
+            for (int i = 0; i < n; i++) {
+                long t = outIdx + i;
+                int v = a.sampleAt(t) + b.sampleAt(t);
+                if (v > Short.MAX_VALUE) v = Short.MAX_VALUE; else if (v < Short.MIN_VALUE) v = Short.MIN_VALUE;
+                s[i] = (short) v;
+                sum += (long) v * v;
+            }
+            out.length = n;
+            out.sampleRate = sampleRate;
+            out.captureTimeNs = baseNs != 0L ? baseNs + outIdx * 1_000_000_000L / sampleRate : 0L;
+            out.sumSquares = sum;
+            out.level = LevelMeter.percentFromSumSquares(sum, n);
+            out.source = SOURCE_MIXED;
+            outIdx += n;
+            a.dropBefore(outIdx);
+            b.dropBefore(outIdx);
+            try {
+                sink.onFrame(SOURCE_MIXED, out);
+            } finally {
+                out.release();
+            }
+        }
+    }
+
+    // 采集时刻 → 时间轴位置；时刻未知（0）时按样本数接在该路已有数据之后，不作为时间轴原点
+    private long toIndex(Lane lane, long ns) {
+        if (ns == 0L) {
+            if (lane.started) return lane.end();
+            return outIdx != Long.MIN_VALUE ? outIdx : 0L;
+        }
+        if (baseNs == 0L) baseNs = ns;
+        return (ns - baseNs) * sampleRate / 1_000_000_000L;
+    }
+}
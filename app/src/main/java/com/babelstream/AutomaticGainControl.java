@@ -0,0 +1,67 @@
+package com.babelstream;
+
+/**
+ * 自动增益控制
+ * - 以 10ms 块测量 RMS，并跟踪底噪电平；块电平低于绝对门限或未高出底噪 FLOOR_MARGIN_DB 时保持增益不动，
+ *   避免在停顿期间把底噪放大
+ * - 目标电平 TARGET_DBFS；需要降低时快速（2dB/块），需要提高时缓慢（10dB/s），增益限制在 [MIN_GAIN_DB, MAX_GAIN_DB]
+ * - 块内增益线性插值，避免阶跃造成的“拉链”噪声
+ */
+final class AutomaticGainControl implements AudioFilter {
+    private static final float TARGET_DBFS = -20f;
+    private static final float GATE_DBFS = -50f;
+    private static final float FLOOR_MARGIN_DB = 10f;
+    private static final float FLOOR_RISE_DB_PER_SEC = 3f;
+    private static final float MAX_GAIN_DB = 30f;
+    private static final float MIN_GAIN_DB = -10f;
+    private static final float DOWN_DB_PER_BLOCK = 2f;
+    private static final float UP_DB_PER_SEC = 10f;
+
+    private final int block;
+    private final float upPerBlock;
+    private final float floorRisePerBlock;
+    private float floorDb = GATE_DBFS;
+    private float gainDb = 0f;
+    private float gain = 1f;
+
+    AutomaticGainControl(int sampleRate) {
+        int sr = sampleRate > 0 ? sampleRate : 16000;
+        block = Math.max(1, sr / 100);
+        upPerBlock = UP_DB_PER_SEC * block / sr;
+        floorRisePerBlock = FLOOR_RISE_DB_PER_SEC * block / sr;
+    }
+
+    @Override public String name() { return "agc"; }
+
+    @Override public void process(float[] buf, int n) {
+        for (int b = 0; b < n; b += block) {
+            int end = Math.min(n, b + block);
+            double sum = 0.0;
+            for (int i = b; i < end; i++) sum += (double) buf[i] * buf[i];
+            double meanSq = sum / (end - b);
+            if (meanSq > 0.0) {
+                float db = (float) (10.0 * Math.log10(meanSq / (32768.0 * 32768.0)));
+                floorDb = db < floorDb ? db : floorDb + floorRisePerBlock;
+                if (db > GATE_DBFS && db > floorDb + FLOOR_MARGIN_DB) {
+                    float target = Math.max(MIN_GAIN_DB, Math.min(MAX_GAIN_DB, TARGET_DBFS - db));
+                    if (target < gainDb) gainDb = Math.max(target, gainDb - DOWN_DB_PER_BLOCK);
+                    else gainDb = Math.min(target, gainDb + upPerBlock);
+                }
+            }
+            float next = (float) Math.pow(10.0, gainDb / 20.0);
+            float step = (next - gain) / (end - b);
+            float g = gain;
+            for (int i = b; i < end; i++) {
+                g += step;
+                buf[i] *= g;
+            }
+            gain = next;
+        }
+    }
+
+    @Override public void reset() {
+        gainDb = 0f;
+        gain = 1f;
+        floorDb = GATE_DBFS;
+    }
+}
@@ -0,0 +1,101 @@
+package com.babelstream;
+
+import android.media.AudioRecord;
+import android.media.AudioTimestamp;
+import android.util.Log;
+
+/**
+ * 采集时钟：为每个读取块推算首个样本的真实采集时刻，并检测 HAL/客户端缓冲溢出造成的丢帧
+ * - 优先用 AudioRecord.getTimestamp(MONOTONIC)：得到（服务端帧位置, 采集时刻）对，
+ *   按已读帧数换算本块首帧的采集时刻；同时可知“已采集但尚未读出”的帧数，超出录音缓冲容量的部分即为丢帧
+ * - 不支持时退化为 帧计数 + 单调时钟：以首块为锚点推算应采集帧数，落后超过缓冲容量视为丢帧；
+ *   若读出快于推算（时钟漂移），前移锚点
+ * - 时间基准与 System.nanoTime 一致；丢帧后本块的位置按已知丢帧数修正
+ * 仅在采集线程内使用。
+ */
+final class CaptureClock {
+    private static final String TAG = "CaptureClock";
+
+    private final AudioTimestamp ts = new AudioTimestamp();
+    private int sampleRate = 48000;
+    private int bufferFrames = 0;
+    private long framesRead = 0L;   // 已读出的帧数
+    private long lostFrames = 0L;   // 检测到的丢帧数
+    private long overrunEvents = 0L;
+    private long anchorNs = 0L;     // 退化模式：第 0 帧的推算采集时刻
+    private boolean useTimestamp = true;
+    private long lastLatencyNs = 0L; // 读出完成时刻 - 本块末帧采集时刻
+
+    /** 开始采集或切换到新的 AudioRecord 时调用（位置从 0 重新计） */
+    void reset(int sampleRate, int bufferFrames) {
+        this.sampleRate = sampleRate > 0 ? sampleRate : 48000;
+        this.bufferFrames = Math.max(0, bufferFrames);
+        this.framesRead = 0L;
+        this.lostFrames = 0L;
+        this.anchorNs = 0L;
+        this.useTimestamp = true;
+    }
+
+    /**
+     * 记录一次读取（frames 为每声道帧数，readDoneNs 为 read 返回时刻），返回本块首帧的采集时刻。
+     */
+    long onRead(AudioRecord record, int frames, long readDoneNs) {
+        long pos0 = framesRead;
+        framesRead += frames;
+        long slack = Math.max(frames, bufferFrames / 4);
+        if (useTimestamp) {
+            int ret;
+            try {
+                ret = record.getTimestamp(ts, AudioTimestamp.TIMEBASE_MONOTONIC);
+            } catch (Throwable t) {
+                ret = AudioRecord.ERROR_INVALID_OPERATION;
+            }
+            if (ret == AudioRecord.SUCCESS && ts.nanoTime > 0) {
+                // 读出完成时服务端已采集的帧数；减去已读与已知丢失，剩余为仍在缓冲中的帧
+                long captured = ts.framePosition + framesFromNs(readDoneNs - ts.nanoTime);
+                long unread = captured - framesRead - lostFrames;
+                if (bufferFrames > 0 && unread > bufferFrames + slack) reportLost(unread - bufferFrames);
+                long startNs = ts.nanoTime + nsFromFrames(pos0 + lostFrames - ts.framePosition);
+                lastLatencyNs = readDoneNs - (startNs + nsFromFrames(frames));
+                return startNs;
+            }
+            // 设备不支持（如部分 HAL），此后改用帧计数
+            useTimestamp = false;
+            Log.i(TAG, "getTimestamp unavailable (ret=" + ret + "), fallback to frame counter");
+        }
+        if (anchorNs == 0L) anchorNs = readDoneNs - nsFromFrames(framesRead);
+        long expected = framesFromNs(readDoneNs - anchorNs);
+        long behind = expected - framesRead - lostFrames;
+        if (behind < 0) {
+            anchorNs += nsFromFrames(behind); // 读出超前于推算：时钟漂移，前移锚点
+        } else if (bufferFrames > 0 && behind > bufferFrames + slack) {
+            reportLost(behind - bufferFrames);
+        }
+        long startNs = anchorNs + nsFromFrames(pos0 + lostFrames);
+        lastLatencyNs = readDoneNs - (startNs + nsFromFrames(frames));
+        return startNs;
+    }
+
+    long lostFrames() { return lostFrames; }
+
+    long overrunEvents() { return overrunEvents; }
+
+    /** 累计丢帧时长（毫秒） */
+    long lostMs() { return lostFrames * 1000L / sampleRate; }
+
+    String summary() {
+        return "captureLost=" + lostMs() + "ms/" + overrunEvents + "x, readLatency=" + (lastLatencyNs / 1_000_000L)
+                + "ms, clock=" + (useTimestamp ? "timestamp" : "counter");
+    }
+
+    private void reportLost(long frames) {
+        lostFrames += frames;
+        overrunEvents++;
+        Log.w(TAG, "capture overrun: lost " + frames + " frames (" + (frames * 1000L / sampleRate) + "ms), total="
+                + lostMs() + "ms");
+    }
+
+    private long framesFromNs(long ns) { return ns * sampleRate / 1_000_000_000L; }
+
+    private long nsFromFrames(long frames) { return frames * 1_000_000_000L / sampleRate; }
+}
@@ -32,8 +32,43 @@ public class ConfigManager {
     private static final String KEY_OVERLAY_WIDTH_PX = "overlay_width_px";       // px, -1=未保存
     private static final String KEY_OVERLAY_FONT_TRANSLATION_PX = "overlay_font_translation_px"; // px, -1=未保存
     private static final String KEY_OVERLAY_FONT_TRANSCRIPT_PX = "overlay_font_transcript_px";   // px, -1=未保存
-    private static final String KEY_AUDIO_SOURCE = "audio_source";               // playback|mic
+    private static final String KEY_AUDIO_SOURCE = "audio_source";               // playback|mic|both
+    private static final String KEY_BOTH_MODE = "both_mode";                     // 双路采集：0=混音单会话,1=我/对方双会话
+    private static final String KEY_AEC_ENABLED = "aec_enabled";                 // 麦克风回声消除（以系统音频为参考）
+    private static final String KEY_AEC_TAIL_MS = "aec_tail_ms";                 // 回声消除滤波器尾长
+    private static final String KEY_FILTER_HIGHPASS = "filter_highpass";         // 预处理：高通/去直流
+    private static final String KEY_FILTER_HIGHPASS_HZ = "filter_highpass_hz";   // 高通截止频率
+    private static final String KEY_FILTER_NOISE = "filter_noise_suppress";      // 预处理：谱减降噪
+    private static final String KEY_FILTER_AGC = "filter_agc";                   // 预处理：自动增益
+    private static final String KEY_FILTER_LIMITER = "filter_limiter";           // 预处理：峰值限幅
+    private static final String KEY_CAPTURE_SCOPE = "capture_scope";             // 系统音频捕获范围，见 CAPTURE_SCOPE_*
+    private static final String KEY_CAPTURE_PACKAGES = "capture_packages";       // 逗号分隔的应用包名
+    private static final String KEY_CAPTURE_EXTRA_USAGES = "capture_extra_usages"; // 额外捕获 未知/无障碍 用途
+    private static final String KEY_PAUSE_WITHOUT_PLAYBACK = "pause_without_playback"; // 系统无播放时暂停捕获
     private static final String KEY_WS_ENDPOINT = "ws_endpoint";                 // 可选：自定义Realtime WS地址
+    private static final String KEY_UPLINK_CODEC = "uplink_codec";               // 0=PCM,1=Opus（SDK 内编码）
+    private static final String KEY_ADAPTIVE_UPLINK = "adaptive_uplink";         // 弱网时自动改用 Opus 降低上传码率
+    private static final String KEY_WARM_STANDBY = "warm_standby";               // 打开界面时预热识别会话
+    private static final String KEY_RESAMPLE_QUALITY = "resample_quality";       // 0=低,1=中,2=高
+    private static final String KEY_VAD_MODE = "vad_mode";                       // 0=关闭,1=保活,2=挂起
+    private static final String KEY_VAD_HANGOVER_MS = "vad_hangover_ms";         // 语音结束后的拖尾
+    private static final String KEY_VAD_PREROLL_MS = "vad_preroll_ms";           // 语音开始前补发的前导
+    private static final String KEY_VAD_KEEPALIVE_MS = "vad_keepalive_ms";       // 非语音期间保活帧间隔
+    private static final String KEY_DIALOG_SUSPEND_MS = "dialog_suspend_after_ms"; // 静默多久后挂起云端会话，0=不挂起
+    private static final String KEY_RECOGNIZER_BUFFER_MS = "recognizer_buffer_ms"; // 识别器取数缓冲时长
+    private static final String KEY_OVERFLOW_POLICY = "overflow_policy";         // 0=丢最旧,1=先丢非语音,2=压缩静音追赶
+    private static final String KEY_LATENCY_BUDGET_MS = "latency_budget_ms";     // 识别器积压的延迟预算
+    private static final String KEY_MIC_CAP_PREFIX = "mic_cap_";                 // + 机型/输入路由 → "source:rate"
+
+    // 上行音频编码（nls_config.sr_format）
+    public static final int UPLINK_CODEC_PCM = 0;   // 原始 16bit PCM（约 256kbit/s@16kHz）
+    public static final int UPLINK_CODEC_OPUS = 1;  // SDK 内置 Opus 编码，20ms 一帧
+
+    // 系统音频捕获范围
+    public static final int CAPTURE_SCOPE_ALL = 0;      // 所有可捕获的应用
+    public static final int CAPTURE_SCOPE_INCLUDE = 1;  // 仅列表中的应用
+    public static final int CAPTURE_SCOPE_EXCLUDE = 2;  // 排除列表中的应用
+    public static final int CAPTURE_SCOPE_FOLLOW = 3;   // 跟随正在播放的前台媒体应用（列表中的应用始终排除）
 
     private final SharedPreferences prefs;
 
@@ -93,6 +128,71 @@ public class ConfigManager {
         prefs.edit().putInt(KEY_SAMPLE_RATE, sampleRate).apply();
     }
 
+    // ========== 重采样质量 ==========
+    // 0=低(省电) 1=中(默认) 2=高(阻带更深)，对应 PolyphaseResampler.QUALITY_*
+    public int getResampleQuality() {
+        return prefs.getInt(KEY_RESAMPLE_QUALITY, PolyphaseResampler.QUALITY_MEDIUM);
+    }
+
+    public void setResampleQuality(int quality) {
+        int q = Math.max(PolyphaseResampler.QUALITY_LOW, Math.min(PolyphaseResampler.QUALITY_HIGH, quality));
+        prefs.edit().putInt(KEY_RESAMPLE_QUALITY, q).apply();
+    }
+
+    // ========== 语音活动门限（VAD） ==========
+    // 0=关闭(全部上传) 1=保活(非语音仅发稀疏保活帧) 2=挂起(非语音暂停上传)，对应 VoiceActivityGate.MODE_*
+    public int getVadMode() {
+        return prefs.getInt(KEY_VAD_MODE, VoiceActivityGate.MODE_KEEPALIVE);
+    }
+
+    public void setVadMode(int mode) {
+        int m = Math.max(VoiceActivityGate.MODE_OFF, Math.min(VoiceActivityGate.MODE_SUSPEND, mode));
+        prefs.edit().putInt(KEY_VAD_MODE, m).apply();
+    }
+
+    // 拖尾须覆盖服务端断句静音并留出一帧余量：门限先于服务端空闲，句尾要等下一次保活/语音才能断句
+    static final int MIN_VAD_HANGOVER_MS = SdkGummyClient.MAX_END_SILENCE_MS + 200;
+
+    public int getVadHangoverMs() { return Math.max(MIN_VAD_HANGOVER_MS, prefs.getInt(KEY_VAD_HANGOVER_MS, MIN_VAD_HANGOVER_MS)); }
+    public void setVadHangoverMs(int ms) { prefs.edit().putInt(KEY_VAD_HANGOVER_MS, Math.max(0, Math.min(5000, ms))).apply(); }
+
+    public int getVadPreRollMs() { return prefs.getInt(KEY_VAD_PREROLL_MS, 300); }
+    public void setVadPreRollMs(int ms) { prefs.edit().putInt(KEY_VAD_PREROLL_MS, Math.max(0, Math.min(2000, ms))).apply(); }
+
+    // 前导缓冲与 VAD 共用 vad_preroll_ms；识别器取数缓冲按毫秒配置，约 8 秒（16kHz 下约 256KB）
+    public int getRecognizerBufferMs() { return prefs.getInt(KEY_RECOGNIZER_BUFFER_MS, 8000); }
+    public void setRecognizerBufferMs(int ms) { prefs.edit().putInt(KEY_RECOGNIZER_BUFFER_MS, Math.max(500, Math.min(30000, ms))).apply(); }
+
+    public int getOverflowPolicy() {
+        return prefs.getInt(KEY_OVERFLOW_POLICY, SdkGummyClient.OVERFLOW_CATCH_UP);
+    }
+
+    public void setOverflowPolicy(int policy) {
+        int p = Math.max(SdkGummyClient.OVERFLOW_DROP_OLDEST, Math.min(SdkGummyClient.OVERFLOW_CATCH_UP, policy));
+        prefs.edit().putInt(KEY_OVERFLOW_POLICY, p).apply();
+    }
+
+    public int getLatencyBudgetMs() { return prefs.getInt(KEY_LATENCY_BUDGET_MS, 1500); }
+    public void setLatencyBudgetMs(int ms) { prefs.edit().putInt(KEY_LATENCY_BUDGET_MS, Math.max(200, Math.min(10000, ms))).apply(); }
+
+    public int getVadKeepAliveMs() { return prefs.getInt(KEY_VAD_KEEPALIVE_MS, 500); }
+    public void setVadKeepAliveMs(int ms) { prefs.edit().putInt(KEY_VAD_KEEPALIVE_MS, Math.max(100, Math.min(10000, ms))).apply(); }
+
+    public int getUplinkCodec() { return prefs.getInt(KEY_UPLINK_CODEC, UPLINK_CODEC_PCM); }
+    public void setUplinkCodec(int codec) {
+        prefs.edit().putInt(KEY_UPLINK_CODEC, codec == UPLINK_CODEC_OPUS ? UPLINK_CODEC_OPUS : UPLINK_CODEC_PCM).apply();
+    }
+
+    public boolean isAdaptiveUplink() { return prefs.getBoolean(KEY_ADAPTIVE_UPLINK, false); }
+    public void setAdaptiveUplink(boolean enabled) { prefs.edit().putBoolean(KEY_ADAPTIVE_UPLINK, enabled).apply(); }
+
+    public boolean isWarmStandbyEnabled() { return prefs.getBoolean(KEY_WARM_STANDBY, true); }
+    public void setWarmStandbyEnabled(boolean enabled) { prefs.edit().putBoolean(KEY_WARM_STANDBY, enabled).apply(); }
+
+    // 长时间静默（VAD 空闲或无播放暂停）后挂起云端会话；需开启 VAD 或无播放暂停才会生效
+    public int getDialogSuspendAfterMs() { return prefs.getInt(KEY_DIALOG_SUSPEND_MS, 30000); }
+    public void setDialogSuspendAfterMs(int ms) { prefs.edit().putInt(KEY_DIALOG_SUSPEND_MS, ms <= 0 ? 0 : Math.max(5000, Math.min(600000, ms))).apply(); }
+
     // ========== 翻译设置 ==========
     public boolean isTranslationEnabled() {
         return prefs.getBoolean(KEY_TRANSLATION_ENABLED, true);
@@ -195,17 +295,121 @@ public class ConfigManager {
     // ========== 音频输入源 ==========
     // playback = 系统音频 (AudioPlaybackCapture，需要 MediaProjection)
     // mic       = 麦克风 (AudioRecord)
+    // both      = 两者同时采集（会议/视频通话），见 AudioMixer
     public String getAudioSource() {
         return prefs.getString(KEY_AUDIO_SOURCE, "playback");
     }
 
     public void setAudioSource(String source) {
-        if (!"mic".equals(source)) source = "playback";
+        if (!"mic".equals(source) && !"both".equals(source)) source = "playback";
         prefs.edit().putString(KEY_AUDIO_SOURCE, source).apply();
     }
 
     public boolean isAudioSourceMic() { return "mic".equals(getAudioSource()); }
-    public boolean isAudioSourcePlayback() { return !isAudioSourceMic(); }
+    public boolean isAudioSourcePlayback() { return "playback".equals(getAudioSource()); }
+    public boolean isAudioSourceBoth() { return "both".equals(getAudioSource()); }
+
+    /** 是否需要采集麦克风（mic 或 both） */
+    public boolean usesMicCapture() { return !isAudioSourcePlayback(); }
+
+    /** 是否需要屏幕捕获授权采集系统音频（playback、both，或开启回声消除的 mic） */
+    public boolean usesPlaybackCapture() { return !isAudioSourceMic() || isAecEnabled(); }
+
+    /** 系统音频是否必需：mic + 回声消除时仅作参考，未授权则不做回声消除继续识别 */
+    public boolean requiresPlaybackCapture() { return !isAudioSourceMic(); }
+
+    public int getBothMode() { return prefs.getInt(KEY_BOTH_MODE, AudioMixer.MODE_MIX); }
+    public void setBothMode(int mode) {
+        int m = Math.max(AudioMixer.MODE_MIX, Math.min(AudioMixer.MODE_DUAL, mode));
+        prefs.edit().putInt(KEY_BOTH_MODE, m).apply();
+    }
+
+    // ========== 回声消除 ==========
+    // 麦克风采集时以系统音频捕获作为远端参考，消除扬声器外放被麦克风拾取的回声（见 EchoCanceller）
+    public boolean isAecEnabled() { return prefs.getBoolean(KEY_AEC_ENABLED, false); }
+    public void setAecEnabled(boolean enabled) { prefs.edit().putBoolean(KEY_AEC_ENABLED, enabled).apply(); }
+
+    public int getAecTailMs() { return prefs.getInt(KEY_AEC_TAIL_MS, 64); }
+    public void setAecTailMs(int ms) { prefs.edit().putInt(KEY_AEC_TAIL_MS, Math.max(16, Math.min(256, ms))).apply(); }
+
+    // ========== 系统音频捕获范围 ==========
+    public int getCaptureScope() { return prefs.getInt(KEY_CAPTURE_SCOPE, CAPTURE_SCOPE_ALL); }
+    public void setCaptureScope(int scope) {
+        int s = Math.max(CAPTURE_SCOPE_ALL, Math.min(CAPTURE_SCOPE_FOLLOW, scope));
+        prefs.edit().putInt(KEY_CAPTURE_SCOPE, s).apply();
+    }
+
+    public String getCapturePackages() { return prefs.getString(KEY_CAPTURE_PACKAGES, ""); }
+    public void setCapturePackages(String packages) {
+        prefs.edit().putString(KEY_CAPTURE_PACKAGES, packages == null ? "" : packages.trim()).apply();
+    }
+
+    /** 包名列表（逗号/空白分隔，去重） */
+    public java.util.Set<String> getCapturePackageSet() {
+        java.util.Set<String> set = new java.util.LinkedHashSet<>();
+        for (String p : getCapturePackages().split("[,\\s]+")) {
+            if (!p.isEmpty()) set.add(p);
+        }
+        return set;
+    }
+
+    public boolean isCaptureExtraUsages() { return prefs.getBoolean(KEY_CAPTURE_EXTRA_USAGES, false); }
+    public void setCaptureExtraUsages(boolean enabled) { prefs.edit().putBoolean(KEY_CAPTURE_EXTRA_USAGES, enabled).apply(); }
+
+    /** 系统无匹配播放时暂停系统音频捕获并让识别会话进入低功耗空闲（见 PlaybackActivityMonitor） */
+    public boolean isPauseWithoutPlayback() { return prefs.getBoolean(KEY_PAUSE_WITHOUT_PLAYBACK, true); }
+    public void setPauseWithoutPlayback(boolean enabled) { prefs.edit().putBoolean(KEY_PAUSE_WITHOUT_PLAYBACK, enabled).apply(); }
+
+    /** 要捕获的音频用途：媒体、游戏，可选 未知 与 无障碍 */
+    public int[] getCaptureUsages() {
+        if (!isCaptureExtraUsages()) {
+            return new int[] { android.media.AudioAttributes.USAGE_MEDIA, android.media.AudioAttributes.USAGE_GAME };
+        }
+        return new int[] { android.media.AudioAttributes.USAGE_MEDIA, android.media.AudioAttributes.USAGE_GAME,
+                android.media.AudioAttributes.USAGE_UNKNOWN, android.media.AudioAttributes.USAGE_ASSISTANCE_ACCESSIBILITY };
+    }
+
+    // ========== 预处理滤波链 ==========
+    // 各级可按设备单独开关（见 FilterChain），耗时见诊断日志 "filters:"
+    public boolean isHighPassEnabled() { return prefs.getBoolean(KEY_FILTER_HIGHPASS, true); }
+    public void setHighPassEnabled(boolean enabled) { prefs.edit().putBoolean(KEY_FILTER_HIGHPASS, enabled).apply(); }
+
+    public int getHighPassHz() { return prefs.getInt(KEY_FILTER_HIGHPASS_HZ, 80); }
+    public void setHighPassHz(int hz) { prefs.edit().putInt(KEY_FILTER_HIGHPASS_HZ, Math.max(20, Math.min(300, hz))).apply(); }
+
+    public boolean isNoiseSuppressionEnabled() { return prefs.getBoolean(KEY_FILTER_NOISE, false); }
+    public void setNoiseSuppressionEnabled(boolean enabled) { prefs.edit().putBoolean(KEY_FILTER_NOISE, enabled).apply(); }
+
+    public boolean isAgcEnabled() { return prefs.getBoolean(KEY_FILTER_AGC, false); }
+    public void setAgcEnabled(boolean enabled) { prefs.edit().putBoolean(KEY_FILTER_AGC, enabled).apply(); }
+
+    public boolean isLimiterEnabled() { return prefs.getBoolean(KEY_FILTER_LIMITER, true); }
+    public void setLimiterEnabled(boolean enabled) { prefs.edit().putBoolean(KEY_FILTER_LIMITER, enabled).apply(); }
+
+    // ========== 麦克风能力缓存 ==========
+    // 按 机型 + 输入路由 记录上次确认有声的（音源, 采样率），下次启动直接使用
+    public int[] getMicCapability(String routeKey) {
+        String v = prefs.getString(KEY_MIC_CAP_PREFIX + routeKey, "");
+        if (v.isEmpty()) return null;
+        try {
+            String[] parts = v.split(":");
+            if (parts.length < 2) return null;
+            int source = Integer.parseInt(parts[0]);
+            int rate = Integer.parseInt(parts[1]);
+            return (rate > 0) ? new int[] { source, rate } : null; // 旧版本多存的路由类型字段忽略
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public void setMicCapability(String routeKey, int source, int rate) {
+        prefs.edit().putString(KEY_MIC_CAP_PREFIX + routeKey, source + ":" + rate).apply();
+    }
+
+    public void clearMicCapability(String routeKey) {
+        prefs.edit().remove(KEY_MIC_CAP_PREFIX + routeKey).apply();
+    }
+
 
     // ========== 可选：自定义 Realtime WS Endpoint ==========
     public String getWsEndpoint() { return prefs.getString(KEY_WS_ENDPOINT, ""); }
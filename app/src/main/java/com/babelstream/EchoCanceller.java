@@ -0,0 +1,319 @@
+package com.babelstream;
+
+/**
+ * 声学回声消除（麦克风流，以系统音频捕获为远端参考）
+ * - 参考信号：PlaybackCaptureManager 捕获的播放音频，与麦克风帧一样带采集时刻（CaptureClock），
+ *   两路按采集时刻放到同一样本时间轴上
+ * - 延迟估计：4ms 块的幅度包络做归一化互相关（最近 1s，搜索 0..MAX_DELAY_MS），
+ *   连续两次结果一致才采用；得到的整体延迟（输出链路 + 声学路径）先对齐参考，剩余部分由滤波器尾长覆盖
+ * - 自适应滤波：时域 NLMS，尾长 tailMs；参考静音时直接透传不做运算
+ * - 双讲检测：Geigel 判决，麦克风幅度超过 估计的回声耦合增益 × 参考窗口峰值 × 门限 时冻结自适应一段时间，
+ *   避免近端说话把滤波器带偏
+ * - CPU 预算：按线程 CPU 时间统计处理耗时占音频时长的比例（平滑），持续超过 MAX_CPU_LOAD 时本会话改为透传，
+ *   避免逐样本 NLMS 在低端机上拖垮音频阶段线程；尾长 64ms@16kHz 约为每秒 3300 万次乘加
+ * - 只处理构造采样率的帧；采集管线已统一重采样到会话采样率，其他采样率的帧仅作防御：透传并计数
+ * 仅在音频阶段线程调用；process 原地改写麦克风帧并更新其平方和/电平。
+ */
+public final class EchoCanceller {
+    private static final int ENV_BLOCK_MS = 4;
+    private static final int MAX_DELAY_MS = 500;
+    private static final int CORR_WINDOW_MS = 1000;
+    private static final int ESTIMATE_INTERVAL_MS = 250;
+    private static final int REF_CAPACITY_MS = 2500;
+    private static final int GAP_TOLERANCE_MS = 20;
+    private static final float MIN_CORRELATION = 0.5f;
+    private static final float STEP_SIZE = 0.4f;          // NLMS 步长
+    private static final float GEIGEL_THRESHOLD = 2.0f;   // 相对估计回声峰值
+    private static final int DOUBLE_TALK_HOLD_MS = 40;
+    private static final float REF_SILENT = 30f;          // 参考窗口峰值低于此视为远端静音（int16 幅度）
+    private static final int SUB_BLOCK_MS = 10;
+    private static final float MAX_CPU_LOAD = 0.25f;      // 处理耗时 / 音频时长 的上限
+    private static final float LOAD_SMOOTHING = 0.05f;
+
+    private final int sampleRate;
+    private final int taps;
+    private final float[] weights;   // 逆序存放：weights[j] 作用于 x[n - (taps-1-j)]
+    private final float[] ref;       // 参考信号环形缓冲，按时间轴绝对位置索引
+    private long refEnd = 0L;        // 下一个参考样本的绝对位置
+    private boolean refStarted = false;
+    private long baseNs = 0L;
+    private float[] segment = new float[0]; // 当前帧对应的对齐参考段（线性）
+
+    // 延迟估计
+    private final int envBlock;
+    private final float[] micEnv;
+    private long micEnvBlock = Long.MIN_VALUE; // 正在累积的麦克风包络块编号
+    private float micEnvAcc = 0f;
+    private final int corrBlocks;
+    private final int maxLagBlocks;
+    private final float[] refEnvScratch;
+    private final float[] micEnvScratch;
+    private int estimateCountdown;
+    private int candidateLag = -1;
+    private int delay = -1;          // 对齐延迟（样本），-1 表示尚未估计出
+    private float coupling = 1f;     // 回声耦合增益估计（麦克风包络 / 参考包络）
+
+    // 双讲
+    private final int holdSamples;
+    private int holdLeft = 0;
+
+    // 统计（诊断用，跨线程读取不要求精确）
+    private double statIn = 0.0;
+    private double statOut = 0.0;
+    private long activeSamples = 0L;
+    private long doubleTalkSamples = 0L;
+    private long refMissingFrames = 0L;
+    private long rateMismatchFrames = 0L;
+    private float cpuLoad = 0f;
+    private boolean overBudget = false;
+
+    public EchoCanceller(int sampleRate, int tailMs) {
+        this.sampleRate = sampleRate > 0 ? sampleRate : 16000;
+        this.taps = Math.max(16, this.sampleRate * Math.max(8, tailMs) / 1000);
+        this.weights = new float[taps];
+        this.ref = new float[this.sampleRate * REF_CAPACITY_MS / 1000];
+        this.envBlock = Math.max(1, this.sampleRate * ENV_BLOCK_MS / 1000);
+        this.corrBlocks = CORR_WINDOW_MS / ENV_BLOCK_MS;
+        this.maxLagBlocks = MAX_DELAY_MS / ENV_BLOCK_MS;
+        this.micEnv = new float[corrBlocks + 64];
+        this.refEnvScratch = new float[corrBlocks + maxLagBlocks];
+        this.micEnvScratch = new float[corrBlocks];
+        this.estimateCountdown = ESTIMATE_INTERVAL_MS / ENV_BLOCK_MS;
+        this.holdSamples = this.sampleRate * DOUBLE_TALK_HOLD_MS / 1000;
+    }
+
+    public int getSampleRate() { return sampleRate; }
+
+    /** 送入一帧远端参考（系统音频）；不转移所有权 */
+    public void pushReference(AudioFrame frame) {
+        if (frame == null || frame.length <= 0) return;
+        if (frame.sampleRate != sampleRate) {
+            onRateMismatch(frame.sampleRate);
+            return;
+        }
+        long idx = toIndex(frame.captureTimeNs);
+        if (!refStarted) {
+            refStarted = true;
+            refEnd = idx;
+        } else {
+            long gap = idx - refEnd;
+            if (gap > sampleRate * GAP_TOLERANCE_MS / 1000) {
+                int fill = (int) Math.min(gap, ref.length);
+                for (int i = 0; i < fill; i++) ref[slot(refEnd + i)] = 0f;
+                refEnd += gap;
+            }
+        }
+        short[] s = frame.samples;
+        for (int i = 0; i < frame.length; i++) ref[slot(refEnd + i)] = s[i];
+        refEnd += frame.length;
+    }
+
+    /** 对一帧麦克风音频做回声消除（原地改写） */
+    public void process(AudioFrame frame) {
+        if (frame == null || frame.length <= 0 || overBudget) return;
+        if (frame.sampleRate != sampleRate) {
+            onRateMismatch(frame.sampleRate);
+            return;
+        }
+        long cpu0 = android.os.Debug.threadCpuTimeNanos();
+        cancel(frame);
+        long cpu1 = android.os.Debug.threadCpuTimeNanos();
+        if (cpu0 > 0 && cpu1 >= cpu0) {
+            float load = (float) ((cpu1 - cpu0) * (double) sampleRate / (frame.length * 1e9));
+            cpuLoad += LOAD_SMOOTHING * (load - cpuLoad);
+            if (cpuLoad > MAX_CPU_LOAD) {
+                overBudget = true;
+                android.util.Log.w("EchoCanceller", "cpu load " + Math.round(cpuLoad * 100) + "% over budget, bypassing for this session");
+            }
+        }
+    }
+
+    private void cancel(AudioFrame frame) {
+        int n = frame.length;
+        short[] d = frame.samples;
+        long m0 = toIndex(frame.captureTimeNs);
+        accumulateEnvelope(d, n, m0);
+        if (delay < 0 || !refStarted) return;
+
+        // 取出对齐后的参考段：x[m - delay - (taps-1)] .. x[m0 + n - 1 - delay]
+        int segLen = n + taps - 1;
+        if (segment.length < segLen) segment = new float[segLen];
+        float[] xs = segment;
+        long start = m0 - delay - (taps - 1);
+        long oldest = refEnd - ref.length;
+        if (m0 + n - delay > refEnd) refMissingFrames++;
+        for (int i = 0; i < segLen; i++) {
+            long p = start + i;
+            xs[i] = (p >= oldest && p < refEnd) ? ref[slot(p)] : 0f;
+        }
+
+        int sub = Math.max(1, sampleRate * SUB_BLOCK_MS / 1000);
+        long sumSq = 0L;
+        for (int b = 0; b < n; b += sub) {
+            int end = Math.min(n, b + sub);
+            float peak = 0f;
+            for (int i = b; i < end + taps - 1; i++) {
+                float a = Math.abs(xs[i]);
+                if (a > peak) peak = a;
+            }
+            if (peak < REF_SILENT) {
+                // 远端静音：不滤波也不自适应
+                for (int i = b; i < end; i++) sumSq += (long) d[i] * d[i];
+                continue;
+            }
+            float pow = 0f;
+            for (int j = 0; j < taps; j++) pow += xs[b + j] * xs[b + j];
+            float geigel = GEIGEL_THRESHOLD * coupling * peak;
+            for (int i = b; i < end; i++) {
+                if (i > b) {
+                    float outX = xs[i - 1];
+                    float inX = xs[i + taps - 1];
+                    pow += inX * inX - outX * outX;
+                    if (pow < 0f) pow = 0f;
+                }
+                float y = 0f;
+                for (int j = 0; j < taps; j++) y += weights[j] * xs[i + j];
+                float di = d[i];
+                float e = di - y;
+                if (Math.abs(di) > geigel) holdLeft = holdSamples;
+                if (holdLeft > 0) {
+                    holdLeft--;
+                    doubleTalkSamples++;
+                } else {
+                    float g = STEP_SIZE * e / (pow + taps * 100f);
+                    for (int j = 0; j < taps; j++) weights[j] += g * xs[i + j];
+                    statIn += di * di;
+                    statOut += e * e;
+                }
+                activeSamples++;
+                int v = Math.round(e);
+                if (v > Short.MAX_VALUE) v = Short.MAX_VALUE; else if (v < Short.MIN_VALUE) v = Short.MIN_VALUE;
+                d[i] = (short) v;
+                sumSq += (long) v * v;
+            }
+        }
+        frame.sumSquares = sumSq;
+        frame.level = LevelMeter.percentFromSumSquares(sumSq, n);
+    }
+
+    /** 当前对齐延迟（毫秒），尚未估计出时为 -1 */
+    public int getDelayMs() { return delay < 0 ? -1 : (int) ((long) delay * 1000 / sampleRate); }
+
+    /** 回声抑制量 ERLE（dB，仅统计远端有声且非双讲的样本） */
+    public float getErleDb() {
+        if (statOut <= 0.0 || statIn <= 0.0) return 0f;
+        return (float) (10.0 * Math.log10(statIn / statOut));
+    }
+
+    public String summary() {
+        long dtPct = activeSamples > 0 ? doubleTalkSamples * 100 / activeSamples : 0;
+        return "aec: delay=" + getDelayMs() + "ms, erle=" + Math.round(getErleDb()) + "dB, coupling="
+                + Math.round(coupling * 100) / 100f + ", doubleTalk=" + dtPct + "%, refMissing=" + refMissingFrames
+                + ", cpu=" + Math.round(cpuLoad * 1000) / 10f + "%" + (overBudget ? "(bypassed)" : "")
+                + (rateMismatchFrames > 0 ? ", rateMismatch=" + rateMismatchFrames : "");
+    }
+
+    private void onRateMismatch(int rate) {
+        if (rateMismatchFrames++ == 0) {
+            android.util.Log.w("EchoCanceller", "frame rate " + rate + "Hz != " + sampleRate + "Hz, passing through");
+        }
+    }
+
+    // 麦克风包络（消除前）按 4ms 块累积，每 ESTIMATE_INTERVAL_MS 估计一次延迟
+    private void accumulateEnvelope(short[] d, int n, long m0) {
+        for (int i = 0; i < n; i++) {
+            long blk = Math.floorDiv(m0 + i, envBlock);
+            if (blk != micEnvBlock) {
+                if (micEnvBlock != Long.MIN_VALUE) {
+                    micEnv[(int) Math.floorMod(micEnvBlock, micEnv.length)] = micEnvAcc / envBlock;
+                    // 时间戳跳变跨过的块记为 0
+                    long skip = Math.min(blk - micEnvBlock - 1, micEnv.length);
+                    for (long k = 1; k <= skip; k++) micEnv[(int) Math.floorMod(micEnvBlock + k, micEnv.length)] = 0f;
+                    if (--estimateCountdown <= 0) {
+                        estimateCountdown = ESTIMATE_INTERVAL_MS / ENV_BLOCK_MS;
+                        estimateDelay(micEnvBlock + 1);
+                    }
+                }
+                micEnvBlock = blk;
+                micEnvAcc = 0f;
+            }
+            micEnvAcc += Math.abs(d[i]);
+        }
+    }
+
+    // endBlock 之前 corrBlocks 个麦克风包络块 与 参考包络（向前多取 maxLagBlocks）做归一化互相关
+    private void estimateDelay(long endBlock) {
+        if (!refStarted) return;
+        long micStart = endBlock - corrBlocks;
+        long refStart = micStart - maxLagBlocks;
+        long oldest = refEnd - ref.length;
+        float refMean = 0f;
+        for (int b = 0; b < refEnvScratch.length; b++) {
+            long p0 = (refStart + b) * envBlock;
+            float acc = 0f;
+            for (int i = 0; i < envBlock; i++) {
+                long p = p0 + i;
+                if (p >= oldest && p < refEnd) acc += Math.abs(ref[slot(p)]);
+            }
+            refEnvScratch[b] = acc / envBlock;
+            refMean += refEnvScratch[b];
+        }
+        refMean /= refEnvScratch.length;
+        if (refMean < REF_SILENT / 4) return; // 远端基本无声：无从估计
+        float micMean = 0f;
+        for (int b = 0; b < corrBlocks; b++) {
+            micEnvScratch[b] = micEnv[(int) Math.floorMod(micStart + b, micEnv.length)];
+            micMean += micEnvScratch[b];
+        }
+        micMean /= corrBlocks;
+        double micVar = 0.0;
+        for (int b = 0; b < corrBlocks; b++) {
+            float m = micEnvScratch[b] - micMean;
+            micVar += m * m;
+        }
+        if (micVar <= 0.0) return;
+        int bestLag = -1;
+        double best = 0.0;
+        double bestRefSum = 0.0;
+        for (int lag = 0; lag <= maxLagBlocks; lag++) {
+            int off = maxLagBlocks - lag;
+            double rSum = 0.0;
+            for (int b = 0; b < corrBlocks; b++) rSum += refEnvScratch[off + b];
+            double rMean = rSum / corrBlocks;
+            double cross = 0.0, rVar = 0.0;
+            for (int b = 0; b < corrBlocks; b++) {
+                double r = refEnvScratch[off + b] - rMean;
+                cross += r * (micEnvScratch[b] - micMean);
+                rVar += r * r;
+            }
+            if (rVar <= 0.0) continue;
+            double c = cross / Math.sqrt(rVar * micVar);
+            if (c > best) { best = c; bestLag = lag; bestRefSum = rSum; }
+        }
+        if (bestLag < 0 || best < MIN_CORRELATION) return;
+        if (bestRefSum > 0.0) {
+            float g = (float) (micMean * corrBlocks / bestRefSum);
+            coupling += 0.25f * (g - coupling);
+        }
+        if (candidateLag < 0 || Math.abs(bestLag - candidateLag) > 1) {
+            candidateLag = bestLag;
+            return;
+        }
+        candidateLag = bestLag;
+        // 对齐点前移 1/4 尾长，给滤波器留出因果余量
+        int newDelay = Math.max(0, bestLag * envBlock - taps / 4);
+        if (delay < 0 || Math.abs(newDelay - delay) > envBlock) {
+            if (delay >= 0) java.util.Arrays.fill(weights, 0f); // 延迟变化：重新收敛
+            delay = newDelay;
+            android.util.Log.i("EchoCanceller", "echo delay=" + getDelayMs() + "ms, corr=" + Math.round(best * 100) / 100f
+                    + ", coupling=" + coupling);
+        }
+    }
+
+    private int slot(long pos) { return (int) Math.floorMod(pos, (long) ref.length); }
+
+    private long toIndex(long ns) {
+        if (baseNs == 0L) baseNs = ns;
+        return (ns - baseNs) * sampleRate / 1_000_000_000L;
+    }
+}
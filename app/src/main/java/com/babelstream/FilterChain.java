@@ -0,0 +1,94 @@
+package com.babelstream;
+
+/**
+ * 采集帧预处理链：高通 → 降噪 → AGC → 限幅（按 ConfigManager 开关组合，见 RecognitionService.buildFilterChain）
+ * - 原地处理池化帧：int16 转到链内 float 工作区，各级依次处理，末端截断写回并重算平方和/电平
+ * - 不分配内存（工作区按最大帧长复用）
+ * - 逐级统计耗时，按“占实时音频时长的百分比”汇报，便于按设备取舍各级
+ * - 帧的采集时刻按各级总延迟前移；采集时刻与上一帧不连续（换设备、暂停后恢复）时先清除各级状态
+ * 每路音频流一条链，仅在音频阶段线程调用；统计读取在其他线程，故加锁。
+ */
+public final class FilterChain {
+    private final AudioFilter[] stages;
+    private final int sampleRate;
+    private float[] work = new float[4096];
+
+    // 统计：自上次 statsAndReset 起
+    private final long[] stageNs;
+    private final long[] frameNs; // 本帧各级耗时，帧末一次性计入 stageNs
+    private long audioSamples = 0L;
+    private long frameCount = 0L;
+    private static final long GAP_NS = 100_000_000L; // 采集时刻偏离预期超过此值视为不连续
+    private final long latencyNs;
+    private long expectedNs = 0L; // 下一帧预期的采集时刻，0 为未知
+
+    FilterChain(int sampleRate, java.util.List<AudioFilter> stages) {
+        this.sampleRate = sampleRate > 0 ? sampleRate : 16000;
+        this.stages = stages.toArray(new AudioFilter[0]);
+        this.stageNs = new long[this.stages.length];
+        this.frameNs = new long[this.stages.length];
+        long latency = 0L;
+        for (AudioFilter f : this.stages) latency += f.latencySamples();
+        this.latencyNs = latency * 1_000_000_000L / this.sampleRate;
+    }
+
+    public boolean isEmpty() { return stages.length == 0; }
+
+    /** 原地处理一帧（不转移所有权） */
+    public void process(AudioFrame frame) {
+        if (stages.length == 0 || frame == null || frame.length <= 0) return;
+        int n = frame.length;
+        long ts = frame.captureTimeNs;
+        if (ts != 0L) {
+            if (expectedNs != 0L && Math.abs(ts - expectedNs) > GAP_NS) reset();
+            expectedNs = ts + n * 1_000_000_000L / sampleRate;
+            frame.captureTimeNs = ts - latencyNs;
+        }
+        short[] s = frame.samples;
+        if (work.length < n) work = new float[n];
+        float[] w = work;
+        for (int i = 0; i < n; i++) w[i] = s[i];
+        long t = System.nanoTime();
+        for (int k = 0; k < stages.length; k++) {
+            stages[k].process(w, n);
+            long now = System.nanoTime();
+            frameNs[k] = now - t;
+            t = now;
+        }
+        long sum = 0L;
+        for (int i = 0; i < n; i++) {
+            int v = Math.round(w[i]);
+            if (v > Short.MAX_VALUE) v = Short.MAX_VALUE; else if (v < Short.MIN_VALUE) v = Short.MIN_VALUE;
+            s[i] = (short) v;
+            sum += (long) v * v;
+        }
+        frame.sumSquares = sum;
+        frame.level = LevelMeter.percentFromSumSquares(sum, n);
+        synchronized (this) {
+            for (int k = 0; k < stages.length; k++) stageNs[k] += frameNs[k];
+            audioSamples += n;
+            frameCount++;
+        }
+    }
+
+    /** 输入设备或会话切换后清除各级状态（音频阶段线程） */
+    public void reset() {
+        for (AudioFilter f : stages) f.reset();
+    }
+
+    /** 各级耗时：平均每帧微秒与占实时百分比（自上次调用起），调用后清零 */
+    public synchronized String statsAndReset() {
+        StringBuilder sb = new StringBuilder("filters:");
+        if (stages.length == 0) return sb.append(" none").toString();
+        long audioNs = audioSamples * 1_000_000_000L / sampleRate;
+        for (int k = 0; k < stages.length; k++) {
+            long perFrameUs = frameCount > 0 ? stageNs[k] / frameCount / 1000L : 0L;
+            float pct = audioNs > 0 ? Math.round(stageNs[k] * 1000f / audioNs) / 10f : 0f;
+            sb.append(' ').append(stages[k].name()).append('=').append(perFrameUs).append("us(").append(pct).append("%)");
+            stageNs[k] = 0L;
+        }
+        audioSamples = 0L;
+        frameCount = 0L;
+        return sb.toString();
+    }
+}
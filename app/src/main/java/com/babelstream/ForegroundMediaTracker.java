@@ -0,0 +1,121 @@
+package com.babelstream;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.media.session.MediaController;
+import android.media.session.MediaSessionManager;
+import android.media.session.PlaybackState;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 跟踪“前台媒体应用”：活动媒体会话中正在播放的、优先级最高的一个（会话列表按优先级排序）
+ * - 会话增减（OnActiveSessionsChangedListener）与各会话播放状态变化（MediaController.Callback）时重新判定，
+ *   结果变化才回调；无播放中的会话时回调 null
+ * - 需要用户授予通知使用权（MediaNotificationListener），未授权时 start 返回 false，由调用方退回静态设置
+ * 回调在主线程。
+ */
+final class ForegroundMediaTracker {
+    private static final String TAG = "ForegroundMedia";
+
+    interface Listener {
+        void onForegroundMediaChanged(String packageName);
+    }
+
+    private final Context context;
+    private final Listener listener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final ComponentName component;
+    private final List<MediaController> controllers = new ArrayList<>();
+    private MediaSessionManager sessionManager;
+    private String current;
+    private boolean started = false;
+
+    private final MediaSessionManager.OnActiveSessionsChangedListener sessionsListener =
+            new MediaSessionManager.OnActiveSessionsChangedListener() {
+                @Override public void onActiveSessionsChanged(List<MediaController> list) { bind(list); }
+            };
+
+    private final MediaController.Callback controllerCallback = new MediaController.Callback() {
+        @Override public void onPlaybackStateChanged(PlaybackState state) { evaluate(); }
+        @Override public void onSessionDestroyed() { evaluate(); }
+    };
+
+    ForegroundMediaTracker(Context context, Listener listener) {
+        this.context = context.getApplicationContext();
+        this.listener = listener;
+        this.component = new ComponentName(this.context, MediaNotificationListener.class);
+    }
+
+    /** 开始跟踪；未授予通知使用权等情况返回 false */
+    boolean start() {
+        if (started) return true;
+        try {
+            sessionManager = context.getSystemService(MediaSessionManager.class);
+            if (sessionManager == null) return false;
+            sessionManager.addOnActiveSessionsChangedListener(sessionsListener, component, handler);
+            started = true;
+            bind(sessionManager.getActiveSessions(component));
+            return true;
+        } catch (SecurityException e) {
+            Log.i(TAG, "notification access not granted: " + e.getMessage());
+            return false;
+        } catch (Throwable t) {
+            Log.w(TAG, "start failed", t);
+            return false;
+        }
+    }
+
+    void stop() {
+        if (!started) return;
+        started = false;
+        try { sessionManager.removeOnActiveSessionsChangedListener(sessionsListener); } catch (Throwable ignore) {}
+        unbindAll();
+    }
+
+    /** 当前判定的前台媒体应用包名（无则 null） */
+    String current() { return current; }
+
+    private void bind(List<MediaController> list) {
+        if (!started) return;
+        unbindAll();
+        if (list != null) {
+            for (MediaController c : list) {
+                try {
+                    c.registerCallback(controllerCallback, handler);
+                    controllers.add(c);
+                } catch (Throwable ignore) {}
+            }
+        }
+        evaluate();
+    }
+
+    private void unbindAll() {
+        for (MediaController c : controllers) {
+            try { c.unregisterCallback(controllerCallback); } catch (Throwable ignore) {}
+        }
+        controllers.clear();
+    }
+
+    private void evaluate() {
+        if (!started) return;
+        String pkg = null;
+        for (MediaController c : controllers) {
+            try {
+                PlaybackState st = c.getPlaybackState();
+                if (st != null && st.getState() == PlaybackState.STATE_PLAYING) {
+                    pkg = c.getPackageName();
+                    break;
+                }
+            } catch (Throwable ignore) {}
+        }
+        if (pkg == null ? current == null : pkg.equals(current)) return;
+        current = pkg;
+        Log.i(TAG, "foreground media app: " + pkg);
+        try { listener.onForegroundMediaChanged(pkg); } catch (Throwable t) { Log.w(TAG, "listener error", t); }
+    }
+}
@@ -0,0 +1,357 @@
+package com.babelstream;
+
+/**
+ * Gummy allResponse 流式提取：单遍扫描 JSON 文本，只取用到的字段，不构建 DOM
+ * - header.event / header.error_message
+ * - payload.output.transcription：text（依次回退 result/transcript）、sentence_id、begin_time、end_time、sentence_end
+ * - payload.output.translations[]：各项 text（回退 result/translation）按序拼接
+ * - payload.output.text/result；以及任意层级第一个像文本的字段（原 deepFindText 的兜底）
+ * 键名按区间比较不生成字符串，不需要的值直接跳过；仅目标字段才解码为 String。
+ * 实例有状态、可复用，parse 仅在 NuiDispatch 分发线程上调用；allResponseOf 与 isSentenceEnd 为静态方法，
+ * 在 SDK 回调线程上调用（反射查找按类缓存）。
+ */
+final class GummyEventParser {
+    // 结果：每次 parse 前清空
+    String event;
+    String errorMessage;
+    String transcription;
+    long sentenceId;
+    long beginTime;
+    long endTime;
+    boolean sentenceEnd;
+    String translation;
+    String outputText;
+    String anyText;
+
+    private static final int CTX_OTHER = 0;
+    private static final int CTX_ROOT = 1;
+    private static final int CTX_HEADER = 2;
+    private static final int CTX_PAYLOAD = 3;
+    private static final int CTX_OUTPUT = 4;
+    private static final int CTX_TRANSCRIPTION = 5;
+    private static final int CTX_TRANSLATIONS = 6;      // translations 数组
+    private static final int CTX_TRANSLATION_ITEM = 7;
+
+    private static final String[] KEYS = {
+            "header", "payload", "output", "transcription", "translations", "event", "error_message",
+            "text", "result", "transcript", "translation", "display_text",
+            "sentence_id", "begin_time", "end_time", "sentence_end"
+    };
+    private static final int K_HEADER = 0, K_PAYLOAD = 1, K_OUTPUT = 2, K_TRANSCRIPTION = 3, K_TRANSLATIONS = 4,
+            K_EVENT = 5, K_ERROR_MESSAGE = 6, K_TEXT = 7, K_RESULT = 8, K_TRANSCRIPT = 9, K_TRANSLATION = 10,
+            K_DISPLAY_TEXT = 11, K_SENTENCE_ID = 12, K_BEGIN_TIME = 13, K_END_TIME = 14, K_SENTENCE_END = 15;
+    private static final int NO_RANK = Integer.MAX_VALUE;
+    private static final int MAX_ANY_TEXT = 4096;
+
+    private final StringBuilder decodeBuf = new StringBuilder(128);
+    private final StringBuilder translationBuf = new StringBuilder(128);
+    private String s;
+    private int pos;
+    private int transcriptionRank;
+    private int outputRank;
+    private int itemRank;
+    private String itemText;
+
+    /** 解析一条 allResponse；非法 JSON 返回 false（已提取的字段仍保留） */
+    boolean parse(String json) {
+        event = null;
+        errorMessage = null;
+        transcription = null;
+        sentenceId = -1L;
+        beginTime = -1L;
+        endTime = -1L;
+        sentenceEnd = false;
+        translation = null;
+        outputText = null;
+        anyText = null;
+        translationBuf.setLength(0);
+        transcriptionRank = NO_RANK;
+        outputRank = NO_RANK;
+        if (json == null) return false;
+        s = json;
+        pos = 0;
+        try {
+            skipWs();
+            if (s.charAt(pos) != '{') return false;
+            parseObject(CTX_ROOT);
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        } finally {
+            if (translationBuf.length() > 0) translation = translationBuf.toString();
+            s = null;
+        }
+    }
+
+    private void parseObject(int ctx) {
+        pos++; // '{'
+        skipWs();
+        if (s.charAt(pos) == '}') { pos++; return; }
+        for (;;) {
+            skipWs();
+            expect('"');
+            int ks = pos;
+            int ke = stringEnd(ks);
+            int key = keyId(ks, ke);
+            pos = ke + 1;
+            skipWs();
+            expect(':');
+            skipWs();
+            parseValue(ctx, key);
+            skipWs();
+            char c = s.charAt(pos++);
+            if (c == ',') continue;
+            if (c == '}') return;
+            throw new IllegalStateException("bad object at " + (pos - 1));
+        }
+    }
+
+    private void parseArray(int ctx) {
+        pos++; // '['
+        skipWs();
+        if (s.charAt(pos) == ']') { pos++; return; }
+        for (;;) {
+            skipWs();
+            char c = s.charAt(pos);
+            if (c == '{') {
+                if (ctx == CTX_TRANSLATIONS) {
+                    itemRank = NO_RANK;
+                    itemText = null;
+                    parseObject(CTX_TRANSLATION_ITEM);
+                    if (itemText != null) translationBuf.append(itemText);
+                } else {
+                    parseObject(CTX_OTHER);
+                }
+            } else if (c == '"') {
+                // 数组中的字符串元素也可作兜底文本
+                int start = pos + 1;
+                int end = stringEnd(start);
+                if (anyText == null && end > start && end - start < MAX_ANY_TEXT) anyText = decode(start, end);
+                pos = end + 1;
+            } else {
+                parseValue(CTX_OTHER, -1);
+            }
+            skipWs();
+            c = s.charAt(pos++);
+            if (c == ',') continue;
+            if (c == ']') return;
+            throw new IllegalStateException("bad array at " + (pos - 1));
+        }
+    }
+
+    private void parseValue(int ctx, int key) {
+        char c = s.charAt(pos);
+        switch (c) {
+            case '{': parseObject(childContext(ctx, key)); break;
+            case '[': parseArray(ctx == CTX_OUTPUT && key == K_TRANSLATIONS ? CTX_TRANSLATIONS : CTX_OTHER); break;
+            case '"': {
+                int start = pos + 1;
+                int end = stringEnd(start);
+                pos = end + 1;
+                onString(ctx, key, start, end);
+                break;
+            }
+            case 't': expectWord("true"); if (ctx == CTX_TRANSCRIPTION && key == K_SENTENCE_END) sentenceEnd = true; break;
+            case 'f': expectWord("false"); break;
+            case 'n': expectWord("null"); break;
+            default: {
+                long v = parseNumber();
+                if (ctx == CTX_TRANSCRIPTION) {
+                    if (key == K_SENTENCE_ID) sentenceId = v;
+                    else if (key == K_BEGIN_TIME) beginTime = v;
+                    else if (key == K_END_TIME) endTime = v;
+                }
+            }
+        }
+    }
+
+    private static int childContext(int ctx, int key) {
+        switch (ctx) {
+            case CTX_ROOT: return key == K_HEADER ? CTX_HEADER : key == K_PAYLOAD ? CTX_PAYLOAD : CTX_OTHER;
+            case CTX_PAYLOAD: return key == K_OUTPUT ? CTX_OUTPUT : CTX_OTHER;
+            case CTX_OUTPUT: return key == K_TRANSCRIPTION ? CTX_TRANSCRIPTION : CTX_OTHER;
+            default: return CTX_OTHER;
+        }
+    }
+
+    // 只有目标字段才解码；候选键按优先级取第一个非空值
+    private void onString(int ctx, int key, int start, int end) {
+        if (key < 0) return;
+        boolean empty = end <= start;
+        switch (ctx) {
+            case CTX_HEADER:
+                if (key == K_EVENT) event = decode(start, end);
+                else if (key == K_ERROR_MESSAGE) errorMessage = decode(start, end);
+                return;
+            case CTX_TRANSCRIPTION: {
+                int rank = key == K_TEXT ? 0 : key == K_RESULT ? 1 : key == K_TRANSCRIPT ? 2 : NO_RANK;
+                if (rank < transcriptionRank && !empty && !isNullLiteral(start, end)) {
+                    transcription = decode(start, end);
+                    transcriptionRank = rank;
+                }
+                break;
+            }
+            case CTX_TRANSLATION_ITEM: {
+                int rank = key == K_TEXT ? 0 : key == K_RESULT ? 1 : key == K_TRANSLATION ? 2 : NO_RANK;
+                if (rank < itemRank && !empty && !isNullLiteral(start, end)) {
+                    itemText = decode(start, end);
+                    itemRank = rank;
+                }
+                break;
+            }
+            case CTX_OUTPUT: {
+                int rank = key == K_TEXT ? 0 : key == K_RESULT ? 1 : NO_RANK;
+                if (rank < outputRank && !empty && !isNullLiteral(start, end)) {
+                    outputText = decode(start, end);
+                    outputRank = rank;
+                }
+                break;
+            }
+            default:
+                break;
+        }
+        if (anyText == null && !empty && !isNullLiteral(start, end)
+                && (key == K_TEXT || key == K_RESULT || key == K_TRANSCRIPT || key == K_DISPLAY_TEXT)) {
+            anyText = decode(start, end);
+        }
+    }
+
+    private int keyId(int start, int end) {
+        int len = end - start;
+        for (int i = 0; i < KEYS.length; i++) {
+            String k = KEYS[i];
+            if (k.length() == len && s.regionMatches(start, k, 0, len)) return i;
+        }
+        return -1;
+    }
+
+    private boolean isNullLiteral(int start, int end) {
+        return end - start == 4 && s.regionMatches(true, start, "null", 0, 4);
+    }
+
+    // 返回字符串结束引号的下标（start 为开引号之后）
+    private int stringEnd(int start) {
+        int i = start;
+        for (;;) {
+            char c = s.charAt(i);
+            if (c == '"') return i;
+            i += (c == '\\') ? 2 : 1;
+        }
+    }
+
+    private String decode(int start, int end) {
+        int bs = s.indexOf('\\', start);
+        if (bs < 0 || bs >= end) return s.substring(start, end);
+        StringBuilder sb = decodeBuf;
+        sb.setLength(0);
+        sb.append(s, start, bs);
+        for (int i = bs; i < end; i++) {
+            char c = s.charAt(i);
+            if (c != '\\') { sb.append(c); continue; }
+            char e = s.charAt(++i);
+            switch (e) {
+                case 'n': sb.append('\n'); break;
+                case 't': sb.append('\t'); break;
+                case 'r': sb.append('\r'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'u': sb.append((char) Integer.parseInt(s.substring(i + 1, i + 5), 16)); i += 4; break;
+                default: sb.append(e); break; // \" \\ \/
+            }
+        }
+        return sb.toString();
+    }
+
+    // 数值按整数部分取值（时间戳/句号均为整数）；小数与指数部分跳过
+    private long parseNumber() {
+        int start = pos;
+        boolean neg = false;
+        if (s.charAt(pos) == '-') { neg = true; pos++; }
+        long v = 0;
+        char c;
+        while (pos < s.length() && (c = s.charAt(pos)) >= '0' && c <= '9') {
+            v = v * 10 + (c - '0');
+            pos++;
+        }
+        while (pos < s.length() && ((c = s.charAt(pos)) == '.' || c == 'e' || c == 'E' || c == '+' || c == '-' || (c >= '0' && c <= '9'))) pos++;
+        if (pos == start) throw new IllegalStateException("bad value at " + pos);
+        return neg ? -v : v;
+    }
+
+    private void expectWord(String w) {
+        if (!s.regionMatches(pos, w, 0, w.length())) throw new IllegalStateException("bad literal at " + pos);
+        pos += w.length();
+    }
+
+    private void expect(char c) {
+        if (s.charAt(pos) != c) throw new IllegalStateException("expected " + c + " at " + pos);
+        pos++;
+    }
+
+    private void skipWs() {
+        char c;
+        while ((c = s.charAt(pos)) == ' ' || c == '\n' || c == '\r' || c == '\t') pos++;
+    }
+
+    /** 快速判断响应是否带 "sentence_end": true（不解析；SDK 回调线程上决定事件能否在队列满时挤出） */
+    static boolean isSentenceEnd(String json) {
+        if (json == null) return false;
+        int i = json.indexOf("\"sentence_end\"");
+        while (i >= 0) {
+            int j = i + 14;
+            int n = json.length();
+            while (j < n && json.charAt(j) <= ' ') j++;
+            if (j < n && json.charAt(j) == ':') {
+                j++;
+                while (j < n && json.charAt(j) <= ' ') j++;
+                if (json.startsWith("true", j)) return true;
+            }
+            i = json.indexOf("\"sentence_end\"", j);
+        }
+        return false;
+    }
+
+    // ===== AsrResult.allResponse 访问：按类缓存 Field（回退 getAllResponse()） =====
+
+    private static final class Accessor {
+        final Class<?> type;
+        final java.lang.reflect.Field field;
+        final java.lang.reflect.Method getter;
+
+        Accessor(Class<?> type, java.lang.reflect.Field field, java.lang.reflect.Method getter) {
+            this.type = type;
+            this.field = field;
+            this.getter = getter;
+        }
+    }
+
+    private static volatile Accessor accessor;
+
+    /** 取 AsrResult 的 allResponse 文本；不可用时返回 null */
+    static String allResponseOf(Object asrResult) {
+        if (asrResult == null) return null;
+        Accessor a = accessor;
+        if (a == null || a.type != asrResult.getClass()) {
+            a = resolve(asrResult.getClass());
+            accessor = a;
+        }
+        try {
+            Object v = null;
+            if (a.field != null) v = a.field.get(asrResult);
+            else if (a.getter != null) v = a.getter.invoke(asrResult);
+            return (v instanceof String) ? (String) v : null;
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+    private static Accessor resolve(Class<?> type) {
+        java.lang.reflect.Field f = null;
+        java.lang.reflect.Method m = null;
+        try { f = type.getField("allResponse"); } catch (Throwable ignore) {}
+        if (f == null) {
+            try { m = type.getMethod("getAllResponse"); } catch (Throwable ignore) {}
+        }
+        return new Accessor(type, f, m);
+    }
+}
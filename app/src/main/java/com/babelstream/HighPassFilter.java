@@ -0,0 +1,42 @@
+package com.babelstream;
+
+/**
+ * 二阶 Butterworth 高通（RBJ 双二阶），同时去除直流偏置与低频嗡声/风噪
+ */
+final class HighPassFilter implements AudioFilter {
+    private final float b0, b1, b2, a1, a2;
+    private float x1, x2, y1, y2;
+
+    HighPassFilter(int sampleRate, int cutoffHz) {
+        int sr = sampleRate > 0 ? sampleRate : 16000;
+        double fc = Math.max(10, Math.min(sr / 4, cutoffHz));
+        double w0 = 2.0 * Math.PI * fc / sr;
+        double cos = Math.cos(w0);
+        double alpha = Math.sin(w0) / (2.0 * Math.sqrt(0.5));
+        double a0 = 1.0 + alpha;
+        b0 = (float) ((1.0 + cos) / 2.0 / a0);
+        b1 = (float) (-(1.0 + cos) / a0);
+        b2 = b0;
+        a1 = (float) (-2.0 * cos / a0);
+        a2 = (float) ((1.0 - alpha) / a0);
+    }
+
+    @Override public String name() { return "highpass"; }
+
+    @Override public void process(float[] buf, int n) {
+        float lx1 = x1, lx2 = x2, ly1 = y1, ly2 = y2;
+        for (int i = 0; i < n; i++) {
+            float x = buf[i];
+            float y = b0 * x + b1 * lx1 + b2 * lx2 - a1 * ly1 - a2 * ly2;
+            lx2 = lx1; lx1 = x;
+            ly2 = ly1; ly1 = y;
+            buf[i] = y;
+        }
+        // 防止静音时状态落入非规格化浮点
+        if (Math.abs(ly1) < 1e-20f) ly1 = 0f;
+        if (Math.abs(ly2) < 1e-20f) ly2 = 0f;
+        x1 = lx1; x2 = lx2; y1 = ly1; y2 = ly2;
+    }
+
+    @Override public void reset() { x1 = x2 = y1 = y2 = 0f; }
+}
@@ -0,0 +1,52 @@
+package com.babelstream;
+
+/**
+ * 统一电平表
+ * - 平方和在采集端转换/重采样 PCM 的同一趟循环中累加（见 AudioFrame.sumSquares），这里不再遍历样本
+ * - dBFS(-60..0) → 0-100 的映射改为查表：预先算好每一档对应的均方阈值，二分查找，无需 log10
+ * - 每帧只计算一次并发布一个电平值，静音检测、界面电平条与诊断日志共用
+ * - 同时记录 SDK onNuiAudioRMSChanged 上报的 RMS，便于诊断比对
+ */
+public final class LevelMeter {
+    // MEAN_SQ_THRESHOLDS[k] 为电平达到 k+1 所需的最小均方值
+    private static final double[] MEAN_SQ_THRESHOLDS = new double[100];
+    static {
+        double fullScale = 32768.0 * 32768.0;
+        for (int lvl = 1; lvl <= 100; lvl++) {
+            // 与旧算法一致：level = round((dbfs + 60) / 60 * 100)
+            double db = (lvl - 0.5) * 0.6 - 60.0;
+            MEAN_SQ_THRESHOLDS[lvl - 1] = fullScale * Math.pow(10.0, db / 10.0);
+        }
+    }
+
+    private volatile int level = 0;
+    private volatile float sdkRms = Float.NaN;
+
+    /** 平方和 + 样本数 → 0-100 电平 */
+    public static int percentFromSumSquares(long sumSquares, int count) {
+        if (count <= 0) return 0;
+        double meanSq = (double) sumSquares / count;
+        int lo = 0, hi = MEAN_SQ_THRESHOLDS.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (meanSq >= MEAN_SQ_THRESHOLDS[mid]) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    /** 发布一帧的电平（由采集端填入 frame.level） */
+    public void publish(AudioFrame frame) {
+        if (frame != null) level = frame.level;
+    }
+
+    /** 直接发布一个电平值（如双路采集时取两路较大者） */
+    public void publishLevel(int level) { this.level = level; }
+
+    /** 最近一次发布的电平 0-100 */
+    public int getLevel() { return level; }
+
+    /** 记录 SDK 上报的 RMS（仅诊断用） */
+    public void setSdkRms(float rms) { this.sdkRms = rms; }
+
+    public float getSdkRms() { return sdkRms; }
+}
@@ -0,0 +1,95 @@
+package com.babelstream;
+
+/**
+ * 上行链路自适应：按识别会话的表现在两档之间升降
+ *   PCM 16kHz（约 256kbit/s）↔ Opus 16kHz
+ * 不降采样率：gummy 模型按 16kHz 训练，8kHz 窄带需换用电话模型，此处不做
+ * - 每秒取样一次：环形缓冲积压、最近结果的“采集→字幕”延迟、SDK 错误事件数
+ * - 连续 DEGRADE_SAMPLES 次差（积压/延迟超阈值或有错误）降一档；连续 UPGRADE_SAMPLES 次好升一档
+ * - 切换后保持 HOLD_SAMPLES 次不再判决，等新会话的指标稳定
+ * - 只做判决，会话接管（新建会话、在语音间隙换上、旧会话排空后关闭）由 RecognitionService 完成
+ * 仅在单一线程（电平阶段线程）上调用。
+ */
+final class LinkQualityController {
+    static final int LEVEL_PCM_16K = 0;
+    static final int LEVEL_OPUS_16K = 1;
+    private static final int MAX_LEVEL = LEVEL_OPUS_16K;
+
+    private static final int BAD_BACKLOG_MS = 2000;
+    private static final int BAD_LATENCY_MS = 4000;
+    private static final int GOOD_BACKLOG_MS = 400;
+    private static final int GOOD_LATENCY_MS = 1500;
+    private static final int DEGRADE_SAMPLES = 3;
+    private static final int UPGRADE_SAMPLES = 30;
+    private static final int HOLD_SAMPLES = 10;
+
+    interface Listener {
+        void onLevelChanged(int from, int to, String reason);
+    }
+
+    private final int minLevel; // 用户选了 Opus 时不再升回 PCM
+    private final Listener listener;
+    private int level;
+    private int badStreak = 0;
+    private int goodStreak = 0;
+    private int hold = 0;
+    private long lastErrors = -1L;
+    private int switches = 0;
+
+    LinkQualityController(int initialLevel, Listener listener) {
+        this.level = Math.max(LEVEL_PCM_16K, Math.min(MAX_LEVEL, initialLevel));
+        this.minLevel = this.level;
+        this.listener = listener;
+    }
+
+    int getLevel() { return level; }
+
+    static int codecOf(int level) {
+        return level == LEVEL_PCM_16K ? ConfigManager.UPLINK_CODEC_PCM : ConfigManager.UPLINK_CODEC_OPUS;
+    }
+
+    static String nameOf(int level) {
+        return level == LEVEL_PCM_16K ? "pcm16k" : "opus16k";
+    }
+
+    /**
+     * 每秒一次：backlogMs 为当前积压，latencyMs 为本秒内最大结果延迟（无结果为 -1），errors 为累计错误事件数
+     */
+    void onSample(int backlogMs, long latencyMs, long errors) {
+        long newErrors = lastErrors < 0 ? 0 : Math.max(0L, errors - lastErrors);
+        lastErrors = errors;
+        if (hold > 0) {
+            hold--;
+            return;
+        }
+        boolean bad = backlogMs > BAD_BACKLOG_MS || latencyMs > BAD_LATENCY_MS || newErrors > 0;
+        boolean good = !bad && backlogMs < GOOD_BACKLOG_MS && latencyMs < GOOD_LATENCY_MS;
+        badStreak = bad ? badStreak + 1 : 0;
+        goodStreak = good ? goodStreak + 1 : 0;
+        if (badStreak >= DEGRADE_SAMPLES && level < MAX_LEVEL) {
+            change(level + 1, "backlog=" + backlogMs + "ms, latency=" + latencyMs + "ms, errors=" + newErrors);
+        } else if (goodStreak >= UPGRADE_SAMPLES && level > minLevel) {
+            change(level - 1, "stable " + UPGRADE_SAMPLES + "s");
+        }
+    }
+
+    /** 接管失败（新会话未能启动）：退回原档并按切换处理保持期 */
+    void revert(int previousLevel) {
+        level = previousLevel;
+        hold = HOLD_SAMPLES;
+    }
+
+    String summary() {
+        return "link=" + nameOf(level) + ", switches=" + switches + (hold > 0 ? ", hold=" + hold : "");
+    }
+
+    private void change(int to, String reason) {
+        int from = level;
+        level = to;
+        badStreak = 0;
+        goodStreak = 0;
+        hold = HOLD_SAMPLES;
+        switches++;
+        listener.onLevelChanged(from, to, reason);
+    }
+}
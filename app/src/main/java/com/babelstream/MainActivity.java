@@ -63,6 +63,7 @@ public class MainActivity extends AppCompatActivity {
     private MediaProjectionManager projectionManager;
     private int projectionResultCode = 0;
     private Intent projectionDataIntent = null;
+    private boolean projectionDeclined = false; // 仅麦克风 + 回声消除时拒绝了屏幕捕获：本次不再询问
     private boolean overlayEnabled = false;
     private BroadcastReceiver recognitionReceiver;
 
@@ -156,6 +157,9 @@ public class MainActivity extends AppCompatActivity {
             i.putExtra("status", "App进入前台 MainActivity onResume");
             sendBroadcast(i);
         } catch (Throwable ignore) {}
+        // 预热识别会话（从设置页返回时按新配置重新预热），点击开始后只需打开会话；
+        // 识别进行中不预热：会话已在用，另起一个 NativeNui 会与其争用同一工作目录
+        try { if (!RecognitionService.isActive()) RecognizerWarmup.prewarm(this); } catch (Throwable ignore) {}
     }
 
     private void initViews() {
@@ -227,6 +231,11 @@ public class MainActivity extends AppCompatActivity {
                 projectionResultCode = resultCode;
                 projectionDataIntent = data;
                 startRecognition();
+            } else if (!configManager.requiresPlaybackCapture()) {
+                // 系统音频只用作回声消除参考：不做回声消除继续麦克风识别
+                projectionDeclined = true;
+                Toast.makeText(this, "未授予屏幕捕获权限，将不做回声消除", Toast.LENGTH_LONG).show();
+                startRecognition();
             } else {
                 Toast.makeText(this, "未授予屏幕捕获权限，无法获取系统音频", Toast.LENGTH_LONG).show();
             }
@@ -331,9 +340,10 @@ public class MainActivity extends AppCompatActivity {
             return;
         }
 
-        // 若选择系统音频：需要屏幕捕获授权；若选择麦克风：可跳过
-        boolean useMic = configManager.isAudioSourceMic();
-        if (!useMic) {
+        // 若选择系统音频（含双向）：需要屏幕捕获授权；若仅麦克风：可跳过（开启回声消除时询问，拒绝后不再要求）
+        boolean usePlayback = configManager.usesPlaybackCapture()
+                && (configManager.requiresPlaybackCapture() || !projectionDeclined);
+        if (usePlayback) {
             if (projectionResultCode == 0 || projectionDataIntent == null) {
                 Intent intent = projectionManager.createScreenCaptureIntent();
                 startActivityForResult(intent, REQUEST_MEDIA_PROJECTION);
@@ -353,7 +363,7 @@ public class MainActivity extends AppCompatActivity {
             // 启动前台识别服务
             Intent svc = new Intent(this, RecognitionService.class);
             svc.setAction(RecognitionService.ACTION_START);
-            if (!useMic) {
+            if (usePlayback) {
                 svc.putExtra(RecognitionService.EXTRA_RESULT_CODE, projectionResultCode);
                 svc.putExtra(RecognitionService.EXTRA_RESULT_DATA, projectionDataIntent);
             }
@@ -0,0 +1,11 @@
+package com.babelstream;
+
+import android.service.notification.NotificationListenerService;
+
+/**
+ * 空的通知监听服务：仅用于让用户授予“通知使用权”，
+ * 有了它 MediaSessionManager.getActiveSessions 才能读取当前的媒体会话（见 ForegroundMediaTracker）。
+ * 不读取、不处理任何通知。
+ */
+public class MediaNotificationListener extends NotificationListenerService {
+}
@@ -0,0 +1,173 @@
+package com.babelstream;
+
+/**
+ * 谱减法降噪
+ * - 约 16ms 帧（2 的幂），50% 重叠，sqrt-Hann 分析/合成窗，重叠相加；输出比输入延迟一整帧
+ *   （size 个样本，16kHz 下 256 点），见 latencySamples()
+ * - 噪声谱：逐频点递归平均，只有功率不超过估计值 NOISE_GATE 倍（像噪声）时才计入；
+ *   超出时按 ~3dB/s 缓慢上升，语音段不会把噪声估计迅速抬高，持续的新噪声也能被跟上
+ * - 增益：1 - OVER_SUBTRACT × 噪声/功率，下限 GAIN_FLOOR，并做帧间平滑抑制“音乐噪声”；
+ *   噪声估计为 0（如数字静音之后）的频点直通，功率为 0 的频点保持原增益，避免压低静音后的起音
+ * 所有缓冲在构造时分配。
+ */
+final class NoiseSuppressor implements AudioFilter {
+    private static final float OVER_SUBTRACT = 1.5f;
+    private static final float GAIN_FLOOR = 0.12f;   // 约 -18dB
+    private static final float GAIN_SMOOTH = 0.5f;
+    private static final float NOISE_GATE = 4f;
+    private static final float NOISE_ALPHA = 0.1f;
+    private static final int INIT_FRAMES = 8;        // 起始若干帧直接平均作为初始噪声谱
+    private static final float NOISE_EPS = 1e-3f;    // 低于此视为无噪声（远低于 1 LSB），同时避免非规格化浮点
+
+    private final int size;
+    private final int hop;
+    private final int bins;
+    private final float[] window;
+    private final float[] cosTable;
+    private final float[] sinTable;
+    private final int[] bitRev;
+    private final float[] frame;     // 分析帧：前半为上一跳，后半为正在积累的新样本
+    private final float[] re;
+    private final float[] im;
+    private final float[] noise;
+    private final float[] gain;
+    private final float[] tail;      // 上一帧合成结果的后半，待与下一帧叠加
+    private final float[] ready;     // 已完成、待输出的一跳样本
+    private final float noiseRise;
+    private int pos = 0;
+    private int frames = 0;
+
+    NoiseSuppressor(int sampleRate) {
+        int sr = sampleRate > 0 ? sampleRate : 16000;
+        int n = 64;
+        while (n < sr * 16 / 1000) n <<= 1;
+        size = n;
+        hop = n / 2;
+        bins = n / 2 + 1;
+        window = new float[n];
+        for (int i = 0; i < n; i++) window[i] = (float) Math.sqrt(0.5 - 0.5 * Math.cos(2.0 * Math.PI * i / n));
+        cosTable = new float[n / 2];
+        sinTable = new float[n / 2];
+        for (int i = 0; i < n / 2; i++) {
+            cosTable[i] = (float) Math.cos(2.0 * Math.PI * i / n);
+            sinTable[i] = (float) Math.sin(2.0 * Math.PI * i / n);
+        }
+        bitRev = new int[n];
+        int bits = Integer.numberOfTrailingZeros(n);
+        for (int i = 0; i < n; i++) bitRev[i] = Integer.reverse(i) >>> (32 - bits);
+        frame = new float[n];
+        re = new float[n];
+        im = new float[n];
+        noise = new float[bins];
+        gain = new float[bins];
+        tail = new float[hop];
+        ready = new float[hop];
+        // 每跳上升系数：3dB/s
+        noiseRise = (float) Math.pow(10.0, 0.3 * hop / (double) sr);
+        reset();
+    }
+
+    @Override public String name() { return "noise"; }
+
+    @Override public void process(float[] buf, int n) {
+        for (int i = 0; i < n; i++) {
+            frame[hop + pos] = buf[i];
+            buf[i] = ready[pos];
+            if (++pos == hop) {
+                pos = 0;
+                processFrame();
+            }
+        }
+    }
+
+    @Override public int latencySamples() { return size; }
+
+    @Override public void reset() {
+        java.util.Arrays.fill(frame, 0f);
+        java.util.Arrays.fill(noise, 0f);
+        java.util.Arrays.fill(gain, 1f);
+        java.util.Arrays.fill(tail, 0f);
+        java.util.Arrays.fill(ready, 0f);
+        pos = 0;
+        frames = 0;
+    }
+
+    private void processFrame() {
+        for (int i = 0; i < size; i++) {
+            re[i] = frame[i] * window[i];
+            im[i] = 0f;
+        }
+        fft(re, im, false);
+        frames++;
+        for (int k = 0; k < bins; k++) {
+            float p = re[k] * re[k] + im[k] * im[k];
+            float nk = noise[k];
+            if (frames <= INIT_FRAMES) {
+                nk += (p - nk) / frames;
+            } else if (p < NOISE_GATE * nk) {
+                nk += NOISE_ALPHA * (p - nk);
+            } else {
+                nk = Math.min(p, Math.max(nk, NOISE_EPS) * noiseRise); // 数字静音后也能从 0 重新爬升
+            }
+            if (nk < NOISE_EPS) nk = 0f;
+            noise[k] = nk;
+            float g;
+            if (nk == 0f) {
+                g = 1f;
+            } else if (p > 0f) {
+                g = 1f - OVER_SUBTRACT * nk / p;
+                if (g < GAIN_FLOOR) g = GAIN_FLOOR;
+                g = GAIN_SMOOTH * gain[k] + (1f - GAIN_SMOOTH) * g;
+            } else {
+                g = gain[k];
+            }
+            gain[k] = g;
+            re[k] *= g;
+            im[k] *= g;
+            if (k > 0 && k < size - k) {
+                // 共轭对称频点
+                re[size - k] = re[k];
+                im[size - k] = -im[k];
+            }
+        }
+        fft(re, im, true);
+        for (int i = 0; i < hop; i++) {
+            ready[i] = tail[i] + re[i] * window[i];
+            tail[i] = re[hop + i] * window[hop + i];
+        }
+        System.arraycopy(frame, hop, frame, 0, hop);
+    }
+
+    // 原地基 2 FFT；inverse 时含 1/n 缩放
+    private void fft(float[] xr, float[] xi, boolean inverse) {
+        int n = size;
+        for (int i = 0; i < n; i++) {
+            int j = bitRev[i];
+            if (j > i) {
+                float t = xr[i]; xr[i] = xr[j]; xr[j] = t;
+                t = xi[i]; xi[i] = xi[j]; xi[j] = t;
+            }
+        }
+        for (int len = 2; len <= n; len <<= 1) {
+            int half = len >> 1;
+            int step = n / len;
+            for (int i = 0; i < n; i += len) {
+                for (int j = 0; j < half; j++) {
+                    float wr = cosTable[j * step];
+                    float wi = inverse ? sinTable[j * step] : -sinTable[j * step];
+                    int a = i + j, b = a + half;
+                    float tr = xr[b] * wr - xi[b] * wi;
+                    float ti = xr[b] * wi + xi[b] * wr;
+                    xr[b] = xr[a] - tr;
+                    xi[b] = xi[a] - ti;
+                    xr[a] += tr;
+                    xi[a] += ti;
+                }
+            }
+        }
+        if (inverse) {
+            float s = 1f / n;
+            for (int i = 0; i < n; i++) { xr[i] *= s; xi[i] *= s; }
+        }
+    }
+}
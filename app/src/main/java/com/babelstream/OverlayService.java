@@ -91,6 +91,7 @@ public class OverlayService extends Service {
 
         windowManager = (WindowManager) getSystemService(WINDOW_SERVICE);
         showOverlay();
+        try { if (!RecognitionService.isActive()) RecognizerWarmup.prewarm(this); } catch (Throwable ignore) {}
 
         if (android.os.Build.VERSION.SDK_INT >= 33) {
             registerReceiver(updateReceiver, new IntentFilter(ACTION_UPDATE_TEXT),
@@ -0,0 +1,141 @@
+package com.babelstream;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 单生产者/单消费者 PCM 环形缓冲（无锁）
+ * - 生产者为采集回调线程（write），消费者为 SDK 取数线程（read）
+ * - 读写位置为单调递增的 long，容量取 2 的幂，下标用掩码计算；每次读写至多两次 System.arraycopy
+ * - 缓冲满时覆盖最旧数据：生产者用 CAS 推进读位置，消费者拷贝后用 CAS 校验读位置未被改动，否则重读
+ * - 读端可带截止时间阻塞：无数据时 park，生产者写入后 unpark，不再 sleep 轮询
+ * - 也可直接写入 short 样本：经小端 ShortBuffer 视图批量写入，省去逐字节转换
+ * - 覆盖最旧数据时累计丢弃字节数（overrunBytes），便于上层发现积压与丢音
+ */
+final class PcmRingBuffer {
+    private final byte[] buf;
+    private final int mask;
+    private final AtomicLong readPos = new AtomicLong(0L);
+    private volatile long writePos = 0L;
+    private volatile Thread waiter = null;
+    private volatile long overrunBytes = 0L; // 仅生产者写
+    // 仅生产者使用（position 可变），样本写入时字节位置始终为偶数
+    private final ShortBuffer shortView;
+
+    PcmRingBuffer(int cap) {
+        int c = Integer.highestOneBit(Math.max(8192, cap) - 1) << 1; // 向上取 2 的幂
+        buf = new byte[c];
+        mask = c - 1;
+        shortView = ByteBuffer.wrap(buf).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+    }
+
+    int capacity() { return buf.length; }
+
+    /** 累计写入字节数（即下一次写入的流位置） */
+    long writePosition() { return writePos; }
+
+    /** 下一次读取的流位置 */
+    long readPosition() { return readPos.get(); }
+
+    /** 因缓冲满而被覆盖丢弃的累计字节数 */
+    long overrunBytes() { return overrunBytes; }
+
+    /** 当前可读字节数 */
+    int available() {
+        return (int) (writePos - readPos.get());
+    }
+
+    /** 丢弃全部未读数据（仅在生产者/消费者都空闲时调用，如重启会话前） */
+    void clear() {
+        readPos.set(writePos);
+    }
+
+    /** 生产者写入；只写整样本（奇数长度舍去末字节），保持写位置为偶数；空间不足时覆盖最旧数据 */
+    void write(byte[] in, int off, int len) {
+        int n = Math.min(len, in.length - off) & ~1;
+        if (n <= 0) return;
+        int cap = buf.length;
+        if (n > cap) { off += n - cap; n = cap; } // 仅保留最新的 cap 字节
+        long w = reserve(n);
+        int idx = (int) (w & mask);
+        int first = Math.min(n, cap - idx);
+        System.arraycopy(in, off, buf, idx, first);
+        if (first < n) System.arraycopy(in, off + first, buf, 0, n - first);
+        publish(w + n);
+    }
+
+    /** 生产者写入 PCM16 样本（按小端存储）；空间不足时覆盖最旧数据 */
+    void write(short[] in, int off, int count) {
+        int n = Math.min(count, in.length - off);
+        if (n <= 0) return;
+        int capSamples = buf.length >> 1;
+        if (n > capSamples) { off += n - capSamples; n = capSamples; }
+        long w = reserve(n << 1);
+        int idx = (int) (w & mask) >> 1;
+        int first = Math.min(n, capSamples - idx);
+        shortView.position(idx);
+        shortView.put(in, off, first);
+        if (first < n) {
+            shortView.position(0);
+            shortView.put(in, off + first, n - first);
+        }
+        publish(w + ((long) n << 1));
+    }
+
+    // 为即将写入的 n 字节腾出空间（必要时推进读位置丢弃最旧数据），返回写起点
+    private long reserve(int n) {
+        long w = writePos;
+        long minRead = w + n - buf.length;
+        for (;;) {
+            long r = readPos.get();
+            if (r >= minRead) break;
+            if (readPos.compareAndSet(r, minRead)) {
+                overrunBytes += minRead - r;
+                break;
+            }
+        }
+        return w;
+    }
+
+    private void publish(long newWritePos) {
+        writePos = newWritePos; // volatile 发布
+        Thread t = waiter;
+        if (t != null) LockSupport.unpark(t);
+    }
+
+    /** 消费者非阻塞读取，返回实际读取字节数 */
+    int read(byte[] out, int off, int len) {
+        for (;;) {
+            long r = readPos.get();
+            long w = writePos;
+            int n = (int) Math.min(len, w - r);
+            if (n <= 0) return 0;
+            int idx = (int) (r & mask);
+            int first = Math.min(n, buf.length - idx);
+            System.arraycopy(buf, idx, out, off, first);
+            if (first < n) System.arraycopy(buf, 0, out, off + first, n - first);
+            if (readPos.compareAndSet(r, r + n)) return n;
+            // 拷贝期间被生产者覆盖，按新的读位置重读
+        }
+    }
+
+    /** 消费者阻塞读取：尽量读满 len，最多等待 timeoutMs；返回实际读取字节数 */
+    int read(byte[] out, int off, int len, long timeoutMs) {
+        long deadline = System.nanoTime() + timeoutMs * 1_000_000L;
+        int total = 0;
+        while (total < len) {
+            int got = read(out, off + total, len - total);
+            if (got > 0) { total += got; continue; }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || Thread.currentThread().isInterrupted()) break;
+            waiter = Thread.currentThread();
+            // 先登记再复查，避免与生产者的 unpark 错过
+            if (available() <= 0) LockSupport.parkNanos(this, remaining);
+            waiter = null;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,33 @@
+package com.babelstream;
+
+/**
+ * 峰值限幅：超过门限时瞬时压低增益，随后按释放时间恢复，避免 AGC 放大后的削波失真
+ */
+final class PeakLimiter implements AudioFilter {
+    private static final float THRESHOLD = 32767f * 0.89f; // 约 -1dBFS
+    private static final int RELEASE_MS = 50;
+
+    private final float release;
+    private float env = 1f;
+
+    PeakLimiter(int sampleRate) {
+        int sr = sampleRate > 0 ? sampleRate : 16000;
+        release = (float) (1.0 - Math.exp(-1.0 / (sr * RELEASE_MS / 1000.0)));
+    }
+
+    @Override public String name() { return "limiter"; }
+
+    @Override public void process(float[] buf, int n) {
+        float e = env;
+        for (int i = 0; i < n; i++) {
+            float x = buf[i];
+            float a = Math.abs(x) * e;
+            if (a > THRESHOLD) e = THRESHOLD / Math.abs(x);
+            buf[i] = x * e;
+            e += (1f - e) * release;
+        }
+        env = e;
+    }
+
+    @Override public void reset() { env = 1f; }
+}
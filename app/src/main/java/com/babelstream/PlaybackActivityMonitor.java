@@ -0,0 +1,175 @@
+package com.babelstream;
+
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.AudioManager;
+import android.media.AudioPlaybackConfiguration;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.List;
+
+/**
+ * 系统播放活动监听：AudioManager.AudioPlaybackCallback 报告的播放中，是否有与捕获用途匹配且处于播放状态的一路
+ * - 变为有播放：立即回调 active=true（恢复捕获的时延只取决于回调与重建录音）
+ * - 变为无播放：延迟 IDLE_DELAY_MS 仍无播放才回调 active=false，避免切歌/缓冲时来回抖动
+ * - 暂停/停止的播放器在释放前仍留在活动列表里，按播放器状态过滤；读不到状态时按捕获电平判断
+ * - 无法获知播放方 UID（非系统应用不可见），按音频用途匹配；捕获范围不是“全部”时
+ *   （仅列表/排除列表/跟随前台），匹配到的播放可能不在捕获范围内，同样改按捕获电平判断
+ * 回调在主线程；onCaptureLevel 可在任意线程调用。
+ */
+final class PlaybackActivityMonitor {
+    private static final String TAG = "PlaybackActivity";
+    private static final long IDLE_DELAY_MS = 2000L;
+    private static final long LEVEL_CHECK_MS = 500L;
+    private static final int AUDIBLE_LEVEL = 2;           // 捕获电平百分比，达到即视为有声
+    private static final int PLAYER_STATE_STARTED = 2;    // AudioPlaybackConfiguration.PLAYER_STATE_STARTED（隐藏常量）
+    private static final int STATE_UNKNOWN = -1;
+    private static final java.lang.reflect.Method GET_PLAYER_STATE = findPlayerStateMethod();
+
+    interface Listener {
+        void onPlaybackActiveChanged(boolean active);
+    }
+
+    private final AudioManager audioManager;
+    private final int[] usages;
+    private final boolean levelBased;
+    private final Listener listener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private boolean registered = false;
+    private boolean active = true; // 未确认无播放前视为有播放，不提前暂停
+    private boolean stateUnknown = false; // 最近一次匹配中有读不到状态的播放器
+    private volatile long lastAudibleMs = 0L;
+
+    private final AudioManager.AudioPlaybackCallback callback = new AudioManager.AudioPlaybackCallback() {
+        @Override public void onPlaybackConfigChanged(List<AudioPlaybackConfiguration> configs) { update(configs); }
+    };
+
+    private final Runnable goIdle = new Runnable() {
+        @Override public void run() {
+            if (!registered || !active) return;
+            handler.removeCallbacks(levelCheck);
+            active = false;
+            Log.i(TAG, "no matching playback for " + IDLE_DELAY_MS + "ms");
+            listener.onPlaybackActiveChanged(false);
+        }
+    };
+
+    // 按电平判断时：有播放期间定期检查，连续 IDLE_DELAY_MS 无声即转为无播放
+    private final Runnable levelCheck = new Runnable() {
+        @Override public void run() {
+            if (!registered || !active) return;
+            if (android.os.SystemClock.uptimeMillis() - lastAudibleMs >= IDLE_DELAY_MS) {
+                Log.i(TAG, "capture silent while playback listed");
+                goIdle.run();
+            } else {
+                handler.postDelayed(this, LEVEL_CHECK_MS);
+            }
+        }
+    };
+
+    /**
+     * @param levelBased 捕获范围不是全部应用时传 true：匹配到的播放不一定被捕获，改以捕获电平判断是否空闲
+     */
+    PlaybackActivityMonitor(Context context, int[] usages, boolean levelBased, Listener listener) {
+        this.audioManager = (AudioManager) context.getApplicationContext().getSystemService(Context.AUDIO_SERVICE);
+        this.usages = usages != null ? usages.clone() : new int[] { AudioAttributes.USAGE_MEDIA };
+        this.levelBased = levelBased;
+        this.listener = listener;
+    }
+
+    boolean start() {
+        if (registered) return true;
+        if (audioManager == null || android.os.Build.VERSION.SDK_INT < 26) return false;
+        try {
+            audioManager.registerAudioPlaybackCallback(callback, handler);
+            registered = true;
+            update(audioManager.getActivePlaybackConfigurations());
+            return true;
+        } catch (Throwable t) {
+            Log.w(TAG, "registerAudioPlaybackCallback failed", t);
+            return false;
+        }
+    }
+
+    void stop() {
+        if (!registered) return;
+        registered = false;
+        handler.removeCallbacks(goIdle);
+        handler.removeCallbacks(levelCheck);
+        try { audioManager.unregisterAudioPlaybackCallback(callback); } catch (Throwable ignore) {}
+    }
+
+    boolean isActive() { return active; }
+
+    /** 系统音频捕获每帧的电平（百分比），供按电平判断空闲 */
+    void onCaptureLevel(int level) {
+        if (level >= AUDIBLE_LEVEL) lastAudibleMs = android.os.SystemClock.uptimeMillis();
+    }
+
+    private void update(List<AudioPlaybackConfiguration> configs) {
+        if (!registered) return;
+        if (matches(configs)) {
+            handler.removeCallbacks(goIdle);
+            handler.removeCallbacks(levelCheck);
+            if (!active) {
+                active = true;
+                lastAudibleMs = android.os.SystemClock.uptimeMillis(); // 给恢复后的捕获留出出声时间
+                Log.i(TAG, "matching playback started");
+                listener.onPlaybackActiveChanged(true);
+            }
+            if (levelBased || stateUnknown) handler.postDelayed(levelCheck, LEVEL_CHECK_MS);
+        } else if (active) {
+            handler.removeCallbacks(goIdle);
+            handler.removeCallbacks(levelCheck);
+            handler.postDelayed(goIdle, IDLE_DELAY_MS);
+        }
+    }
+
+    // 有用途匹配且在播放（或状态未知）的一路即为 true；同时记录是否遇到状态未知的播放器
+    private boolean matches(List<AudioPlaybackConfiguration> configs) {
+        stateUnknown = false;
+        if (configs == null) return false;
+        boolean any = false;
+        for (AudioPlaybackConfiguration c : configs) {
+            AudioAttributes attrs;
+            try { attrs = c.getAudioAttributes(); } catch (Throwable t) { continue; }
+            if (attrs == null || !usageMatches(attrs.getUsage())) continue;
+            int state = playerState(c);
+            if (state == PLAYER_STATE_STARTED) {
+                any = true;
+            } else if (state == STATE_UNKNOWN) {
+                stateUnknown = true;
+                any = true;
+            }
+        }
+        return any;
+    }
+
+    private boolean usageMatches(int usage) {
+        for (int u : usages) {
+            if (u == usage) return true;
+        }
+        return false;
+    }
+
+    // 播放器状态未列入公开 API，反射读取；读不到返回 STATE_UNKNOWN
+    private static int playerState(AudioPlaybackConfiguration c) {
+        if (GET_PLAYER_STATE == null) return STATE_UNKNOWN;
+        try {
+            Object v = GET_PLAYER_STATE.invoke(c);
+            return v instanceof Integer ? (Integer) v : STATE_UNKNOWN;
+        } catch (Throwable t) {
+            return STATE_UNKNOWN;
+        }
+    }
+
+    private static java.lang.reflect.Method findPlayerStateMethod() {
+        try {
+            return AudioPlaybackConfiguration.class.getMethod("getPlayerState");
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+}
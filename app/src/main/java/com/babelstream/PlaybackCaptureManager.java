@@ -15,12 +15,14 @@ import android.util.Log;
  * 系统音频采集（扬声器）管理器
  * 使用 AudioPlaybackCapture + MediaProjection 捕获系统播放音频
  * 将采样率重采样为 targetSampleRate（默认16000Hz）并以 PCM 16bit 单声道回调
+ * 捕获范围（用途/指定应用）见 CaptureTarget，可在录音中切换
  */
 public class PlaybackCaptureManager {
     private static final String TAG = "PlaybackCapture";
 
+    // 回调交出帧的所有权：接收方用完必须调用 frame.release()
     public interface AudioDataCallback {
-        void onAudioData(byte[] data, int length);
+        void onAudioData(AudioFrame frame);
         void onError(String error);
     }
 
@@ -29,10 +31,59 @@ public class PlaybackCaptureManager {
     private int inputChannelMask = AudioFormat.CHANNEL_IN_STEREO; // 优先立体声，必要时回退单声道
     private boolean inputStereo = true;
     private AudioRecord audioRecord;
-    private boolean isRecording = false;
+    private volatile boolean isRecording = false;
     private Thread recordingThread;
     private AudioDataCallback callback;
     private final MediaProjection mediaProjection;
+    private int resampleQuality = PolyphaseResampler.QUALITY_MEDIUM;
+    // 采集时刻与丢帧检测（仅录音线程使用）
+    private final CaptureClock clock = new CaptureClock();
+    // 捕获范围：pendingTarget 由其他线程设置，录音线程择机应用
+    private volatile CaptureTarget target = CaptureTarget.DEFAULT;
+    private volatile CaptureTarget pendingTarget;
+    // 无播放时暂停：录音线程释放 AudioRecord 并等待，恢复时按当前范围重建
+    private final Object pauseLock = new Object();
+    private volatile boolean paused = false;
+
+    /**
+     * 捕获范围：匹配的音频用途 + 仅包含/排除的应用 UID（AudioPlaybackCaptureConfiguration 不允许两者同时使用）
+     */
+    public static final class CaptureTarget {
+        public static final CaptureTarget DEFAULT = new CaptureTarget(
+                new int[] { AudioAttributes.USAGE_MEDIA, AudioAttributes.USAGE_GAME }, null, null, "all");
+
+        final int[] usages;
+        final int[] includeUids;
+        final int[] excludeUids;
+        final String label;
+
+        public CaptureTarget(int[] usages, int[] includeUids, int[] excludeUids, String label) {
+            this.usages = usages != null ? usages.clone() : new int[0];
+            this.includeUids = includeUids != null ? includeUids.clone() : new int[0];
+            this.excludeUids = excludeUids != null ? excludeUids.clone() : new int[0];
+            this.label = label != null ? label : "";
+        }
+
+        @Override public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CaptureTarget)) return false;
+            CaptureTarget t = (CaptureTarget) o;
+            return java.util.Arrays.equals(usages, t.usages)
+                    && java.util.Arrays.equals(includeUids, t.includeUids)
+                    && java.util.Arrays.equals(excludeUids, t.excludeUids);
+        }
+
+        @Override public int hashCode() {
+            return 31 * (31 * java.util.Arrays.hashCode(usages) + java.util.Arrays.hashCode(includeUids))
+                    + java.util.Arrays.hashCode(excludeUids);
+        }
+
+        @Override public String toString() {
+            return label + " usages=" + java.util.Arrays.toString(usages)
+                    + (includeUids.length > 0 ? " include=" + java.util.Arrays.toString(includeUids) : "")
+                    + (excludeUids.length > 0 ? " exclude=" + java.util.Arrays.toString(excludeUids) : "");
+        }
+    }
 
     public PlaybackCaptureManager(MediaProjection projection, int targetSampleRate) {
         this.mediaProjection = projection;
@@ -48,6 +99,11 @@ public class PlaybackCaptureManager {
         this.callback = cb;
     }
 
+    // 重采样质量档位（PolyphaseResampler.QUALITY_*），需在 start 前设置
+    public void setResampleQuality(int quality) {
+        this.resampleQuality = quality;
+    }
+
     public boolean start() {
         if (isRecording) return true;
 
@@ -57,80 +113,29 @@ public class PlaybackCaptureManager {
         }
 
         try {
-            AudioPlaybackCaptureConfiguration config =
-                    new AudioPlaybackCaptureConfiguration.Builder(mediaProjection)
-                            .addMatchingUsage(AudioAttributes.USAGE_MEDIA)
-                            .addMatchingUsage(AudioAttributes.USAGE_GAME)
-                            .build();
-
-            AudioFormat inputFormat = new AudioFormat.Builder()
-                    .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
-                    .setSampleRate(inputSampleRate)
-                    .setChannelMask(inputChannelMask)
-                    .build();
-
-            int bufferSize = AudioRecord.getMinBufferSize(
-                    inputSampleRate,
-                    inputChannelMask,
-                    AudioFormat.ENCODING_PCM_16BIT
-            );
-            bufferSize = Math.max(bufferSize, inputSampleRate * 2 * 2 / 10); // 至少100ms缓冲
-
-            audioRecord = new AudioRecord.Builder()
-                    .setAudioFormat(inputFormat)
-                    .setBufferSizeInBytes(bufferSize)
-                    .setAudioPlaybackCaptureConfig(config)
-                    .build();
-
-            if (audioRecord.getState() != AudioRecord.STATE_INITIALIZED) {
+            CaptureTarget t = pendingTarget != null ? pendingTarget : target;
+            pendingTarget = null;
+            AudioPlaybackCaptureConfiguration config = buildCaptureConfig(t);
+            audioRecord = openRecord(config);
+            if (audioRecord == null) {
                 // 尝试按 44.1k 回退一次
-                try { audioRecord.release(); } catch (Throwable ignore) {}
                 int alt = (inputSampleRate == 48000 ? 44100 : 48000);
                 Log.w(TAG, "init failed at " + inputSampleRate + ", retry with " + alt);
                 inputSampleRate = alt;
-                inputFormat = new AudioFormat.Builder()
-                        .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
-                        .setSampleRate(inputSampleRate)
-                        .setChannelMask(inputChannelMask)
-                        .build();
-                bufferSize = AudioRecord.getMinBufferSize(
-                        inputSampleRate,
-                        inputChannelMask,
-                        AudioFormat.ENCODING_PCM_16BIT
-                );
-                bufferSize = Math.max(bufferSize, inputSampleRate * 2 * 2 / 10);
-                audioRecord = new AudioRecord.Builder()
-                        .setAudioFormat(inputFormat)
-                        .setBufferSizeInBytes(bufferSize)
-                        .setAudioPlaybackCaptureConfig(config)
-                        .build();
-                if (audioRecord.getState() != AudioRecord.STATE_INITIALIZED) {
+                audioRecord = openRecord(config);
+                if (audioRecord == null) {
                     // 回退到单声道再试一次
-                    try { audioRecord.release(); } catch (Throwable ignore) {}
                     inputChannelMask = AudioFormat.CHANNEL_IN_MONO;
                     inputStereo = false;
-                    inputFormat = new AudioFormat.Builder()
-                            .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
-                            .setSampleRate(inputSampleRate)
-                            .setChannelMask(inputChannelMask)
-                            .build();
-                    bufferSize = AudioRecord.getMinBufferSize(
-                            inputSampleRate,
-                            inputChannelMask,
-                            AudioFormat.ENCODING_PCM_16BIT
-                    );
-                    bufferSize = Math.max(bufferSize, inputSampleRate * 2 / 10);
-                    audioRecord = new AudioRecord.Builder()
-                            .setAudioFormat(inputFormat)
-                            .setBufferSizeInBytes(bufferSize)
-                            .setAudioPlaybackCaptureConfig(config)
-                            .build();
-                    if (audioRecord.getState() != AudioRecord.STATE_INITIALIZED) {
+                    audioRecord = openRecord(config);
+                    if (audioRecord == null) {
                         if (callback != null) callback.onError("AudioRecord初始化失败");
                         return false;
                     }
                 }
             }
+            target = t;
+            Log.i(TAG, "capture target: " + t);
 
             audioRecord.startRecording();
             try {
@@ -148,56 +153,202 @@ public class PlaybackCaptureManager {
         }
     }
 
-    private void recordingLoop() {
-        byte[] buffer = new byte[4096 * (inputStereo ? 4 : 2)]; // 16bit * channels
-        short[] shortBuf = new short[buffer.length / 2];
-        short[] monoBuf = new short[inputStereo ? shortBuf.length / 2 : shortBuf.length];
-
-        Resampler resampler = new Resampler(inputSampleRate, targetSampleRate);
-        short[] resampleOut = new short[monoBuf.length];
+    /**
+     * 设置捕获范围；录音中调用时由录音线程在两次读取之间换上按新范围构建的 AudioRecord（格式不变），
+     * 构建失败则保留原录音
+     */
+    public void setCaptureTarget(CaptureTarget t) {
+        if (t == null) return;
+        if (!isRecording) {
+            target = t;
+            return;
+        }
+        pendingTarget = t.equals(target) ? null : t; // 改回当前范围时撤销尚未执行的切换
+    }
 
-        while (isRecording) {
-            int read = audioRecord.read(buffer, 0, buffer.length);
-            if (read <= 0) continue;
+    public CaptureTarget getCaptureTarget() { return target; }
 
-            // bytes -> short
-            int samples = read / 2;
-            for (int i = 0; i < samples; i++) {
-                int lo = buffer[i * 2] & 0xFF;
-                int hi = buffer[i * 2 + 1] << 8;
-                shortBuf[i] = (short) (hi | lo);
+    // 用途 + 应用 UID 组装捕获配置；包含与排除 UID 不能同时使用，包含优先
+    private AudioPlaybackCaptureConfiguration buildCaptureConfig(CaptureTarget t) {
+        AudioPlaybackCaptureConfiguration.Builder b = new AudioPlaybackCaptureConfiguration.Builder(mediaProjection);
+        int added = 0;
+        for (int usage : t.usages) {
+            try {
+                b.addMatchingUsage(usage);
+                added++;
+            } catch (IllegalArgumentException e) {
+                Log.w(TAG, "usage " + usage + " not capturable: " + e.getMessage());
             }
+        }
+        if (added == 0) b.addMatchingUsage(AudioAttributes.USAGE_MEDIA);
+        if (t.includeUids.length > 0) {
+            for (int uid : t.includeUids) b.addMatchingUid(uid);
+        } else {
+            for (int uid : t.excludeUids) b.excludeUid(uid);
+        }
+        return b.build();
+    }
+
+    // 按当前采样率/声道构建录音；未能初始化时返回 null
+    private AudioRecord openRecord(AudioPlaybackCaptureConfiguration config) {
+        int channels = inputStereo ? 2 : 1;
+        AudioFormat inputFormat = new AudioFormat.Builder()
+                .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
+                .setSampleRate(inputSampleRate)
+                .setChannelMask(inputChannelMask)
+                .build();
+        int bufferSize = AudioRecord.getMinBufferSize(
+                inputSampleRate,
+                inputChannelMask,
+                AudioFormat.ENCODING_PCM_16BIT
+        );
+        bufferSize = Math.max(bufferSize, inputSampleRate * 2 * channels / 10); // 至少100ms缓冲
+        AudioRecord record = new AudioRecord.Builder()
+                .setAudioFormat(inputFormat)
+                .setBufferSizeInBytes(bufferSize)
+                .setAudioPlaybackCaptureConfig(config)
+                .build();
+        if (record.getState() != AudioRecord.STATE_INITIALIZED) {
+            try { record.release(); } catch (Throwable ignore) {}
+            return null;
+        }
+        return record;
+    }
+
+    /**
+     * 暂停/恢复捕获（无播放时省电）：暂停时录音线程停止并释放 AudioRecord，不再占用系统捕获；
+     * 恢复时按当前捕获范围重建并开始录音，通常在数十毫秒内完成
+     */
+    public void setPaused(boolean pause) {
+        synchronized (pauseLock) {
+            paused = pause;
+            pauseLock.notifyAll();
+        }
+    }
 
-            int monoSamples;
-            if (inputStereo) {
-                // stereo -> mono (平均)
-                monoSamples = samples / 2;
-                for (int i = 0, j = 0; i < monoSamples; i++, j += 2) {
-                    int s = (shortBuf[j] + shortBuf[j + 1]) / 2;
-                    monoBuf[i] = (short) s;
+    public boolean isPaused() { return paused; }
+
+    // 按范围构建并开始录音；失败返回 null
+    private AudioRecord openStarted(CaptureTarget t) {
+        AudioRecord record = null;
+        try {
+            record = openRecord(buildCaptureConfig(t));
+            if (record != null) record.startRecording();
+            return record;
+        } catch (Throwable e) {
+            Log.w(TAG, "open capture failed: " + e.getMessage());
+            if (record != null) { try { record.release(); } catch (Throwable ignore) {} }
+            return null;
+        }
+    }
+
+    // 录音线程内：换上按新范围构建的录音，旧录音随即释放
+    private void applyTarget(CaptureTarget t) {
+        AudioRecord next = openStarted(t);
+        if (next == null) {
+            if (callback != null) callback.onError("切换捕获范围失败，沿用原设置");
+            return;
+        }
+        releaseRecord(audioRecord);
+        audioRecord = next;
+        target = t;
+        resetClock(next);
+        Log.i(TAG, "capture retargeted: " + t);
+    }
+
+    // 录音线程内：释放录音并等待恢复；返回时已有可读的录音，或已停止
+    private void parkWhilePaused() {
+        releaseRecord(audioRecord);
+        audioRecord = null;
+        Log.i(TAG, "capture paused");
+        while (isRecording) {
+            synchronized (pauseLock) {
+                while (paused && isRecording) {
+                    try { pauseLock.wait(); } catch (InterruptedException e) { return; }
                 }
-            } else {
-                monoSamples = samples;
-                System.arraycopy(shortBuf, 0, monoBuf, 0, monoSamples);
             }
+            if (!isRecording) return;
+            long t0 = System.nanoTime();
+            CaptureTarget t = pendingTarget != null ? pendingTarget : target;
+            pendingTarget = null;
+            AudioRecord next = openStarted(t);
+            if (next != null) {
+                audioRecord = next;
+                target = t;
+                resetClock(next);
+                Log.i(TAG, "capture resumed in " + (System.nanoTime() - t0) / 1_000_000L + "ms");
+                return;
+            }
+            if (callback != null) callback.onError("恢复系统音频捕获失败，稍后重试");
+            try { Thread.sleep(500); } catch (InterruptedException e) { return; }
+        }
+    }
 
-            // 重采样到 targetSampleRate
-            int outSamples = resampler.process(monoBuf, monoSamples, resampleOut);
+    private void resetClock(AudioRecord record) {
+        int bufferFrames;
+        try { bufferFrames = record.getBufferSizeInFrames(); } catch (Throwable e) { bufferFrames = 4096; }
+        clock.reset(inputSampleRate, bufferFrames);
+    }
+
+    private static void releaseRecord(AudioRecord record) {
+        if (record == null) return;
+        try { record.stop(); } catch (Throwable ignore) {}
+        try { record.release(); } catch (Throwable ignore) {}
+    }
 
-            // short -> bytes
-            int outBytes = outSamples * 2;
-            byte[] out = new byte[outBytes];
-            for (int i = 0; i < outSamples; i++) {
-                out[i * 2] = (byte) (resampleOut[i] & 0xFF);
-                out[i * 2 + 1] = (byte) ((resampleOut[i] >> 8) & 0xFF);
+    private void recordingLoop() {
+        // 采集线程只负责读取、下混/重采样成帧并交出，分析/分发在下游阶段线程完成
+        try {
+            android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_URGENT_AUDIO);
+        } catch (Throwable t) {
+            Log.w(TAG, "setThreadPriority failed: " + t.getMessage());
+        }
+        // 直接按 short 读取交错 PCM（本机字节序），由融合内核一次完成下混 + 重采样
+        int channels = inputStereo ? 2 : 1;
+        short[] buffer = new short[4096 * channels];
+
+        PolyphaseResampler resampler = new PolyphaseResampler(inputSampleRate, targetSampleRate, resampleQuality);
+        AudioFrame.Pool framePool = new AudioFrame.Pool(resampler.maxOutput(4096), 16);
+        int bufferFrames;
+        try { bufferFrames = audioRecord.getBufferSizeInFrames(); } catch (Throwable t) { bufferFrames = 4096; }
+        clock.reset(inputSampleRate, bufferFrames);
+
+        while (isRecording) {
+            if (paused) {
+                parkWhilePaused();
+                if (audioRecord == null) break;
+                resampler.reset(); // 暂停前后的音频不连续
+                continue;
+            }
+            CaptureTarget next = pendingTarget;
+            if (next != null) {
+                pendingTarget = null;
+                applyTarget(next);
             }
+            int read = audioRecord.read(buffer, 0, buffer.length);
+            if (read <= 0) continue;
+            long readTs = System.nanoTime();
+            int frames = read / channels;
+            long captureNs = clock.onRead(audioRecord, frames, readTs);
 
-            if (callback != null) callback.onAudioData(out, out.length);
+            if (callback == null) continue;
+            // 下混 + 重采样到 targetSampleRate，直接写入池化帧
+            AudioFrame frame = framePool.acquire(resampler.maxOutput(frames));
+            frame.length = resampler.processInterleaved(buffer, frames, channels, frame.samples);
+            frame.sumSquares = resampler.lastSumSquares();
+            frame.level = LevelMeter.percentFromSumSquares(frame.sumSquares, frame.length);
+            frame.sampleRate = targetSampleRate;
+            frame.captureTimeNs = captureNs;
+            callback.onAudioData(frame);
         }
     }
 
+    /** 采集丢帧/读取延迟摘要（诊断用） */
+    public String captureStats() { return clock.summary(); }
+
     public void stop() {
         isRecording = false;
+        synchronized (pauseLock) { pauseLock.notifyAll(); }
         if (recordingThread != null) {
             try { recordingThread.join(1000); } catch (InterruptedException ignored) {}
         }
@@ -209,29 +360,4 @@ public class PlaybackCaptureManager {
     }
 
     public boolean isRecording() { return isRecording; }
-
-    // 简单重采样器（最近邻/累积步进），效率优先
-    static class Resampler {
-        private final int inRate;
-        private final int outRate;
-        private final double step;
-        private double pos = 0;
-
-        Resampler(int inRate, int outRate) {
-            this.inRate = inRate;
-            this.outRate = outRate;
-            this.step = (double) inRate / outRate;
-        }
-
-        int process(short[] input, int inSamples, short[] output) {
-            int outCount = 0;
-            while (pos < inSamples && outCount < output.length) {
-                int idx = (int) pos;
-                output[outCount++] = input[idx];
-                pos += step;
-            }
-            pos -= inSamples;
-            return outCount;
-        }
-    }
 }
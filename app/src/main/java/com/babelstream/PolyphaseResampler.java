@@ -0,0 +1,249 @@
+package com.babelstream;
+
+/**
+ * 多相加窗 sinc 重采样器（PCM16 单声道）
+ * - 输入/输出采样率按最大公约数约分为 up/down 有理比，预先计算 up 个相位的 FIR 系数表
+ * - 同采样率直通；整数倍降采样（如 48k→16k 为 3:1）走单相位快速路径；
+ *   非整数比（如 44.1k→16k 为 160/441）走多相位查表路径，相位推进全部为整数运算
+ * - 跨块保留 taps-1 个历史样本保证连续；稳态处理不分配内存
+ * - processInterleaved 为融合内核：交错多声道下混、重采样、写出与平方和累加在一次处理中完成
+ * - 输出时顺带累加平方和（lastSumSquares），供电平表使用，无需再遍历一次
+ * - quality 控制每相位抽头数（即每个输出样本的乘加次数），在音质与 CPU 之间取舍
+ */
+public final class PolyphaseResampler {
+    public static final int QUALITY_LOW = 0;    // 约 4 个过零点：最省电
+    public static final int QUALITY_MEDIUM = 1; // 约 8 个过零点：默认
+    public static final int QUALITY_HIGH = 2;   // 约 16 个过零点：阻带更深
+
+    private final int inRate;
+    private final int outRate;
+    private final int up;     // L：上采样因子
+    private final int down;   // M：下采样因子
+    private final int downWhole; // M / L：每个输出推进的整数输入样本
+    private final int downFrac;  // M % L：每个输出推进的相位余量
+    private final int taps;   // 每相位抽头数
+    private final float[] coeffs; // [phase * taps + j]，已按点积方向排列
+    private float[] work;     // [0, taps-1) 为历史样本，其后为当前块输入
+    private int phase = 0;    // 下一输出在上采样域的相位 (0..up-1)
+    private int nextIn = 0;   // 下一输出对应的输入样本下标（相对当前块）
+    private long lastSumSquares = 0L;
+
+    public PolyphaseResampler(int inRate, int outRate, int quality) {
+        if (inRate <= 0 || outRate <= 0) throw new IllegalArgumentException("bad rate " + inRate + "->" + outRate);
+        this.inRate = inRate;
+        this.outRate = outRate;
+        int g = gcd(inRate, outRate);
+        this.up = outRate / g;
+        this.down = inRate / g;
+        this.downWhole = down / up;
+        this.downFrac = down % up;
+        if (up == 1 && down == 1) {
+            this.taps = 1;
+            this.coeffs = new float[] { 1f };
+        } else {
+            int zc;
+            double beta;
+            switch (quality) {
+                case QUALITY_LOW: zc = 4; beta = 6.0; break;
+                case QUALITY_HIGH: zc = 16; beta = 9.0; break;
+                default: zc = 8; beta = 7.5; break;
+            }
+            // 降采样时截止频率按比例收窄，抽头数需同比例增加以维持过渡带宽
+            double ratio = Math.max(1.0, (double) down / up);
+            this.taps = (int) Math.ceil(2 * zc * ratio);
+            this.coeffs = design(up, down, taps, beta);
+        }
+        this.work = new float[taps - 1 + 1024];
+    }
+
+    public int getInRate() { return inRate; }
+    public int getOutRate() { return outRate; }
+    public boolean isPassthrough() { return up == 1 && down == 1; }
+
+    /** 最近一次 process 输出样本的平方和 */
+    public long lastSumSquares() { return lastSumSquares; }
+
+    /** 给定输入样本数时，单次 process 可能产生的最大输出样本数（用于预分配输出缓冲） */
+    public int maxOutput(int inSamples) {
+        return (int) (((long) inSamples * up + down - 1) / down) + 1;
+    }
+
+    /** 清空历史与相位（切换音源后调用，避免新旧数据混叠） */
+    public void reset() {
+        java.util.Arrays.fill(work, 0f);
+        phase = 0;
+        nextIn = 0;
+    }
+
+    /**
+     * 重采样一块单声道输入，返回写入 output 的样本数。
+     * output 容量应不小于 maxOutput(inSamples)，否则多余输出被丢弃。
+     */
+    public int process(short[] input, int inSamples, short[] output) {
+        return processInterleaved(input, inSamples, 1, output);
+    }
+
+    /**
+     * 融合内核：交错 PCM16（channels 路）→ 下混为单声道 → 重采样，直接写入 output。
+     * frames 为每路样本数；返回写入 output 的样本数，平方和见 lastSumSquares()。
+     */
+    public int processInterleaved(short[] input, int frames, int channels, short[] output) {
+        lastSumSquares = 0L;
+        if (frames <= 0) return 0;
+        if (isPassthrough()) {
+            int n = Math.min(frames, output.length);
+            long sum = 0;
+            if (channels == 2) {
+                for (int i = 0, j = 0; i < n; i++, j += 2) {
+                    int v = (input[j] + input[j + 1]) >> 1;
+                    output[i] = (short) v;
+                    sum += v * v;
+                }
+            } else if (channels == 1) {
+                for (int i = 0; i < n; i++) {
+                    int v = input[i];
+                    output[i] = (short) v;
+                    sum += v * v;
+                }
+            } else {
+                // 与重采样路径相同：各声道取平均
+                for (int i = 0, j = 0; i < n; i++, j += channels) {
+                    int acc = 0;
+                    for (int c = 0; c < channels; c++) acc += input[j + c];
+                    int v = acc / channels;
+                    output[i] = (short) v;
+                    sum += v * v;
+                }
+            }
+            lastSumSquares = sum;
+            return n;
+        }
+        int hist = taps - 1;
+        ensureWork(hist + frames);
+        float[] w = work;
+        // 下混（或单声道转换）直接写入滤波工作区
+        if (channels == 2) {
+            for (int i = 0, j = 0; i < frames; i++, j += 2) w[hist + i] = (input[j] + input[j + 1]) * 0.5f;
+        } else if (channels == 1) {
+            for (int i = 0; i < frames; i++) w[hist + i] = input[i];
+        } else {
+            float scale = 1f / channels;
+            for (int i = 0, j = 0; i < frames; i++, j += channels) {
+                int acc = 0;
+                for (int c = 0; c < channels; c++) acc += input[j + c];
+                w[hist + i] = acc * scale;
+            }
+        }
+        int outCount = (up == 1) ? decimate(frames, output) : polyphase(frames, output);
+        // 保留最后 taps-1 个样本作为下一块的历史
+        System.arraycopy(w, frames, w, 0, hist);
+        nextIn -= frames;
+        return outCount;
+    }
+
+    // 整数倍降采样：单相位，输入下标每次前进 down
+    private int decimate(int inSamples, short[] output) {
+        final float[] w = work;
+        final float[] c = coeffs;
+        final int t = taps;
+        final int cap = output.length;
+        int pos = nextIn;
+        int outCount = 0;
+        long sum = 0;
+        while (pos < inSamples && outCount < cap) {
+            float acc = 0f;
+            for (int j = 0; j < t; j++) acc += c[j] * w[pos + j];
+            short v = clamp(acc);
+            output[outCount++] = v;
+            sum += v * v;
+            pos += down;
+        }
+        nextIn = pos;
+        lastSumSquares = sum;
+        return outCount;
+    }
+
+    // 通用有理比：按相位查表，整数推进相位/输入下标
+    private int polyphase(int inSamples, short[] output) {
+        final float[] w = work;
+        final float[] c = coeffs;
+        final int t = taps;
+        final int cap = output.length;
+        int pos = nextIn;
+        int ph = phase;
+        int outCount = 0;
+        long sum = 0;
+        while (pos < inSamples && outCount < cap) {
+            int cb = ph * t;
+            float acc = 0f;
+            for (int j = 0; j < t; j++) acc += c[cb + j] * w[pos + j];
+            short v = clamp(acc);
+            output[outCount++] = v;
+            sum += v * v;
+            ph += downFrac;
+            pos += downWhole;
+            if (ph >= up) { ph -= up; pos++; }
+        }
+        phase = ph;
+        nextIn = pos;
+        lastSumSquares = sum;
+        return outCount;
+    }
+
+    private void ensureWork(int need) {
+        if (work.length >= need) return;
+        // 仅在遇到更大的读块时扩容一次，稳态不再分配
+        float[] nw = new float[need + (need >> 2)];
+        System.arraycopy(work, 0, nw, 0, taps - 1);
+        work = nw;
+    }
+
+    private static short clamp(float v) {
+        int s = Math.round(v);
+        if (s > Short.MAX_VALUE) return Short.MAX_VALUE;
+        if (s < Short.MIN_VALUE) return Short.MIN_VALUE;
+        return (short) s;
+    }
+
+    // Kaiser 窗 sinc 原型低通，长度 up*taps，拆分为 up 个相位并逐相位归一化直流增益
+    private static float[] design(int up, int down, int taps, double beta) {
+        int n = up * taps;
+        double fc = 0.5 / Math.max(up, down) * 0.92; // 相对上采样域的截止（周期/样本），留 8% 过渡带
+        double center = (n - 1) / 2.0;
+        double i0Beta = besselI0(beta);
+        double[] h = new double[n];
+        for (int k = 0; k < n; k++) {
+            double x = k - center;
+            double sinc = (x == 0) ? 2 * fc : Math.sin(2 * Math.PI * fc * x) / (Math.PI * x);
+            double r = 2.0 * k / (n - 1) - 1.0;
+            double win = besselI0(beta * Math.sqrt(Math.max(0.0, 1 - r * r))) / i0Beta;
+            h[k] = sinc * win;
+        }
+        float[] out = new float[n];
+        for (int p = 0; p < up; p++) {
+            // 输出相位 p 使用 h[p + j*up]，j 越大对应越早的输入；倒序存放以便与 work 正向点积
+            double sum = 0;
+            for (int j = 0; j < taps; j++) sum += h[p + j * up];
+            double norm = (sum != 0) ? 1.0 / sum : 0;
+            for (int j = 0; j < taps; j++) {
+                out[p * taps + (taps - 1 - j)] = (float) (h[p + j * up] * norm);
+            }
+        }
+        return out;
+    }
+
+    private static double besselI0(double x) {
+        double sum = 1, term = 1, q = x * x / 4;
+        for (int k = 1; k < 50; k++) {
+            term *= q / ((double) k * k);
+            sum += term;
+            if (term < 1e-12 * sum) break;
+        }
+        return sum;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) { int t = a % b; a = b; b = t; }
+        return a;
+    }
+}
@@ -0,0 +1,73 @@
+package com.babelstream;
+
+/**
+ * 前导音频缓冲（按时间计量）
+ * - 始终保留最近 capacityMs 的已处理 PCM（重采样后的单声道样本），不论是否已送入识别器
+ * - 样本按单调递增的绝对位置编号：调用方记下“已送到哪个位置”，恢复推流或新会话开始时
+ *   只补发其后、且仍在窗口内的部分，不会重复也不会越过窗口
+ * - 同时记录最新样本的采集时刻，补发时按位置倒推各段的采集时刻（timeAt）
+ * 仅在采集回调线程内使用，不做同步。
+ */
+final class PreRollBuffer {
+    private final int sampleRate;
+    private final short[] ring;
+    private long writePos = 0L;   // 已写入的样本总数（下一个样本的绝对位置）
+    private long headTimeNs = 0L; // 位置 writePos 对应的采集时刻
+
+    PreRollBuffer(int sampleRate, int capacityMs) {
+        this.sampleRate = sampleRate > 0 ? sampleRate : 16000;
+        this.ring = new short[Math.max(1, (int) ((long) this.sampleRate * Math.max(0, capacityMs) / 1000))];
+    }
+
+    /** 下一个写入样本的绝对位置 */
+    long position() { return writePos; }
+
+    /** 窗口内最早样本的绝对位置 */
+    long oldestPosition() { return Math.max(0L, writePos - ring.length); }
+
+    /** 绝对位置 pos 处样本的采集时刻（由最新样本时刻倒推） */
+    long timeAt(long pos) {
+        if (headTimeNs == 0L) return 0L;
+        return headTimeNs - (writePos - pos) * 1_000_000_000L / sampleRate;
+    }
+
+    /** 追加一帧；帧长超过窗口时只保留最新部分 */
+    void append(AudioFrame frame) {
+        if (frame == null || frame.length <= 0) return;
+        append(frame.samples, 0, frame.length, frame.captureTimeNs);
+    }
+
+    void append(short[] s, int off, int n, long startTimeNs) {
+        if (n <= 0) return;
+        long endTimeNs = startTimeNs + (long) n * 1_000_000_000L / sampleRate;
+        int cap = ring.length;
+        if (n > cap) {
+            writePos += n - cap;
+            off += n - cap;
+            n = cap;
+        }
+        int idx = (int) (writePos % cap);
+        int first = Math.min(n, cap - idx);
+        System.arraycopy(s, off, ring, idx, first);
+        if (first < n) System.arraycopy(s, off + first, ring, 0, n - first);
+        writePos += n;
+        headTimeNs = endTimeNs;
+    }
+
+    /**
+     * 将绝对位置 fromPos 之后（窗口内）的样本按时间顺序写入识别器，返回写入的样本数。
+     * 缓冲内容保持不变，可再次按位置读取。
+     */
+    int flushTo(SdkGummyClient recognizer, long fromPos) {
+        if (recognizer == null) return 0;
+        long start = Math.max(fromPos, oldestPosition());
+        int n = (int) (writePos - start);
+        if (n <= 0) return 0;
+        int cap = ring.length;
+        int idx = (int) (start % cap);
+        int first = Math.min(n, cap - idx);
+        recognizer.offerPcm(ring, idx, first, true, timeAt(start));
+        if (first < n) recognizer.offerPcm(ring, 0, n - first, true, timeAt(start + first));
+        return n;
+    }
+}
@@ -20,7 +20,8 @@ import android.content.pm.ServiceInfo;
 
 /**
  * 前台识别服务：
- * - 通过 MediaProjection 捕获系统播放音频 或 麦克风采集
+ * - 通过 MediaProjection 捕获系统播放音频 或 麦克风采集，或两者同时（会议/视频通话，见 AudioMixer）
+ * - 麦克风可选回声消除：以系统音频捕获为远端参考（见 EchoCanceller）
  * - 送入 SdkGummyClient（阿里云 Gummy Android SDK）做识别/翻译
  * - 通过广播把文本发给 OverlayService 和 MainActivity
  */
@@ -38,20 +39,71 @@ public class RecognitionService extends Service {
 
     private static final String CHANNEL_ID = "recognition_channel";
     private static final String TAG = "RecognitionService";
+    // 双会话标签：麦克风为“我”，系统音频为“对方”
+    public static final String EXTRA_SPEAKER = "speaker";
+    public static final String LABEL_ME = "me";
+    public static final String LABEL_THEM = "them";
 
     private MediaProjectionManager projectionManager;
-    private MediaProjection mediaProjection;
-    private PlaybackCaptureManager playback;
-    private AudioCaptureManager micCapture;
-    private SdkGummyClient recognizer;
+    private volatile MediaProjection mediaProjection;
+    private volatile PlaybackCaptureManager playback;
+    private volatile AudioCaptureManager micCapture;
+    private volatile SdkGummyClient recognizer;
+    private VoiceActivityGate vadGate;
+    // 双路采集：mixer 对齐两路；双会话时系统音频走 peerVadGate/peerRecognizer
+    private AudioMixer mixer;
+    private VoiceActivityGate peerVadGate;
+    private volatile SdkGummyClient peerRecognizer;
+    // 链路自适应：判决在电平阶段线程；新会话在接管线程启动，在音频阶段线程于语音间隙换上
+    private static final long HANDOVER_MAX_WAIT_NS = 5_000_000_000L; // 一直在说话时最多等 5s 再换
+    private static final long RETIRE_DRAIN_MS = 3000L;                // 旧会话排空积压的最长等待
+    private volatile LinkQualityController linkController;
+    // 并发启动：各启动任务的取消标志与收尾所用主线程
+    private static final long STARTUP_TIMEOUT_MS = 15000L;
+    private volatile boolean startupCancelled = false;
+    private volatile StartupGraph startupGraph;
+    private volatile StartupGraph.Abandoned startupAbandoned; // 绑定本次启动任务创建的会话
+    private final android.os.Handler mainHandler = new android.os.Handler(android.os.Looper.getMainLooper());
+    private volatile SdkGummyClient pendingRecognizer;
+    private volatile SdkGummyClient pendingPeerRecognizer;
+    private volatile long handoverSinceNs = 0L;
+    private volatile boolean handoverInFlight = false;
+    private final java.util.Set<SdkGummyClient> retiringRecognizers = java.util.concurrent.ConcurrentHashMap.newKeySet();
+    // 回声消除：系统音频作远端参考，在音频阶段线程处理麦克风帧
+    private volatile EchoCanceller echoCanceller;
+    private boolean playbackReferenceOnly = false; // 仅麦克风 + 回声消除：系统音频只作参考
+    // 预处理链：每路音频流一条（滤波器有状态）
+    private FilterChain micFilters;
+    private FilterChain playbackFilters;
+    // 捕获范围为“跟随前台媒体应用”时的会话跟踪（主线程）
+    private ForegroundMediaTracker mediaTracker;
+    // 系统播放活动：无播放时暂停系统音频捕获（主线程）
+    private volatile PlaybackActivityMonitor playbackMonitor;
+    private int micLevel = 0;
+    private int peerLevel = 0;
+    // 统一电平：采集端每帧算一次，界面电平条/静音提示/诊断共用
+    private final LevelMeter levelMeter = new LevelMeter();
+    // 采集线程只读取并入队：VAD/送识别器在音频阶段线程，电平广播/日志在较低优先级的阶段线程
+    private StageWorker<AudioFrame> audioStage;
+    // 音频阶段积压时优先挤出近乎无声的帧（约 -54dBFS 以下，接近 VAD 绝对下限）；仍须挤出有声帧时计数并告警
+    private static final int QUIET_FRAME_LEVEL = 10;
+    private final java.util.concurrent.atomic.AtomicLong droppedVoicedFrames = new java.util.concurrent.atomic.AtomicLong();
+    private long lastDroppedVoicedFrames = 0L;
+    private StageWorker<Integer> levelStage;
     private ConfigManager config;
-    private boolean running = false;
+    private volatile boolean running = false;
+    // 会话启动中或运行中（进程内共享）：界面回到前台时据此跳过预热，不与运行中的会话并发初始化 NativeNui
+    private static volatile boolean active = false;
     private long lastLevelTs = 0L;
     private long lastLevelLogTs = 0L;
-    private AudioManager audioManager;
-    private int prevAudioMode = AudioManager.MODE_NORMAL;
-    private boolean audioModeChanged = false;
+    private volatile AudioManager audioManager;
+    private volatile int prevAudioMode = AudioManager.MODE_NORMAL;
+    private volatile boolean audioModeChanged = false;
     private long silenceStartMs = 0L;
+    private long lastOverrunMs = 0L;
+    // 上行流量（本应用 UID 发送字节），用于对比 PCM/Opus 上行码率
+    private long lastTxBytes = -1L;
+    private long lastTxTs = 0L;
     private boolean silenceNotified = false;
 
     @Override
@@ -72,23 +124,30 @@ public class RecognitionService extends Service {
         }
 
         if (intent != null && ACTION_START.equals(intent.getAction())) {
-            boolean useMic = config.isAudioSourceMic();
+            // 未在界面预热（或配置已变）时立即开始预热，与前台服务/采集启动并行
+            RecognizerWarmup.prewarm(this);
+            active = true;
+            boolean useMic = config.usesMicCapture();
+            boolean usePlayback = config.usesPlaybackCapture();
             int resultCode = intent.getIntExtra(EXTRA_RESULT_CODE, 0);
             Intent data = intent.getParcelableExtra(EXTRA_RESULT_DATA);
 
-            if (!useMic) {
-                if (resultCode == 0 || data == null) {
+            if (usePlayback && (resultCode == 0 || data == null)) {
+                if (config.requiresPlaybackCapture()) {
                     sendStatus("未提供屏幕捕获凭据");
                     stopSelfSafe();
                     return START_NOT_STICKY;
                 }
+                // 仅麦克风：系统音频只作回声消除参考，无凭据时不做回声消除
+                sendStatus("未授权系统音频，麦克风识别继续（不做回声消除）");
+                usePlayback = false;
             }
 
             // Android 14+：根据输入源指定前台服务类型
             try {
                 if (android.os.Build.VERSION.SDK_INT >= 34) {
-                    int type = useMic ? ServiceInfo.FOREGROUND_SERVICE_TYPE_MICROPHONE
-                                      : ServiceInfo.FOREGROUND_SERVICE_TYPE_MEDIA_PROJECTION;
+                    int type = (useMic ? ServiceInfo.FOREGROUND_SERVICE_TYPE_MICROPHONE : 0)
+                            | (usePlayback ? ServiceInfo.FOREGROUND_SERVICE_TYPE_MEDIA_PROJECTION : 0);
                     startForeground(2, buildNotification("识别服务运行中"), type);
                 } else {
                     startForeground(2, buildNotification("识别服务运行中"));
@@ -98,198 +157,634 @@ public class RecognitionService extends Service {
                 startForeground(2, buildNotification("识别服务运行中"));
             }
 
-            if (!useMic) {
-                mediaProjection = projectionManager.getMediaProjection(resultCode, data);
-            }
-            startPipeline();
+            startPipeline(resultCode, data, usePlayback);
         }
 
         return START_STICKY;
     }
 
-    private void startPipeline() {
+    // 启动链路：构建处理阶段后，采集、MediaProjection、识别会话按依赖图在启动线程池上并发拉起，
+    // 全部结束后回到主线程收尾。识别会话对象先于握手就绪，会话建立前到达的音频留在其环形缓冲，打开后由 SDK 补发。
+    private void startPipeline(final int projectionResultCode, final Intent projectionData, final boolean usePlayback) {
         try {
-            int sampleRate = config.getSampleRate();
-            boolean useMic = config.isAudioSourceMic();
+            final int sampleRate = config.getSampleRate();
+            final boolean useMic = config.usesMicCapture();
+            boolean both = config.isAudioSourceBoth();
+            final boolean dual = both && config.getBothMode() == AudioMixer.MODE_DUAL;
             try {
                 String endpoint = config.getWsEndpoint();
-            android.util.Log.i(TAG, "startPipeline: useMic=" + useMic + ", cfgSampleRate=" + sampleRate + ", model=" + config.getModel() + ", wsEndpoint=" + endpoint);
+            android.util.Log.i(TAG, "startPipeline: useMic=" + useMic + ", usePlayback=" + usePlayback + ", dual=" + dual + ", cfgSampleRate=" + sampleRate + ", model=" + config.getModel() + ", wsEndpoint=" + endpoint);
             sendStatus("启动参数: useMic=" + useMic + ", sr=" + sampleRate + ", endpoint=" + (endpoint==null?"":endpoint));
             } catch (Throwable ignore) {}
+            startupCancelled = false;
+
+            // 0) 语音活动门限：非语音不送入识别器
+            vadGate = new VoiceActivityGate(config.getVadMode(), sampleRate,
+                    config.getVadHangoverMs(), config.getVadPreRollMs());
+            if (dual) {
+                peerVadGate = new VoiceActivityGate(config.getVadMode(), sampleRate,
+                        config.getVadHangoverMs(), config.getVadPreRollMs());
+            }
+            // 回声消除：系统音频作远端参考；仅麦克风模式下系统音频只用作参考、不送识别
+            if (useMic && usePlayback && config.isAecEnabled()) {
+                echoCanceller = new EchoCanceller(sampleRate, config.getAecTailMs());
+            }
+            playbackReferenceOnly = useMic && usePlayback && !both;
+            if (useMic) micFilters = buildFilterChain(sampleRate);
+            if (usePlayback && !playbackReferenceOnly) playbackFilters = buildFilterChain(sampleRate);
+            // 双路采集：两路帧按采集时刻对齐后混音，或分别转交两个会话
+            if (both) mixer = new AudioMixer(config.getBothMode(), sampleRate, this::onMixerFrame);
 
-            // 1) 先构建采集链路
+            startStages();
+
+            // 1) 启动任务图：麦克风依赖音频模式，系统音频依赖 MediaProjection，识别会话与两者并行
+            final java.util.concurrent.ExecutorService executor = java.util.concurrent.Executors.newCachedThreadPool(r -> new Thread(r, "PipelineStartup"));
+            final StartupGraph graph = new StartupGraph(executor);
             if (useMic) {
-                micCapture = new AudioCaptureManager(sampleRate);
-                micCapture.setCallback(new AudioCaptureManager.AudioDataCallback() {
-                    @Override public void onAudioData(byte[] data, int length) {
-                        if (recognizer != null) recognizer.offerPcm(data, length);
-                        dispatchLevel(data, length);
-                    }
-                    @Override public void onError(String error) { sendStatus("音频错误:" + error); }
+                graph.add("audioMode", () -> { prepareMicAudioMode(); return true; });
+                graph.add("mic", () -> startMicCapture(sampleRate), "audioMode");
+            }
+            if (usePlayback) {
+                graph.add("projection", () -> {
+                    mediaProjection = projectionManager.getMediaProjection(projectionResultCode, projectionData);
+                    return mediaProjection != null;
                 });
-                try { micCapture.preferBuiltInMic(this); } catch (Throwable ignore) {}
-            } else {
-                playback = new PlaybackCaptureManager(mediaProjection, sampleRate);
-                playback.setCallback(new PlaybackCaptureManager.AudioDataCallback() {
-                    @Override public void onAudioData(byte[] data, int length) {
-                        if (recognizer != null) recognizer.offerPcm(data, length);
-                        dispatchLevel(data, length);
-                    }
-                    @Override public void onError(String error) { sendStatus("音频错误:" + error); }
+                graph.add("playback", () -> startPlaybackCapture(sampleRate), "projection");
+            }
+            // 识别器输出采样率即采集管线输出（两种采集都重采样到 config.getSampleRate()）
+            // 任务创建的会话另存一份：放弃时停止的是它本身，而不是届时字段里的值
+            final java.util.concurrent.atomic.AtomicReference<SdkGummyClient> createdMain = new java.util.concurrent.atomic.AtomicReference<>();
+            final java.util.concurrent.atomic.AtomicReference<SdkGummyClient> createdPeer = new java.util.concurrent.atomic.AtomicReference<>();
+            graph.add("recognizer", () -> {
+                SdkGummyClient r = createRecognizer(sampleRate, vadGate, dual ? LABEL_ME : null);
+                createdMain.set(r);
+                recognizer = r;
+                return !startupCancelled && r.start();
+            });
+            if (dual) {
+                // 双会话：系统音频（对方）单独一个识别会话，与主会话并行握手
+                graph.add("peerRecognizer", () -> {
+                    SdkGummyClient r = createRecognizer(sampleRate, peerVadGate, LABEL_THEM);
+                    createdPeer.set(r);
+                    peerRecognizer = r;
+                    return !startupCancelled && r.start();
                 });
             }
-
-            // 2) 先启动采集，保证电平可见
-            if (useMic) {
+            final StartupGraph.Abandoned abandoned = name -> onStartupTaskAbandoned(name, createdMain.get(), createdPeer.get());
+            startupAbandoned = abandoned;
+            startupGraph = graph;
+            new Thread(() -> {
                 try {
-                    audioManager = (AudioManager) getSystemService(AUDIO_SERVICE);
-                    if (audioManager != null) {
-                        prevAudioMode = audioManager.getMode();
-                        audioManager.setMode(AudioManager.MODE_IN_COMMUNICATION);
-                        audioModeChanged = true;
-                    }
-                    // 记录并尝试解除全局静音（不影响系统隐私总开关）
+                    graph.runAndWait(STARTUP_TIMEOUT_MS);
+                } catch (InterruptedException ignore) {
+                } finally {
+                    // 超时或已请求停止：仍在执行的任务记为放弃（中断其等待），结束后释放其产物
+                    if (graph.cancel(abandoned)) executor.shutdownNow();
+                    else executor.shutdown();
+                }
+                final String report = graph.report();
+                android.util.Log.i(TAG, report);
+                mainHandler.post(() -> finishStartup(graph, useMic, usePlayback, report));
+            }, "PipelineStartupWait").start();
+        } catch (Throwable t) {
+            Log.e(TAG, "startPipeline", t);
+            sendStatus("启动失败:" + t.getMessage());
+            stopSelfSafe();
+        }
+    }
+
+    // 启动任务：进入通话音频模式、解除全局静音，并检查系统麦克风隐私开关
+    private void prepareMicAudioMode() {
+        try {
+            audioManager = (AudioManager) getSystemService(AUDIO_SERVICE);
+            if (audioManager != null) {
+                prevAudioMode = audioManager.getMode();
+                audioManager.setMode(AudioManager.MODE_IN_COMMUNICATION);
+                audioModeChanged = true;
+            }
+            // 记录并尝试解除全局静音（不影响系统隐私总开关）
+            try {
+                boolean micMuted = audioManager.isMicrophoneMute();
+                Log.i(TAG, "micMuted(before)=" + micMuted + ", audioMode=" + prevAudioMode);
+                if (micMuted) {
+                    try { audioManager.setMicrophoneMute(false); } catch (Throwable ignore) {}
+                }
+            } catch (Throwable ignore) {}
+        } catch (Throwable ignore) {}
+        // 检测系统“麦克风隐私开关”（Android 12+），使用反射避免编译期依赖系统API
+        try {
+            if (android.os.Build.VERSION.SDK_INT >= 31) {
+                Object spm = getSystemService(Class.forName("android.hardware.SensorPrivacyManager"));
+                boolean blocked = false;
+                if (spm != null) {
                     try {
-                        boolean micMuted = audioManager.isMicrophoneMute();
-                        Log.i(TAG, "micMuted(before)=" + micMuted + ", audioMode=" + prevAudioMode);
-                        if (micMuted) {
-                            try { audioManager.setMicrophoneMute(false); } catch (Throwable ignore) {}
-                        }
+                        Class<?> sensors = Class.forName("android.hardware.SensorPrivacyManager$Sensors");
+                        int mic = sensors.getField("MICROPHONE").getInt(null);
+                        java.lang.reflect.Method m = spm.getClass().getMethod("isSensorPrivacyEnabled", int.class);
+                        Object ret = m.invoke(spm, mic);
+                        if (ret instanceof Boolean) blocked = (Boolean) ret;
                     } catch (Throwable ignore) {}
-                } catch (Throwable ignore) {}
-                // 检测系统“麦克风隐私开关”（Android 12+），使用反射避免编译期依赖系统API
-                try {
-                    if (android.os.Build.VERSION.SDK_INT >= 31) {
-                        Object spm = getSystemService(Class.forName("android.hardware.SensorPrivacyManager"));
-                        boolean blocked = false;
-                        if (spm != null) {
-                            try {
-                                Class<?> sensors = Class.forName("android.hardware.SensorPrivacyManager$Sensors");
-                                int mic = sensors.getField("MICROPHONE").getInt(null);
-                                java.lang.reflect.Method m = spm.getClass().getMethod("isSensorPrivacyEnabled", int.class);
-                                Object ret = m.invoke(spm, mic);
-                                if (ret instanceof Boolean) blocked = (Boolean) ret;
-                            } catch (Throwable ignore) {}
-                        }
-                        Log.i(TAG, "micPrivacyBlocked=" + blocked);
-                        if (blocked) {
-                            sendStatus("系统已关闭“麦克风访问”，请在快捷设置或 设置→隐私→麦克风 开启");
-                        }
-                    }
-                } catch (Throwable t) {
-                    Log.w(TAG, "check mic privacy failed", t);
+                }
+                Log.i(TAG, "micPrivacyBlocked=" + blocked);
+                if (blocked) {
+                    sendStatus("系统已关闭“麦克风访问”，请在快捷设置或 设置→隐私→麦克风 开启");
                 }
             }
-            boolean captureStarted = useMic ? micCapture.startRecording() : playback.start();
-            android.util.Log.i(TAG, "startPipeline: captureStarted=" + captureStarted + ", useMic=" + useMic);
-            if (!captureStarted) {
-                sendStatus(useMic ? "麦克风采集启动失败" : "系统音频捕获启动失败");
-                stopSelfSafe();
-                return;
+        } catch (Throwable t) {
+            Log.w(TAG, "check mic privacy failed", t);
+        }
+    }
+
+    // 启动任务：构建并启动麦克风采集
+    private boolean startMicCapture(int sampleRate) {
+        AudioCaptureManager m = new AudioCaptureManager(sampleRate);
+        m.setResampleQuality(config.getResampleQuality());
+        m.setCapabilityCache(this, config);
+        m.setCallback(new AudioCaptureManager.AudioDataCallback() {
+            @Override public void onAudioData(AudioFrame frame) {
+                frame.source = AudioMixer.SOURCE_MIC;
+                onCapturedFrame(frame);
             }
-            if (useMic) {
-                try { micCapture.preferBuiltInMic(this); } catch (Throwable ignore) {}
-                try { sendStatus("麦克风采集已启动: " + (micCapture != null ? (micCapture.getSampleRate() + "Hz") : "")); } catch (Throwable ignore) {}
+            @Override public void onError(String error) { sendStatus("音频错误:" + error); }
+        });
+        try { m.preferBuiltInMic(this); } catch (Throwable ignore) {}
+        micCapture = m;
+        return !startupCancelled && m.startRecording();
+    }
+
+    // 启动任务：构建并启动系统音频捕获（依赖 MediaProjection）
+    private boolean startPlaybackCapture(int sampleRate) {
+        PlaybackCaptureManager p = new PlaybackCaptureManager(mediaProjection, sampleRate);
+        p.setResampleQuality(config.getResampleQuality());
+        p.setCallback(new PlaybackCaptureManager.AudioDataCallback() {
+            @Override public void onAudioData(AudioFrame frame) {
+                frame.source = AudioMixer.SOURCE_PLAYBACK;
+                PlaybackActivityMonitor pm = playbackMonitor;
+                if (pm != null) pm.onCaptureLevel(frame.level);
+                onCapturedFrame(frame);
             }
+            @Override public void onError(String error) { sendStatus("音频错误:" + error); }
+        });
+        p.setCaptureTarget(buildCaptureTarget(null));
+        playback = p;
+        return !startupCancelled && p.start();
+    }
 
-            // 3) 再启动识别器；识别失败也不影响电平测试
-            android.util.Log.i(TAG, "startPipeline: creating recognizer");
-            int outSr;
-            try {
-                if (useMic && micCapture != null) {
+    // 启动任务超时或停止后才结束：它创建的资源不属于当前管线，回到主线程释放
+    private void onStartupTaskAbandoned(final String name, final SdkGummyClient createdMain, final SdkGummyClient createdPeer) {
+        android.util.Log.w(TAG, "startup task " + name + " finished after being abandoned, releasing");
+        mainHandler.post(() -> {
+            switch (name) {
+                case "audioMode":
                     try {
-                        java.lang.reflect.Method m = micCapture.getClass().getMethod("getOutputSampleRate");
-                        Object v = m.invoke(micCapture);
-                        outSr = (v instanceof Integer) ? (Integer) v : micCapture.getSampleRate();
-                    } catch (Throwable ignore) {
-                        outSr = micCapture.getSampleRate();
-                    }
-                } else if (!useMic && playback != null) {
-                    // PlaybackCaptureManager 固定输出 targetSampleRate（与 config.getSampleRate 一致）
-                    outSr = config.getSampleRate();
-                } else {
-                    outSr = config.getSampleRate();
+                        if (!running && audioManager != null && audioModeChanged) {
+                            audioManager.setMode(prevAudioMode);
+                            audioModeChanged = false;
+                        }
+                    } catch (Throwable ignore) {}
+                    break;
+                case "mic": {
+                    AudioCaptureManager m = micCapture;
+                    micCapture = null;
+                    try { if (m != null) m.stopRecording(); } catch (Throwable ignore) {}
+                    break;
                 }
-            } catch (Throwable t) { outSr = config.getSampleRate(); }
-
-            recognizer = new SdkGummyClient(this, config, outSr);
-            recognizer.setCallback(new SdkGummyClient.RecognitionCallback() {
-                @Override public void onTranscription(String text) {
-                    dispatchTranscript(text);
-                    if (!config.isTranslationEnabled()) dispatchTextUI(text);
+                case "projection": {
+                    MediaProjection mp = mediaProjection;
+                    mediaProjection = null;
+                    try { if (mp != null) mp.stop(); } catch (Throwable ignore) {}
+                    break;
                 }
-                @Override public void onTranslation(String text) {
-                    if (config.isTranslationEnabled()) {
-                        dispatchTranslation(text);
-                        dispatchTextUI(text);
-                    }
+                case "playback": {
+                    PlaybackCaptureManager p = playback;
+                    playback = null;
+                    try { if (p != null) p.stop(); } catch (Throwable ignore) {}
+                    MediaProjection mp = mediaProjection;
+                    mediaProjection = null;
+                    try { if (mp != null) mp.stop(); } catch (Throwable ignore) {}
+                    break;
                 }
-                @Override public void onStatusChange(String status) {
-                    android.util.Log.i(TAG, "status=" + status);
-                    sendStatus(status);
+                case "recognizer":
+                    if (recognizer == createdMain) recognizer = null;
+                    stopRecognizerAsync(createdMain);
+                    break;
+                case "peerRecognizer":
+                    if (peerRecognizer == createdPeer) peerRecognizer = null;
+                    stopRecognizerAsync(createdPeer);
+                    break;
+                default:
+                    break;
+            }
+        });
+    }
+
+    // 主线程收尾：按各任务结果决定继续、降级或停止，并启动依赖主线程的监听
+    private void finishStartup(StartupGraph graph, boolean useMic, boolean usePlayback, String report) {
+        if (startupGraph == graph) {
+            startupGraph = null;
+            startupAbandoned = null;
+        }
+        if (startupCancelled) {
+            // 启动期间已请求停止：释放启动任务随后创建的资源
+            stopSelfSafe();
+            return;
+        }
+        sendStatus(report);
+        boolean micStarted = !useMic || graph.succeeded("mic");
+        boolean playbackStarted = !usePlayback || graph.succeeded("playback");
+        if (micStarted && !playbackStarted && playbackReferenceOnly) {
+            // 参考信号不可用不影响麦克风识别：关闭回声消除继续
+            sendStatus("系统音频参考不可用，已关闭回声消除");
+            echoCanceller = null;
+            playbackStarted = true;
+        }
+        boolean captureStarted = micStarted && playbackStarted;
+        android.util.Log.i(TAG, "startPipeline: captureStarted=" + captureStarted + ", useMic=" + useMic + ", usePlayback=" + usePlayback);
+        if (!captureStarted) {
+            sendStatus(!micStarted ? "麦克风采集启动失败" : "系统音频捕获启动失败");
+            stopSelfSafe();
+            return;
+        }
+        if (useMic) {
+            try { micCapture.preferBuiltInMic(this); } catch (Throwable ignore) {}
+            try { sendStatus("麦克风采集已启动: " + (micCapture != null ? (micCapture.getSampleRate() + "Hz") : "")); } catch (Throwable ignore) {}
+        }
+        if (playback != null && config.getCaptureScope() == ConfigManager.CAPTURE_SCOPE_FOLLOW) {
+            // 前台媒体应用变化时按新应用重建捕获；未授予通知使用权则按应用列表（排除）捕获
+            mediaTracker = new ForegroundMediaTracker(this, pkg -> {
+                PlaybackCaptureManager p = playback;
+                if (p != null) p.setCaptureTarget(buildCaptureTarget(pkg));
+            });
+            if (!mediaTracker.start()) {
+                mediaTracker = null;
+                sendStatus("未授予通知使用权，无法跟随前台媒体应用");
+            }
+        }
+
+        // 识别失败也不影响电平测试
+        boolean recogOk = graph.succeeded("recognizer");
+        android.util.Log.i(TAG, "recognizer.start returned=" + recogOk);
+        if (peerRecognizer != null && !graph.succeeded("peerRecognizer")) sendStatus("对方会话未启动，仅识别麦克风");
+        running = true;
+        if (recogOk && config.isAdaptiveUplink()) {
+            int initial = config.getUplinkCodec() == ConfigManager.UPLINK_CODEC_OPUS
+                    ? LinkQualityController.LEVEL_OPUS_16K : LinkQualityController.LEVEL_PCM_16K;
+            linkController = new LinkQualityController(initial, this::onLinkLevelChanged);
+        }
+        if (playback != null && config.isPauseWithoutPlayback()) {
+            boolean levelBased = config.getCaptureScope() != ConfigManager.CAPTURE_SCOPE_ALL;
+            PlaybackActivityMonitor pm = new PlaybackActivityMonitor(this, config.getCaptureUsages(), levelBased, this::onPlaybackActiveChanged);
+            playbackMonitor = pm.start() ? pm : null;
+        }
+        if (recogOk) {
+            sendStatus("识别中...");
+        } else {
+            sendStatus("识别器未启动，仅电平测试");
+        }
+    }
+
+    // 创建并配置一个识别会话；label 非空时（双会话）结果带说话方标签
+    // 主会话优先取用预热好的备用会话（已 initialize/setParams），start 时只需打开会话
+    private SdkGummyClient createRecognizer(int outSr, VoiceActivityGate gate, final String label) {
+        int codec = config.getUplinkCodec();
+        SdkGummyClient warm = LABEL_THEM.equals(label) ? null : RecognizerWarmup.take(config, outSr, codec);
+        android.util.Log.i(TAG, "recognizer " + (warm != null ? "from warm standby" : "cold start"));
+        return configureRecognizer(warm != null ? warm : new SdkGummyClient(this, config, outSr, codec), outSr, gate, label);
+    }
+
+    // 按指定上行编码新建会话（链路切换），采样率沿用采集管线
+    private SdkGummyClient createRecognizer(int sr, int codec, VoiceActivityGate gate, final String label) {
+        return configureRecognizer(new SdkGummyClient(this, config, sr, codec), sr, gate, label);
+    }
+
+    private SdkGummyClient configureRecognizer(SdkGummyClient r, int inSr, VoiceActivityGate gate, final String label) {
+        r.setInputSampleRate(inSr);
+        r.setLabel(label);
+        if (!LABEL_THEM.equals(label)) r.setLevelMeter(levelMeter);
+        r.setIdleWaitMs(config.getVadKeepAliveMs());
+        r.setOverflowPolicy(config.getOverflowPolicy(), config.getLatencyBudgetMs());
+        if (gate.getMode() == VoiceActivityGate.MODE_SUSPEND) {
+            // 挂起模式：仅在长时间无语音时兜底发送保活帧，避免服务端判定超时
+            r.setIdleWaitMs(Math.max(3000, config.getVadKeepAliveMs()));
+        }
+        r.setSuspendAfterMs(config.getDialogSuspendAfterMs());
+        if (gate.getMode() != VoiceActivityGate.MODE_OFF) r.setStreamIdle(!gate.isActive());
+        r.setCallback(new SdkGummyClient.RecognitionCallback() {
+            @Override public void onTranscription(String text) {
+                dispatchTranscript(text, label);
+                if (!config.isTranslationEnabled()) dispatchTextUI(text, label);
+            }
+            @Override public void onTranslation(String text) {
+                if (config.isTranslationEnabled()) {
+                    dispatchTranslation(text, label);
+                    dispatchTextUI(text, label);
                 }
-                @Override public void onError(String error) {
-                    android.util.Log.e(TAG, "error=" + error);
-                    sendStatus(error);
+            }
+            @Override public void onStatusChange(String status) {
+                android.util.Log.i(TAG, "status=" + status);
+                sendStatus(label == null ? status : "[" + label + "] " + status);
+            }
+            @Override public void onError(String error) {
+                android.util.Log.e(TAG, "error=" + error);
+                sendStatus(label == null ? error : "[" + label + "] " + error);
+            }
+        });
+        return r;
+    }
+
+    // 链路档位变化（电平阶段线程）：在接管线程上为各会话启动新格式的会话，就绪后交给音频阶段换上
+    private void onLinkLevelChanged(final int from, final int to, String reason) {
+        if (handoverInFlight || pendingRecognizer != null || pendingPeerRecognizer != null) {
+            LinkQualityController lc = linkController;
+            if (lc != null) lc.revert(from);
+            return;
+        }
+        android.util.Log.i(TAG, "link " + LinkQualityController.nameOf(from) + " -> " + LinkQualityController.nameOf(to) + ": " + reason);
+        sendStatus(to > from ? "网络较差，降低上传码率(" + LinkQualityController.nameOf(to) + ")"
+                : "网络恢复，提高上传码率(" + LinkQualityController.nameOf(to) + ")");
+        handoverInFlight = true;
+        new Thread(() -> {
+            try {
+                SdkGummyClient cur = recognizer;
+                SdkGummyClient peer = peerRecognizer;
+                SdkGummyClient next = cur != null
+                        ? startHandoverSession(cur, vadGate, peer != null ? LABEL_ME : null, to, micCapture == null) : null;
+                SdkGummyClient nextPeer = peer != null ? startHandoverSession(peer, peerVadGate, LABEL_THEM, to, true) : null;
+                if ((cur != null && next == null) || (peer != null && nextPeer == null) || !running) {
+                    // 任一会话接管失败：保持原会话与原档位
+                    if (next != null) next.stop();
+                    if (nextPeer != null) nextPeer.stop();
+                    LinkQualityController lc = linkController;
+                    if (lc != null) lc.revert(from);
+                    if (running) sendStatus("切换上传格式失败，保持 " + LinkQualityController.nameOf(from));
+                    return;
                 }
-            });
-            boolean recogOk = recognizer.start();
-            android.util.Log.i(TAG, "recognizer.start returned=" + recogOk);
-            running = true;
-            if (recogOk) {
-                sendStatus("识别中...");
-            } else {
-                sendStatus("识别器未启动，仅电平测试");
+                handoverSinceNs = System.nanoTime();
+                pendingRecognizer = next;
+                pendingPeerRecognizer = nextPeer;
+            } finally {
+                handoverInFlight = false;
+            }
+        }, "LinkHandover").start();
+    }
+
+    // 接管线程：按档位新建并启动一个会话，沿用原会话的输入采样率；仅由系统音频供数的会话沿用暂停态
+    private SdkGummyClient startHandoverSession(SdkGummyClient old, VoiceActivityGate gate, String label, int level, boolean playbackFed) {
+        int inSr = old.getInputSampleRate();
+        SdkGummyClient next = createRecognizer(inSr, LinkQualityController.codecOf(level), gate, label);
+        PlaybackCaptureManager p = playback;
+        if (playbackFed && p != null && p.isPaused()) next.setPaused(true);
+        if (next.start()) return next;
+        next.stop();
+        return null;
+    }
+
+    // 音频阶段线程：在语音间隙（或等待超时）换上待接管的会话，VAD 门限随之向新会话补发前导音频
+    private void maybeSwapRecognizers() {
+        boolean timeout = System.nanoTime() - handoverSinceNs > HANDOVER_MAX_WAIT_NS;
+        SdkGummyClient next = pendingRecognizer;
+        if (next != null && (timeout || vadGate == null || vadGate.getMode() == VoiceActivityGate.MODE_OFF || !vadGate.isActive())) {
+            pendingRecognizer = null;
+            retireRecognizer(recognizer);
+            recognizer = next;
+        }
+        SdkGummyClient nextPeer = pendingPeerRecognizer;
+        if (nextPeer != null && (timeout || peerVadGate == null || peerVadGate.getMode() == VoiceActivityGate.MODE_OFF || !peerVadGate.isActive())) {
+            pendingPeerRecognizer = null;
+            retireRecognizer(peerRecognizer);
+            peerRecognizer = nextPeer;
+        }
+    }
+
+    // 被换下的会话不再收到新音频：排空积压后 stop（stopDialog 并等待末句结果）再释放
+    private void retireRecognizer(final SdkGummyClient old) {
+        if (old == null) return;
+        retiringRecognizers.add(old);
+        new Thread(() -> {
+            try {
+                long deadline = System.currentTimeMillis() + RETIRE_DRAIN_MS;
+                while (old.getBacklogMs() > 0 && System.currentTimeMillis() < deadline) Thread.sleep(100);
+            } catch (InterruptedException ignore) {
+            } finally {
+                if (retiringRecognizers.remove(old)) old.stop();
             }
+        }, "RecognizerRetire").start();
+    }
+
+    // 混音器输出（音频阶段线程）：混音帧送主会话；双会话时两路各自送入对应会话，电平取两路较大者
+    private void onMixerFrame(int source, AudioFrame frame) {
+        if (source == AudioMixer.SOURCE_MIXED) {
+            offerToRecognizer(frame, vadGate, recognizer);
+            levelMeter.publish(frame);
+            return;
+        }
+        if (source == AudioMixer.SOURCE_PLAYBACK) {
+            peerLevel = frame.level;
+            offerToRecognizer(frame, peerVadGate, peerRecognizer);
+        } else {
+            micLevel = frame.level;
+            offerToRecognizer(frame, vadGate, recognizer);
+        }
+        levelMeter.publishLevel(Math.max(micLevel, peerLevel));
+    }
+
+    // 系统播放开始/停止（主线程）：暂停或恢复系统音频捕获，仅由系统音频供数的会话随之进入/退出低功耗空闲
+    private void onPlaybackActiveChanged(boolean active) {
+        PlaybackCaptureManager p = playback;
+        if (p == null) return;
+        p.setPaused(!active);
+        SdkGummyClient session = micCapture == null ? recognizer : peerRecognizer;
+        if (session != null) session.setPaused(!active);
+        SdkGummyClient pending = micCapture == null ? pendingRecognizer : pendingPeerRecognizer;
+        if (pending != null) pending.setPaused(!active);
+        if (!active && micCapture == null) {
+            // 不再有帧：电平条归零
+            levelMeter.publishLevel(0);
+            StageWorker<Integer> ls = levelStage;
+            if (ls != null) ls.offer(0);
+        }
+        sendStatus(active ? "检测到播放，恢复捕获" : "无播放，捕获已暂停");
+    }
+
+    // 按配置的捕获范围生成 CaptureTarget；foregroundPkg 为跟随模式下当前播放的应用（可为 null）
+    private PlaybackCaptureManager.CaptureTarget buildCaptureTarget(String foregroundPkg) {
+        int[] usages = config.getCaptureUsages();
+        int scope = config.getCaptureScope();
+        java.util.Set<String> listed = config.getCapturePackageSet();
+        if (scope == ConfigManager.CAPTURE_SCOPE_FOLLOW && foregroundPkg != null && !listed.contains(foregroundPkg)) {
+            int uid = resolveUid(foregroundPkg);
+            if (uid >= 0) {
+                return new PlaybackCaptureManager.CaptureTarget(usages, new int[] { uid }, null, "follow:" + foregroundPkg);
+            }
+        }
+        int[] uids = resolveUids(listed);
+        if (scope == ConfigManager.CAPTURE_SCOPE_INCLUDE && uids.length > 0) {
+            return new PlaybackCaptureManager.CaptureTarget(usages, uids, null, "include");
+        }
+        if (scope != ConfigManager.CAPTURE_SCOPE_ALL && uids.length > 0) {
+            // 排除模式；跟随模式下无播放中的应用时同样退回“全部减去列表”
+            return new PlaybackCaptureManager.CaptureTarget(usages, null, uids, "exclude");
+        }
+        return new PlaybackCaptureManager.CaptureTarget(usages, null, null, "all");
+    }
+
+    private int[] resolveUids(java.util.Set<String> packages) {
+        int[] uids = new int[packages.size()];
+        int n = 0;
+        for (String pkg : packages) {
+            int uid = resolveUid(pkg);
+            if (uid >= 0) uids[n++] = uid;
+        }
+        return java.util.Arrays.copyOf(uids, n);
+    }
+
+    private int resolveUid(String pkg) {
+        try {
+            return getPackageManager().getApplicationInfo(pkg, 0).uid;
         } catch (Throwable t) {
-            Log.e(TAG, "startPipeline", t);
-            sendStatus("启动失败:" + t.getMessage());
-            stopSelfSafe();
+            Log.w(TAG, "capture package not found: " + pkg);
+            return -1;
         }
     }
 
-    private void dispatchTextUI(String text) {
+    // 按配置组装预处理链：高通 → 降噪 → AGC → 限幅
+    private FilterChain buildFilterChain(int sampleRate) {
+        java.util.List<AudioFilter> stages = new java.util.ArrayList<>();
+        if (config.isHighPassEnabled()) stages.add(new HighPassFilter(sampleRate, config.getHighPassHz()));
+        if (config.isNoiseSuppressionEnabled()) stages.add(new NoiseSuppressor(sampleRate));
+        if (config.isAgcEnabled()) stages.add(new AutomaticGainControl(sampleRate));
+        if (config.isLimiterEnabled()) stages.add(new PeakLimiter(sampleRate));
+        FilterChain chain = new FilterChain(sampleRate, stages);
+        return chain.isEmpty() ? null : chain;
+    }
+
+    // 采集线程回调：仅入队，交出帧的所有权
+    private void onCapturedFrame(AudioFrame frame) {
+        StageWorker<AudioFrame> stage = audioStage;
+        if (stage == null || !stage.offer(frame)) frame.release();
+    }
+
+    private void startStages() {
+        audioStage = new StageWorker<>("AudioStage", 32, android.os.Process.THREAD_PRIORITY_AUDIO,
+                new StageWorker.Handler<AudioFrame>() {
+                    @Override public void handle(AudioFrame frame, long queuedNs) {
+                        try {
+                            maybeSwapRecognizers();
+                            boolean playbackFrame = frame.source == AudioMixer.SOURCE_PLAYBACK;
+                            boolean referenceOnly = playbackReferenceOnly && playbackFrame;
+                            // 两路采集都已重采样到会话采样率，换设备/回退不改变帧采样率，回声消除器无需重建
+                            EchoCanceller ec = echoCanceller;
+                            if (ec != null) {
+                                if (playbackFrame) ec.pushReference(frame);
+                                else ec.process(frame);
+                            }
+                            FilterChain fc = playbackFrame ? playbackFilters : micFilters;
+                            if (fc != null && !referenceOnly) fc.process(frame);
+                            AudioMixer mx = mixer;
+                            if (mx != null) {
+                                mx.push(frame.source, frame);
+                            } else if (!referenceOnly) {
+                                offerToRecognizer(frame, vadGate, recognizer);
+                                levelMeter.publish(frame);
+                            }
+                            requestLevelDispatch();
+                        } finally {
+                            frame.release();
+                        }
+                    }
+                    @Override public void onDropped(AudioFrame frame) {
+                        if (running && frame.level >= QUIET_FRAME_LEVEL) droppedVoicedFrames.incrementAndGet();
+                        frame.release();
+                    }
+                    @Override public boolean isDiscardable(AudioFrame frame) { return frame.level < QUIET_FRAME_LEVEL; }
+                });
+        levelStage = new StageWorker<>("LevelStage", 2, android.os.Process.THREAD_PRIORITY_DEFAULT,
+                new StageWorker.Handler<Integer>() {
+                    @Override public void handle(Integer level, long queuedNs) { dispatchLevel(level); }
+                    @Override public void onDropped(Integer level) {}
+                });
+        audioStage.start();
+        levelStage.start();
+    }
+
+    // 采集停止后再停阶段线程，队列中剩余的帧在 onDropped 中释放
+    private void stopStages() {
+        if (audioStage != null) { audioStage.stop(); audioStage = null; }
+        if (levelStage != null) { levelStage.stop(); levelStage = null; }
+    }
+
+    // 节流 ~10Hz 投递到电平阶段，广播与日志不占用音频阶段
+    private void requestLevelDispatch() {
+        long now = System.currentTimeMillis();
+        if (now - lastLevelTs < 100) return;
+        lastLevelTs = now;
+        StageWorker<Integer> stage = levelStage;
+        if (stage != null) stage.offer(levelMeter.getLevel());
+    }
+
+    // 采集帧经 VAD 门限后写入识别器（不负责释放帧）
+    private static void offerToRecognizer(AudioFrame frame, VoiceActivityGate g, SdkGummyClient r) {
+        if (g != null) {
+            g.process(frame, r);
+        } else if (r != null) {
+            r.offerPcm(frame);
+        }
+    }
+
+    // 双会话时文本前加说话方标签，并在广播中附带 EXTRA_SPEAKER
+    private static String labelText(String text, String label) {
+        if (label == null) return text;
+        return (LABEL_ME.equals(label) ? "我: " : "对方: ") + text;
+    }
+
+    private void dispatchTextUI(String text, String label) {
+        text = labelText(text, label);
         // 发给悬浮窗
         Intent overlay = new Intent(OverlayService.ACTION_UPDATE_TRANSLATION);
         overlay.putExtra(OverlayService.EXTRA_TEXT, text);
+        if (label != null) overlay.putExtra(EXTRA_SPEAKER, label);
         try { overlay.setPackage(getPackageName()); } catch (Throwable ignore) {}
         sendBroadcast(overlay);
         // 发给主界面
         Intent i2 = new Intent(ACTION_TEXT);
         i2.putExtra("text", text);
+        if (label != null) i2.putExtra(EXTRA_SPEAKER, label);
         try { i2.setPackage(getPackageName()); } catch (Throwable ignore) {}
         sendBroadcast(i2);
     }
 
-    private void dispatchTranscript(String text) {
+    private void dispatchTranscript(String text, String label) {
+        text = labelText(text, label);
         Intent o = new Intent(OverlayService.ACTION_UPDATE_TRANSCRIPT);
         o.putExtra(OverlayService.EXTRA_TEXT, text);
+        if (label != null) o.putExtra(EXTRA_SPEAKER, label);
         try { o.setPackage(getPackageName()); } catch (Throwable ignore) {}
         sendBroadcast(o);
 
         Intent ui = new Intent(ACTION_TRANSCRIPT);
         ui.putExtra("text", text);
+        if (label != null) ui.putExtra(EXTRA_SPEAKER, label);
         try { ui.setPackage(getPackageName()); } catch (Throwable ignore) {}
         sendBroadcast(ui);
     }
 
-    private void dispatchTranslation(String text) {
+    private void dispatchTranslation(String text, String label) {
+        text = labelText(text, label);
         Intent o = new Intent(OverlayService.ACTION_UPDATE_TRANSLATION);
         o.putExtra(OverlayService.EXTRA_TEXT, text);
+        if (label != null) o.putExtra(EXTRA_SPEAKER, label);
         try { o.setPackage(getPackageName()); } catch (Throwable ignore) {}
         sendBroadcast(o);
 
         Intent ui = new Intent(ACTION_TRANSLATION);
         ui.putExtra("text", text);
+        if (label != null) ui.putExtra(EXTRA_SPEAKER, label);
         try { ui.setPackage(getPackageName()); } catch (Throwable ignore) {}
         sendBroadcast(ui);
     }
 
-    private void dispatchLevel(byte[] data, int length) {
+    private void dispatchLevel(int level) {
         long now = System.currentTimeMillis();
-        if (now - lastLevelTs < 100) return; // 节流 ~10Hz
-        lastLevelTs = now;
-        int level = calcLevelPercent(data, length);
         Intent i = new Intent(ACTION_LEVEL);
         i.putExtra("level", level);
         // 显式限定本应用接收，提升在新系统上的广播可见性
@@ -297,8 +792,58 @@ public class RecognitionService extends Service {
         sendBroadcast(i);
 
         if (now - lastLevelLogTs > 1000) { // 每秒打一次日志
-            android.util.Log.i(TAG, "level=" + level);
+            SdkGummyClient r = recognizer;
+            SdkGummyClient peer = peerRecognizer;
+            android.util.Log.i(TAG, "level=" + level + ", sdkRms=" + levelMeter.getSdkRms()
+                    + (r != null ? ", " + r.statsSummary() : "")
+                    + (peer != null ? " | " + peer.statsSummary() : ""));
+            StageWorker<AudioFrame> stage = audioStage;
+            if (stage != null) android.util.Log.i(TAG, stage.statsAndReset());
+            long voicedDrops = droppedVoicedFrames.get();
+            if (voicedDrops > lastDroppedVoicedFrames) {
+                android.util.Log.w(TAG, "audio stage overloaded: dropped " + (voicedDrops - lastDroppedVoicedFrames) + " voiced frames");
+                sendStatus("音频处理积压，已丢弃 " + (voicedDrops - lastDroppedVoicedFrames) + " 帧有声音频");
+                lastDroppedVoicedFrames = voicedDrops;
+            }
+            try {
+                long tx = android.net.TrafficStats.getUidTxBytes(android.os.Process.myUid());
+                if (tx >= 0 && lastTxBytes >= 0 && now > lastTxTs) {
+                    android.util.Log.i(TAG, "uplink=" + (tx - lastTxBytes) * 8 / (now - lastTxTs) + "kbit/s");
+                }
+                lastTxBytes = tx;
+                lastTxTs = now;
+            } catch (Throwable ignore) {}
+            try {
+                if (micCapture != null) android.util.Log.i(TAG, "mic " + micCapture.captureStats());
+                if (playback != null) android.util.Log.i(TAG, "playback " + playback.captureStats());
+                EchoCanceller ec = echoCanceller;
+                if (ec != null) android.util.Log.i(TAG, ec.summary());
+                if (micFilters != null) android.util.Log.i(TAG, "mic " + micFilters.statsAndReset());
+                if (playbackFilters != null) android.util.Log.i(TAG, "playback " + playbackFilters.statsAndReset());
+            } catch (Throwable ignore) {}
+            LinkQualityController lc = linkController;
+            if (lc != null && r != null) {
+                // 两个会话共用一条链路：取较差者
+                int backlog = r.getBacklogMs();
+                long latency = r.takePeakLatencyMs();
+                long errors = r.getErrorEvents();
+                if (peer != null) {
+                    backlog = Math.max(backlog, peer.getBacklogMs());
+                    latency = Math.max(latency, peer.takePeakLatencyMs());
+                    errors += peer.getErrorEvents();
+                }
+                lc.onSample(backlog, latency, errors);
+                android.util.Log.i(TAG, lc.summary());
+            }
             lastLevelLogTs = now;
+            // 缓冲写满丢弃了音频：提示用户（网络卡顿时识别会缺字）
+            if (r != null) {
+                long overrun = r.getOverrunMs();
+                if (overrun > lastOverrunMs) {
+                    sendStatus("识别积压，已丢弃 " + (overrun - lastOverrunMs) + "ms 音频");
+                    lastOverrunMs = overrun;
+                }
+            }
         }
 
         // 连续静音提示（>3s）
@@ -315,30 +860,6 @@ public class RecognitionService extends Service {
         }
     }
 
-    // 计算16bit PCM电平：dBFS(-60..0) 映射到 0-100（更贴近日常听感）
-    private int calcLevelPercent(byte[] data, int length) {
-        if (data == null || length < 2) return 0;
-        long sum = 0;
-        int samples = 0;
-        for (int i = 0; i + 1 < length; i += 2) {
-            int lo = data[i] & 0xFF;
-            int hi = data[i + 1];
-            int sample = (hi << 8) | lo;
-            sum += (long) sample * (long) sample;
-            samples++;
-        }
-        if (samples == 0) return 0;
-        double mean = (double) sum / samples;
-        double rms = Math.sqrt(mean);
-        // 归一化并转换到 dBFS
-        double rmsNorm = Math.max(1e-9, rms / 32768.0);
-        double dbfs = 20.0 * Math.log10(rmsNorm); // 0 dBFS = 满刻度
-        double clamped = Math.max(-60.0, Math.min(0.0, dbfs)); // 限定动态范围
-        int level = (int) Math.round((clamped + 60.0) / 60.0 * 100.0);
-        if (level < 0) level = 0; if (level > 100) level = 100;
-        return level;
-    }
-
     private void sendStatus(String status) {
         Intent i = new Intent(ACTION_STATUS);
         i.putExtra("status", status);
@@ -347,10 +868,38 @@ public class RecognitionService extends Service {
     }
 
     private void stopSelfSafe() {
+        active = false;
         running = false;
+        startupCancelled = true;
+        // 启动中停止：不再等待启动任务，仍在执行的结束后由 onStartupTaskAbandoned 释放
+        StartupGraph g = startupGraph;
+        StartupGraph.Abandoned abandoned = startupAbandoned;
+        startupGraph = null;
+        startupAbandoned = null;
+        if (g != null) g.cancel(abandoned);
+        linkController = null;
+        try { if (playbackMonitor != null) { playbackMonitor.stop(); playbackMonitor = null; } } catch (Throwable ignore) {}
+        try { if (mediaTracker != null) { mediaTracker.stop(); mediaTracker = null; } } catch (Throwable ignore) {}
         try { if (playback != null) playback.stop(); } catch (Throwable ignore) {}
         try { if (micCapture != null) micCapture.stopRecording(); } catch (Throwable ignore) {}
-        try { if (recognizer != null) recognizer.stop(); } catch (Throwable ignore) {}
+        try { stopStages(); } catch (Throwable ignore) {}
+        // 取下再关闭；仍在启动中的会话 stop 会等 start 返回，放弃回调再次 stop 无副作用
+        SdkGummyClient main = recognizer;
+        SdkGummyClient peer = peerRecognizer;
+        recognizer = null;
+        peerRecognizer = null;
+        stopRecognizerAsync(main);
+        stopRecognizerAsync(peer);
+        // 链路切换中途停止：待换上与正在退场的会话一并关闭
+        SdkGummyClient pending = pendingRecognizer;
+        SdkGummyClient pendingPeer = pendingPeerRecognizer;
+        pendingRecognizer = null;
+        pendingPeerRecognizer = null;
+        stopRecognizerAsync(pending);
+        stopRecognizerAsync(pendingPeer);
+        for (SdkGummyClient old : retiringRecognizers) {
+            if (retiringRecognizers.remove(old)) stopRecognizerAsync(old);
+        }
         try { if (mediaProjection != null) { mediaProjection.stop(); mediaProjection = null; } } catch (Throwable ignore) {}
         try {
             if (audioManager != null && audioModeChanged) {
@@ -362,6 +911,17 @@ public class RecognitionService extends Service {
         stopSelf();
     }
 
+    // 会话关闭要等末句结果（最多数秒），在后台线程执行，不阻塞主线程；各会话并行关闭
+    /** 识别会话是否正在启动或运行 */
+    static boolean isActive() { return active; }
+
+    private static void stopRecognizerAsync(final SdkGummyClient r) {
+        if (r == null) return;
+        new Thread(() -> {
+            try { r.stop(); } catch (Throwable ignore) {}
+        }, "RecognizerStop").start();
+    }
+
     private void createNotificationChannel() {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             NotificationChannel channel = new NotificationChannel(
@@ -0,0 +1,150 @@
+package com.babelstream;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 识别会话预热（warm standby）
+ * - 打开应用/悬浮窗时在后台线程完成 SDK 资源拷贝、initialize、setParams，点击开始后只需 startDialog
+ * - 预热结果按会话参数（API Key、模型、地址、翻译设置、采样率、上行编码、缓冲时长）做签名，取用时不匹配即丢弃走冷启动
+ * - 预热尚未完成时取用方最多等待 TAKE_WAIT_MS，仍未完成则放弃，完成后自行释放
+ * - 备用会话闲置超过 MAX_IDLE_MS 视为过期，到期即释放，避免长期占用 native 资源
+ * 全部状态为静态：Activity/Service 之间共享同一个备用会话。
+ */
+final class RecognizerWarmup {
+    private static final String TAG = "RecognizerWarmup";
+    private static final long MAX_IDLE_MS = 10 * 60 * 1000L;
+    private static final long TAKE_WAIT_MS = 8000L;
+
+    private static final ScheduledThreadPoolExecutor executor = createExecutor();
+    private static Future<SdkGummyClient> pending;
+    private static String pendingKey;
+    private static long pendingSinceMs;
+    private static ScheduledFuture<?> expiry;
+
+    private RecognizerWarmup() {}
+
+    /** 按当前配置预热一个会话；已有匹配且未过期的备用会话时不重复 */
+    static synchronized void prewarm(Context context) {
+        final Context app = context.getApplicationContext();
+        final ConfigManager cfg = new ConfigManager(app);
+        if (!cfg.isWarmStandbyEnabled() || !cfg.hasApiKey()) {
+            discardLocked();
+            return;
+        }
+        final int sr = cfg.getSampleRate();
+        final int codec = cfg.getUplinkCodec();
+        String key = signature(cfg, sr, codec);
+        if (pending != null && key.equals(pendingKey) && !expired()) return;
+        discardLocked();
+        pendingKey = key;
+        pendingSinceMs = System.currentTimeMillis();
+        final Future<SdkGummyClient> f = executor.submit(() -> {
+            long t0 = System.nanoTime();
+            SdkGummyClient c = new SdkGummyClient(app, cfg, sr, codec);
+            if (!c.prepare()) {
+                c.stop();
+                Log.w(TAG, "prewarm failed");
+                return null;
+            }
+            Log.i(TAG, "prewarmed " + c.getSrFormat() + "@" + sr + " in " + (System.nanoTime() - t0) / 1_000_000L + "ms");
+            return c;
+        });
+        pending = f;
+        expiry = executor.schedule(() -> expire(f), MAX_IDLE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // 到期仍未被取走：释放备用会话
+    private static synchronized void expire(Future<SdkGummyClient> f) {
+        if (pending != f) return;
+        Log.i(TAG, "standby idle for " + MAX_IDLE_MS / 1000 + "s, releasing");
+        discardLocked();
+    }
+
+    /**
+     * 取走与给定参数匹配的备用会话（已 prepare，未 start）；无可用时返回 null，由调用方冷启动。
+     * 可能阻塞等待进行中的预热（不超过 TAKE_WAIT_MS，且不会长于冷启动本身）。
+     */
+    static SdkGummyClient take(ConfigManager cfg, int sampleRate, int codec) {
+        Future<SdkGummyClient> f;
+        synchronized (RecognizerWarmup.class) {
+            if (pending == null) return null;
+            if (!signature(cfg, sampleRate, codec).equals(pendingKey) || expired()) {
+                Log.i(TAG, "standby does not match current session, discarding");
+                discardLocked();
+                return null;
+            }
+            f = pending;
+            pending = null;
+            pendingKey = null;
+            cancelExpiryLocked();
+        }
+        long t0 = System.nanoTime();
+        try {
+            SdkGummyClient c = f.get(TAKE_WAIT_MS, TimeUnit.MILLISECONDS);
+            if (c != null) Log.i(TAG, "standby taken, waited " + (System.nanoTime() - t0) / 1_000_000L + "ms");
+            return c;
+        } catch (TimeoutException e) {
+            Log.w(TAG, "prewarm still running after " + TAKE_WAIT_MS + "ms, cold start");
+            releaseWhenDone(f);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            releaseWhenDone(f);
+            return null;
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+    private static void discardLocked() {
+        Future<SdkGummyClient> f = pending;
+        pending = null;
+        pendingKey = null;
+        cancelExpiryLocked();
+        if (f != null) releaseWhenDone(f);
+    }
+
+    private static void cancelExpiryLocked() {
+        ScheduledFuture<?> e = expiry;
+        expiry = null;
+        if (e != null) e.cancel(false);
+    }
+
+    // 排在预热任务之后执行：预热完成后立即释放
+    private static void releaseWhenDone(final Future<SdkGummyClient> f) {
+        executor.execute(() -> {
+            try {
+                SdkGummyClient c = f.get();
+                if (c != null) c.stop();
+            } catch (Throwable ignore) {}
+        });
+    }
+
+    private static boolean expired() {
+        return System.currentTimeMillis() - pendingSinceMs > MAX_IDLE_MS;
+    }
+
+    // 影响 initialize/setParams 的全部参数
+    private static String signature(ConfigManager cfg, int sampleRate, int codec) {
+        return cfg.getApiKey() + '|' + cfg.getModel() + '|' + cfg.getWsEndpoint() + '|' + cfg.isTranslationEnabled()
+                + '|' + cfg.getTargetLanguage() + '|' + sampleRate + '|' + codec + '|' + cfg.getRecognizerBufferMs();
+    }
+
+    // 单线程：预热、到期释放与延后释放按提交顺序执行；取消的到期任务立即移出队列
+    private static ScheduledThreadPoolExecutor createExecutor() {
+        ScheduledThreadPoolExecutor ex = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "RecognizerWarmup");
+            t.setDaemon(true);
+            return t;
+        });
+        ex.setRemoveOnCancelPolicy(true);
+        return ex;
+    }
+}
@@ -0,0 +1,237 @@
+package com.babelstream;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.util.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * SDK 资源（copylist.txt 所列文件及 tts 目录）解压到工作目录
+ * - 戳文件名带 APK 版本号与安装/更新时间：APK 未变时一次 stat 即跳过（进程内命中后连 stat 也省去）
+ * - APK 更新后先按资源清单（路径 + 长度 + CRC32）算哈希，与旧戳记录的哈希一致且文件齐全时只换戳，不重新拷贝；
+ *   长度与 CRC 取自 APK 的 zip 条目（无需读内容），取不到时读一遍资源计算
+ * - 真正解压时并行拷贝：未压缩资源走 FileChannel.transferTo，压缩资源走 64KB 缓冲；先写临时文件再改名，中途失败不留半截文件
+ * - SDK 初始化失败时调用 invalidate 删除戳文件，下次重新解压（应对文件被破坏的情况）
+ * 调用方须在后台线程调用（预热线程、启动任务线程池）。
+ */
+final class SdkAssetExtractor {
+    private static final String TAG = "SdkAssetExtractor";
+    private static final String STAMP_PREFIX = ".sdk_assets_";
+    private static final String COPY_LIST = "copylist.txt";
+    private static final int COPY_BUFFER = 64 * 1024;
+
+    private static volatile String extractedStamp; // 本进程已确认的戳文件路径
+
+    private SdkAssetExtractor() {}
+
+    /** 确保 destRoot 下资源与当前 APK 一致；返回是否可用（失败时 SDK 仍可能自带回退） */
+    static synchronized boolean ensure(Context context, File destRoot) {
+        long t0 = System.nanoTime();
+        File stamp = new File(destRoot, STAMP_PREFIX + apkVersionKey(context));
+        String stampPath = stamp.getAbsolutePath();
+        if (stampPath.equals(extractedStamp)) return true;
+        if (stamp.exists()) {
+            extractedStamp = stampPath;
+            return true;
+        }
+        try {
+            AssetManager am = context.getAssets();
+            List<String> assets = listAssets(am);
+            long[] lengths = new long[assets.size()];
+            long[] crcs = new long[assets.size()];
+            java.util.zip.ZipFile apk = openApk(context);
+            try {
+                for (int i = 0; i < lengths.length; i++) describe(am, apk, assets.get(i), lengths, crcs, i);
+            } finally {
+                if (apk != null) try { apk.close(); } catch (Throwable ignore) {}
+            }
+            String hash = manifestHash(assets, lengths, crcs);
+            if (hash.equals(readOldHash(destRoot)) && allPresent(destRoot, assets, lengths)) {
+                Log.i(TAG, "apk changed but assets identical, restamp only");
+            } else {
+                copyAll(am, destRoot, assets);
+                Log.i(TAG, "extracted " + assets.size() + " assets in " + (System.nanoTime() - t0) / 1_000_000L + "ms");
+            }
+            writeStamp(destRoot, stamp, hash);
+            extractedStamp = stampPath;
+            return true;
+        } catch (Throwable t) {
+            Log.w(TAG, "extract failed: " + t.getMessage());
+            return false;
+        }
+    }
+
+    /** 删除戳文件：下次 ensure 时重新校验并解压 */
+    static synchronized void invalidate(File destRoot) {
+        extractedStamp = null;
+        File[] olds = destRoot.listFiles((dir, n) -> n.startsWith(STAMP_PREFIX));
+        if (olds != null) for (File f : olds) f.delete();
+    }
+
+    // 版本号 + 安装/更新时间：同版本号重装调试包也能识别
+    private static String apkVersionKey(Context context) {
+        try {
+            android.content.pm.PackageInfo pi = context.getPackageManager().getPackageInfo(context.getPackageName(), 0);
+            long code = android.os.Build.VERSION.SDK_INT >= 28 ? pi.getLongVersionCode() : pi.versionCode;
+            return code + "_" + pi.lastUpdateTime;
+        } catch (Throwable t) {
+            return "unknown";
+        }
+    }
+
+    // copylist.txt 所列文件；"tts" 为目录，递归展开
+    private static List<String> listAssets(AssetManager am) throws java.io.IOException {
+        List<String> out = new ArrayList<>();
+        try (java.io.BufferedReader br = new java.io.BufferedReader(new java.io.InputStreamReader(am.open(COPY_LIST)))) {
+            String l;
+            while ((l = br.readLine()) != null) {
+                l = l.trim();
+                if (l.isEmpty()) continue;
+                if (l.equals("tts")) listDir(am, l, out); else out.add(l);
+            }
+        }
+        Collections.sort(out);
+        return out;
+    }
+
+    private static void listDir(AssetManager am, String dir, List<String> out) throws java.io.IOException {
+        String[] list = am.list(dir);
+        if (list == null) return;
+        for (String name : list) {
+            String path = dir + "/" + name;
+            String[] sub = am.list(path);
+            if (sub != null && sub.length > 0) listDir(am, path, out); else out.add(path);
+        }
+    }
+
+    private static java.util.zip.ZipFile openApk(Context context) {
+        try {
+            return new java.util.zip.ZipFile(context.getApplicationInfo().sourceDir);
+        } catch (Throwable t) {
+            Log.w(TAG, "open apk failed, hashing asset content: " + t.getMessage());
+            return null;
+        }
+    }
+
+    // 长度与 CRC32：优先取 APK 中 assets/ 条目的记录；取不到时读一遍资源计算（仅在 APK 更新后执行）
+    private static void describe(AssetManager am, java.util.zip.ZipFile apk, String name, long[] lengths, long[] crcs, int i)
+            throws java.io.IOException {
+        java.util.zip.ZipEntry e = apk != null ? apk.getEntry("assets/" + name) : null;
+        if (e != null && e.getSize() >= 0 && e.getCrc() != -1) {
+            lengths[i] = e.getSize();
+            crcs[i] = e.getCrc();
+            return;
+        }
+        java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+        long n = 0;
+        byte[] buf = new byte[COPY_BUFFER];
+        try (java.io.InputStream in = am.open(name)) {
+            int r;
+            while ((r = in.read(buf)) != -1) {
+                crc.update(buf, 0, r);
+                n += r;
+            }
+        }
+        lengths[i] = n;
+        crcs[i] = crc.getValue();
+    }
+
+    private static String manifestHash(List<String> assets, long[] lengths, long[] crcs) throws Exception {
+        java.security.MessageDigest md = java.security.MessageDigest.getInstance("SHA-256");
+        for (int i = 0; i < lengths.length; i++) {
+            md.update((assets.get(i) + ':' + lengths[i] + ':' + Long.toHexString(crcs[i]) + '\n').getBytes("UTF-8"));
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte b : md.digest()) sb.append(String.format("%02x", b));
+        return sb.toString();
+    }
+
+    private static boolean allPresent(File root, List<String> assets, long[] lengths) {
+        for (int i = 0; i < lengths.length; i++) {
+            if (new File(root, assets.get(i)).length() != lengths[i]) return false;
+        }
+        return true;
+    }
+
+    private static void copyAll(final AssetManager am, final File root, List<String> assets) throws Exception {
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        java.util.concurrent.ExecutorService pool = java.util.concurrent.Executors.newFixedThreadPool(threads, r -> new Thread(r, "SdkAssetCopy"));
+        try {
+            List<java.util.concurrent.Future<?>> futures = new ArrayList<>();
+            for (final String name : assets) {
+                futures.add(pool.submit(() -> {
+                    copyOne(am, name, new File(root, name));
+                    return null;
+                }));
+            }
+            for (java.util.concurrent.Future<?> f : futures) f.get();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static void copyOne(AssetManager am, String name, File out) throws java.io.IOException {
+        File parent = out.getParentFile();
+        if (parent != null && !parent.exists()) parent.mkdirs();
+        File tmp = new File(out.getPath() + ".tmp");
+        try (java.io.FileOutputStream os = new java.io.FileOutputStream(tmp)) {
+            java.nio.channels.FileChannel dst = os.getChannel();
+            AssetFileDescriptor afd = null;
+            try {
+                afd = am.openFd(name);
+            } catch (java.io.FileNotFoundException compressed) {
+                // 压缩存储的资源无法取文件描述符
+            }
+            if (afd != null) {
+                try (AssetFileDescriptor fd = afd; java.io.FileInputStream fis = fd.createInputStream()) {
+                    java.nio.channels.FileChannel src = fis.getChannel();
+                    long pos = fd.getStartOffset();
+                    long remaining = fd.getLength();
+                    while (remaining > 0) {
+                        long n = src.transferTo(pos, remaining, dst);
+                        if (n <= 0) throw new java.io.IOException("short copy: " + name + ", " + remaining + " bytes left");
+                        pos += n;
+                        remaining -= n;
+                    }
+                }
+            } else {
+                try (java.io.InputStream in = am.open(name)) {
+                    byte[] buf = new byte[COPY_BUFFER];
+                    int r;
+                    while ((r = in.read(buf)) != -1) os.write(buf, 0, r);
+                }
+            }
+        }
+        if (!tmp.renameTo(out)) {
+            out.delete();
+            if (!tmp.renameTo(out)) throw new java.io.IOException("rename failed: " + out);
+        }
+    }
+
+    // 旧戳内容为清单哈希；换戳时删除旧戳
+    private static String readOldHash(File root) {
+        File[] olds = root.listFiles((dir, n) -> n.startsWith(STAMP_PREFIX));
+        if (olds == null) return null;
+        for (File f : olds) {
+            try (java.io.BufferedReader br = new java.io.BufferedReader(new java.io.FileReader(f))) {
+                String h = br.readLine();
+                if (h != null) return h.trim();
+            } catch (Throwable ignore) {}
+        }
+        return null;
+    }
+
+    private static void writeStamp(File root, File stamp, String hash) throws java.io.IOException {
+        File[] olds = root.listFiles((dir, n) -> n.startsWith(STAMP_PREFIX));
+        if (olds != null) for (File f : olds) f.delete();
+        try (java.io.FileWriter w = new java.io.FileWriter(stamp)) {
+            w.write(hash);
+            w.write('\n');
+        }
+    }
+}
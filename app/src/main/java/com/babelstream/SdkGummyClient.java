@@ -30,27 +30,147 @@ public class SdkGummyClient {
 
     private static final String TAG = "SdkGummyClient";
 
+    // 积压超出延迟预算时的处理策略（缓冲真正写满时始终覆盖最旧数据，并计入 overrun）
+    public static final int OVERFLOW_DROP_OLDEST = 0;     // 不干预：仅在写满时覆盖最旧数据（旧行为）
+    public static final int OVERFLOW_DROP_NON_SPEECH = 1; // 超预算时丢弃新到的非语音，优先保住语音
+    public static final int OVERFLOW_CATCH_UP = 2;        // 超预算时压缩静音（只保留一小段），追回实时
+    private static final int CATCH_UP_KEEP_DIVISOR = 4;   // 追赶时非语音每 4 帧保留 1 整帧，超出两倍预算时全部跳过
+    private static final int OPUS_FRAME_MS = 20;          // SDK 内 Opus 编码帧长
+    static final int MAX_END_SILENCE_MS = 800;            // 服务端断句所需的句尾静音（nls_config.max_end_silence）
+
     private final Context context;
     private final ConfigManager config;
     private final int sampleRate;
+    private final int uplinkCodec;  // ConfigManager.UPLINK_CODEC_*，决定 sr_format 与取数对齐
+    private final int frameBytes;   // Opus：一帧 20ms；PCM：无数据时补静音的长度（约 10ms@16kHz）
     private final NativeNui nui = new NativeNui();
     private final NativeNui nuiUtils = new NativeNui(Constants.ModeType.MODE_UTILS);
-    private final PcmRingBuffer ringBuffer = new PcmRingBuffer(256 * 1024); // 256KB 环形缓冲
+    private final PcmRingBuffer ringBuffer; // 容量按毫秒配置（见 ConfigManager.getRecognizerBufferMs）
     private volatile RecognitionCallback cb;
     private volatile boolean running = false;
     private volatile boolean inited = false;
     private volatile boolean started = false;
+    private volatile boolean prepared = false; // initialize + setParams 已完成
+    private volatile boolean closed = false;   // 已调用 stop：进行中的 prepare/start 结束后不再开会话
+    // VAD 空闲态：非语音期间取数等待更久，只发送稀疏保活帧
+    private volatile boolean streamIdle = false;
+    private volatile int idleWaitMs = 500;
+    // 无播放暂停：采集已停，取数等待更久（仅稀疏保活），不计欠载
+    private static final int PAUSED_WAIT_MS = 2000;
+    private volatile boolean paused = false;
+    // 长时间静默挂起：仅 stopDialog（NativeNui 保持初始化），语音恢复时重新 startDialog；
+    // 挂起期间写入的音频留在环形缓冲，会话重开后由 SDK 取数补发，不丢字
+    private volatile int suspendAfterMs = 0;          // 0 = 不挂起
+    private volatile long quietSinceNs = 0L;          // 进入空闲/暂停的时刻，0 表示当前有语音
+    private volatile boolean dialogSuspended = false;
+    private volatile boolean suspendPending = false;
+    private volatile java.util.concurrent.ExecutorService dialogExecutor; // 会话开关串行执行，不占用 SDK 回调线程
+    private volatile long suspendCount = 0L;
+    private volatile long lastResumeMs = -1L;        // 最近一次恢复：startDialog 耗时
+    // 静默计时与挂起态的判断/切换须在同一把锁下（采集线程、播放监听与会话线程都会触及）
+    private final Object quietLock = new Object();
+    // stop 时同步 stopDialog 后等待云端把最后一句识别完（完成或错误事件），再释放
+    private static final long FINAL_WAIT_MS = 2000L;
+    private final Object dialogLock = new Object();
+    private boolean dialogComplete = false;
+    private volatile LevelMeter levelMeter;
+    private volatile String label; // 双会话时的说话方标签（me/them），仅用于诊断
+    private volatile int overflowPolicy = OVERFLOW_CATCH_UP;
+    private volatile int latencyBudgetMs = 1500;
+    // 统计（样本数）：生产者写 droppedNonSpeech/compressed，消费者写 underruns
+    private volatile long droppedNonSpeechSamples = 0L;
+    private volatile long compressedSamples = 0L;
+    private int catchUpFrames = 0; // 追赶中经过的非语音帧数（仅生产者线程）
+    private volatile long underruns = 0L;
+    // 时间线：环形缓冲写位置 → 采集时刻（生产者标记），SDK 音频流位置 → 采集时刻（取数线程标记）
+    private final StreamTimeline ringTimeline;
+    private final StreamTimeline streamTimeline;
+    private volatile long sdkStreamBytes = 0L; // 本次会话已交给 SDK 的字节数（含补的静音）
+    private volatile long lastLatencyMs = -1L; // 最近一句：采集到字幕回调的延迟
+    private volatile long avgLatencyMs = -1L;
+    // 上行编码开销：SDK 在取数线程上两次回调之间消耗的 CPU（含编码与发送）/ 交付音频时长
+    // 只计取数线程；SDK 在其他线程上的发送/解码不在内
+    private long lastCallbackExitCpuNs = 0L;
+    private volatile long feedThreadCpuNs = 0L;
+    private volatile long feedThreadAudioBytes = 0L;
+    // Opus 说话中凑不满一帧的尾巴（仅取数线程），下次回调拼在开头
+    private final byte[] opusCarry;
+    private int opusCarryLen = 0;
+    // 链路质量信号（见 LinkQualityController）：SDK 错误事件累计数、自上次取样以来的最大结果延迟
+    private volatile long errorEvents = 0L;
+    private volatile long peakLatencyMs = -1L;
+    // SDK 回调分发：回调线程只拷贝原始内容入队即返回，解析、状态/结果回调（广播）在分发线程上按序执行；
+    // 容量固定。队列满时先挤出日志与最旧的中间结果（其后已排着同句更新的结果），句末/错误/完成事件不挤出：
+    // 只剩此类事件时 SDK 回调最多阻塞 DISPATCH_BLOCK_MS 等分发线程腾出位置
+    private static final int DISPATCH_CAPACITY = 128;
+    private static final long DISPATCH_BLOCK_MS = 200L;
+    private final StageWorker<NuiCallbackEvent> dispatch;
+    // 结果事件解析（仅分发线程）：流式提取所需字段，累计耗时供诊断
+    private final GummyEventParser eventParser = new GummyEventParser();
+    private volatile long parseNs = 0L;
+    private volatile long parseCount = 0L;
+    // 会话采样率与采集管线不同时，写入环形缓冲前重采样；仅生产者线程使用
+    private volatile PolyphaseResampler inputResampler;
+    private short[] resampleIn = new short[0];
+    private short[] resampleOut = new short[0];
 
     public SdkGummyClient(Context ctx, ConfigManager cfg, int sr) {
+        this(ctx, cfg, sr, (cfg != null) ? cfg.getUplinkCodec() : ConfigManager.UPLINK_CODEC_PCM);
+    }
+
+    public SdkGummyClient(Context ctx, ConfigManager cfg, int sr, int uplinkCodec) {
         this.context = ctx.getApplicationContext();
         this.config = cfg;
         this.sampleRate = sr > 0 ? sr : 16000;
+        this.uplinkCodec = uplinkCodec;
+        this.frameBytes = (uplinkCodec == ConfigManager.UPLINK_CODEC_OPUS) ? this.sampleRate * 2 * OPUS_FRAME_MS / 1000 : 320;
+        this.opusCarry = new byte[frameBytes];
+        int bufferMs = (cfg != null) ? cfg.getRecognizerBufferMs() : 8000;
+        this.ringBuffer = new PcmRingBuffer((int) ((long) this.sampleRate * 2 * bufferMs / 1000));
+        this.ringTimeline = new StreamTimeline(256, this.sampleRate);
+        this.streamTimeline = new StreamTimeline(1024, this.sampleRate);
+        this.dispatch = new StageWorker<>("NuiDispatch", DISPATCH_CAPACITY, android.os.Process.THREAD_PRIORITY_DEFAULT,
+                new StageWorker.Handler<NuiCallbackEvent>() {
+                    @Override public void handle(NuiCallbackEvent e, long queuedNs) {
+                        if (e.log) handleLogTrack(e.name, e.payload); else handleNuiEvent(e);
+                    }
+                    @Override public void onDropped(NuiCallbackEvent e) {}
+                    @Override public boolean isDiscardable(NuiCallbackEvent e) { return e.log || e.partial; }
+                }, DISPATCH_BLOCK_MS);
     }
 
     public void setCallback(RecognitionCallback callback) { this.cb = callback; }
 
-    public boolean start() {
-        if (running) return true;
+    /** 上行音频格式（nls_config.sr_format）：Opus 由 SDK 内置编码器压缩，仍从环形缓冲取 PCM */
+    public String getSrFormat() { return uplinkCodec == ConfigManager.UPLINK_CODEC_OPUS ? "opus" : "pcm"; }
+
+    /** 采集管线的输出采样率；与会话采样率不同时 offerPcm 先重采样（须在写入音频前设置） */
+    public void setInputSampleRate(int inRate) {
+        inputResampler = (inRate > 0 && inRate != sampleRate)
+                ? new PolyphaseResampler(inRate, sampleRate, PolyphaseResampler.QUALITY_MEDIUM) : null;
+    }
+
+    /** offerPcm 期望的输入采样率 */
+    public int getInputSampleRate() {
+        PolyphaseResampler rs = inputResampler;
+        return rs != null ? rs.getInRate() : sampleRate;
+    }
+
+    /** 会话标签（双会话时区分 me/them） */
+    public void setLabel(String label) { this.label = label; }
+
+    /** 共享电平表：SDK 上报的 RMS 记入其中供诊断 */
+    public void setLevelMeter(LevelMeter meter) { this.levelMeter = meter; }
+
+    /**
+     * 准备会话：拷贝 SDK 资源、initialize、setParams（不连接云端）。
+     * 可提前在后台线程调用（见 RecognizerWarmup），start 时只需 startDialog；重复调用无副作用。
+     */
+    public synchronized boolean prepare() {
+        if (closed) return false;
+        if (prepared) return true;
+        // initialize 期间即可能回调，分发线程须先就绪
+        dispatch.start();
         try {
             String deviceId;
             try {
@@ -67,7 +187,7 @@ public class SdkGummyClient {
             java.io.File ext = context.getExternalCacheDir();
             java.io.File workDir = (ext != null) ? new java.io.File(ext, "debug") : new java.io.File(context.getFilesDir(), "nui");
             if (!workDir.exists()) { try { workDir.mkdirs(); } catch (Throwable ignore) {} }
-            copySdkAssetsIfNeeded(workDir);
+            SdkAssetExtractor.ensure(context, workDir);
 
             JSONObject parameters = new JSONObject();
             parameters.put("url", url);
@@ -121,6 +241,8 @@ public class SdkGummyClient {
             emitStatus("initialize ret=" + initRet);
             try { Log.i(TAG, "INIT params url=" + url + ", deviceId=" + deviceId + ", workDir=" + workDir.getAbsolutePath()); } catch (Throwable ignore) {}
             if (initRet != 0) {
+                // 资源文件可能已损坏：删除戳文件，下次初始化前重新解压
+                SdkAssetExtractor.invalidate(workDir);
                 emitError("SDK初始化失败: ret=" + initRet);
                 return false;
             }
@@ -128,7 +250,7 @@ public class SdkGummyClient {
 
             JSONObject nls = new JSONObject();
             nls.put("model", config.getModel());
-            nls.put("sr_format", "pcm");
+            nls.put("sr_format", getSrFormat());
             nls.put("sample_rate", sampleRate);
             nls.put("transcription_enabled", true);
             nls.put("translation_enabled", config.isTranslationEnabled());
@@ -137,7 +259,7 @@ public class SdkGummyClient {
             try { nls.put("app_key", config.getApiKey()); } catch (Throwable ignore) {}
             // 提高易用性：自动语种 + 结束静音阈值
             try { nls.put("source_language", "auto"); } catch (Throwable ignore) {}
-            try { nls.put("max_end_silence", 800); } catch (Throwable ignore) {}
+            try { nls.put("max_end_silence", MAX_END_SILENCE_MS); } catch (Throwable ignore) {}
             if (config.isTranslationEnabled()) {
                 JSONArray arr = new JSONArray();
                 arr.put(config.getTargetLanguage());
@@ -162,24 +284,36 @@ public class SdkGummyClient {
                 emitError("设置参数失败: ret=" + setRet);
                 return false;
             }
+            prepared = true;
+            return true;
+        } catch (Throwable t) {
+            Log.e(TAG, "prepare error", t);
+            emitError("启动失败: " + t.getMessage());
+            return false;
+        }
+    }
 
-            // 直接使用 API Key，避免在目标设备上访问 tokens 接口失败（SSL/url illegal）
-            String key = config.getApiKey();
-            try { params.put("apikey", key); } catch (Throwable ignore) {}
-            org.json.JSONObject dialog = new org.json.JSONObject();
-            try { dialog.put("apikey", key); } catch (Throwable ignore) {}
-            // 兜底：在 dialog 参数中也携带 model，规避某些版本丢失 model 的问题
-            try { dialog.put("model", config.getModel()); } catch (Throwable ignore) {}
-            int startRet = nui.startDialog(Constants.VadMode.TYPE_P2T, dialog.toString());
-            Log.i(TAG, "startDialog ret=" + startRet);
+    /** 会话是否已完成 initialize/setParams（预热命中时 start 只需打开会话） */
+    public boolean isPrepared() { return prepared; }
+
+    public synchronized boolean start() {
+        if (running) return true;
+        if (!prepare()) return false;
+        if (closed) return false; // initialize 期间已请求停止：由 stop 释放
+        try {
+            // 直接使用 API Key（startDialog 传入），避免在目标设备上访问 tokens 接口失败（SSL/url illegal）
+            int startRet = openDialog();
             emitStatus("startDialog ret=" + startRet);
-            try { Log.i(TAG, "dialog json(apikey masked)=" + dialog.toString()); } catch (Throwable ignore) {}
             if (startRet != 0) {
                 emitError("启动识别失败: ret=" + startRet);
                 return false;
             }
             emitStatus("识别中...");
             started = true;
+            dialogSuspended = false;
+            if (dialogExecutor == null) {
+                dialogExecutor = java.util.concurrent.Executors.newSingleThreadExecutor(r -> new Thread(r, "NuiDialogThread"));
+            }
             running = true;
             return true;
         } catch (Throwable t) {
@@ -189,22 +323,328 @@ public class SdkGummyClient {
         }
     }
 
+    // 开启一次云端会话；首次启动与挂起后恢复共用（setParams 已生效，无需重新初始化）
+    private int openDialog() {
+        String key = config.getApiKey();
+        org.json.JSONObject dialog = new org.json.JSONObject();
+        try { dialog.put("apikey", key); } catch (Throwable ignore) {}
+        // 兜底：在 dialog 参数中也携带 model，规避某些版本丢失 model 的问题
+        try { dialog.put("model", config.getModel()); } catch (Throwable ignore) {}
+        sdkStreamBytes = 0L;
+        streamTimeline.clear();
+        synchronized (dialogLock) { dialogComplete = false; }
+        int ret = nui.startDialog(Constants.VadMode.TYPE_P2T, dialog.toString());
+        Log.i(TAG, "startDialog ret=" + ret);
+        try { Log.i(TAG, "dialog json(apikey masked)=" + dialog.toString()); } catch (Throwable ignore) {}
+        return ret;
+    }
+
+    /** 停止并释放；与 prepare/start 串行，启动中途调用时等其返回后再关闭，之后不可再启动 */
     public void stop() {
-        if (!running) return;
+        closed = true;
+        shutdown();
+    }
+
+    private synchronized void shutdown() {
+        if (!running && !inited) {
+            dispatch.stop(); // initialize 失败时分发线程已启动
+            return;
+        }
+        boolean wasRunning = running;
         running = false;
-        try { if (started) nui.stopDialog(); } catch (Throwable ignore) {}
+        // 等待进行中的挂起/恢复结束，再关闭会话与释放
+        java.util.concurrent.ExecutorService ex = dialogExecutor;
+        dialogExecutor = null;
+        if (ex != null) {
+            ex.shutdown();
+            try { ex.awaitTermination(2000, java.util.concurrent.TimeUnit.MILLISECONDS); } catch (InterruptedException ignore) {}
+        }
+        // 同步关闭会话：SDK 结束音频流后云端给出末句 sentence_end，收到完成事件再释放（已挂起则无在途句子）
+        if (started && !dialogSuspended) {
+            try { nui.stopDialog(); } catch (Throwable t) { Log.w(TAG, "stopDialog failed", t); }
+            if (!awaitDialogComplete(FINAL_WAIT_MS)) Log.w(TAG, "no final event within " + FINAL_WAIT_MS + "ms, releasing");
+        }
         try { if (inited) nui.release(); } catch (Throwable ignore) {}
+        // release 之后不再有回调：等已入队的事件（末句结果、错误）分发完再停线程
+        long deadline = System.nanoTime() + 500_000_000L;
+        while (dispatch.depth() > 0 && System.nanoTime() < deadline) {
+            try { Thread.sleep(10); } catch (InterruptedException e) { break; }
+        }
+        dispatch.stop();
         inited = false;
+        prepared = false;
         started = false;
-        emitStatus("识别已停止");
+        dialogSuspended = false;
+        if (wasRunning) emitStatus("识别已停止");
+    }
+
+    // 等待分发线程收到会话完成（或错误）事件
+    private boolean awaitDialogComplete(long timeoutMs) {
+        long deadline = System.nanoTime() + timeoutMs * 1_000_000L;
+        synchronized (dialogLock) {
+            while (!dialogComplete) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) return false;
+                try { dialogLock.wait(Math.max(1L, remaining / 1_000_000L)); } catch (InterruptedException e) { return false; }
+            }
+            return true;
+        }
+    }
+
+    private void onDialogComplete() {
+        synchronized (dialogLock) {
+            dialogComplete = true;
+            dialogLock.notifyAll();
+        }
     }
 
-    /** 提供给采集端写入 PCM 16bit LE mono 数据 */
+    /** 提供给采集端写入 PCM 16bit LE mono 数据（按整样本写入，奇数长度的末字节舍去） */
     public void offerPcm(byte[] data, int length) {
         if (data == null || length <= 0) return;
         ringBuffer.write(data, 0, Math.min(length, data.length));
     }
 
+    /** 提供给采集端写入一帧 PCM 样本（不负责释放帧） */
+    public void offerPcm(AudioFrame frame) {
+        offerPcm(frame, true);
+    }
+
+    /** 写入一帧并标明是否为语音；非语音在积压超出延迟预算时按策略丢弃或压缩 */
+    public void offerPcm(AudioFrame frame, boolean speech) {
+        if (frame == null || frame.length <= 0) return;
+        offerPcm(frame.samples, 0, frame.length, speech, frame.captureTimeNs);
+    }
+
+    /** 写入一段 PCM 样本（按语音处理，采集时刻未知） */
+    public void offerPcm(short[] samples, int off, int count) {
+        offerPcm(samples, off, count, true, 0L);
+    }
+
+    /** 写入一段 PCM 样本；captureTimeNs 为首个样本的采集时刻（System.nanoTime 时基，0 表示未知） */
+    public void offerPcm(short[] samples, int off, int count, boolean speech, long captureTimeNs) {
+        if (samples == null || count <= 0) return;
+        PolyphaseResampler rs = inputResampler;
+        if (rs != null) {
+            // 重采样器从下标 0 读输入，先拷到工作区
+            if (resampleIn.length < count) resampleIn = new short[count];
+            System.arraycopy(samples, off, resampleIn, 0, count);
+            int max = rs.maxOutput(count);
+            if (resampleOut.length < max) resampleOut = new short[max];
+            count = rs.process(resampleIn, count, resampleOut);
+            if (count <= 0) return;
+            samples = resampleOut;
+            off = 0;
+        }
+        if (!speech && overflowPolicy != OVERFLOW_DROP_OLDEST) {
+            int budget = latencyBudgetMs;
+            int backlog = getBacklogMs();
+            if (backlog > budget) {
+                if (overflowPolicy == OVERFLOW_DROP_NON_SPEECH) {
+                    droppedNonSpeechSamples += count;
+                    return;
+                }
+                // 整帧取舍，不截断帧内音频
+                boolean keep = backlog <= 2 * budget && catchUpFrames++ % CATCH_UP_KEEP_DIVISOR == 0;
+                if (!keep) {
+                    compressedSamples += count;
+                    return;
+                }
+            } else {
+                catchUpFrames = 0;
+            }
+        }
+        if (captureTimeNs != 0L) ringTimeline.mark(ringBuffer.writePosition(), captureTimeNs);
+        ringBuffer.write(samples, off, count);
+    }
+
+    /** 积压处理策略（OVERFLOW_*）与延迟预算（毫秒） */
+    public void setOverflowPolicy(int policy, int budgetMs) {
+        this.overflowPolicy = policy;
+        this.latencyBudgetMs = Math.max(200, budgetMs);
+    }
+
+    /** 尚未被 SDK 取走的音频时长（毫秒） */
+    public int getBacklogMs() {
+        return (int) ((long) ringBuffer.available() * 1000 / (sampleRate * 2L));
+    }
+
+    /** 缓冲写满被覆盖丢弃的音频时长（毫秒，累计） */
+    public long getOverrunMs() { return ringBuffer.overrunBytes() * 1000 / (sampleRate * 2L); }
+
+    /** 推流期间 SDK 取数时无数据、只能补静音的次数（累计，不含 VAD 空闲态） */
+    public long getUnderruns() { return underruns; }
+
+    /** 超预算时丢弃的非语音时长（毫秒，累计） */
+    public long getDroppedNonSpeechMs() { return droppedNonSpeechSamples * 1000 / sampleRate; }
+
+    /** 追赶时压缩掉的静音时长（毫秒，累计） */
+    public long getCompressedMs() { return compressedSamples * 1000 / sampleRate; }
+
+    /** 缓冲统计摘要，供诊断日志使用 */
+    public String statsSummary() {
+        return (label != null ? "[" + label + "] " : "") + "backlog=" + getBacklogMs() + "ms, overrun=" + getOverrunMs() + "ms, underruns=" + getUnderruns()
+                + ", droppedNonSpeech=" + getDroppedNonSpeechMs() + "ms, compressed=" + getCompressedMs() + "ms"
+                + ", latency=" + lastLatencyMs + "ms(avg " + avgLatencyMs + ")"
+                + ", parse=" + getAvgParseUs() + "us/event, " + dispatch.stats()
+                + ", uplink=" + getSrFormat() + "@" + sampleRate + ", feedThreadCpu=" + getFeedThreadCpuMsPerSec() + "ms/s"
+                + (suspendAfterMs > 0 ? ", suspends=" + suspendCount + (dialogSuspended ? "(now)" : "") + ", resume=" + lastResumeMs + "ms" : "");
+    }
+
+    /**
+     * SDK 取数线程每秒音频消耗的 CPU 毫秒（累计平均；用于比较 PCM 与 Opus 上行的编码开销），未知时为 -1。
+     * 只是取数线程上的开销，不是 SDK 的总 CPU
+     */
+    public float getFeedThreadCpuMsPerSec() {
+        long bytes = feedThreadAudioBytes;
+        if (bytes <= 0) return -1f;
+        return Math.round(feedThreadCpuNs / 1e5 * (sampleRate * 2.0) / bytes) / 10f;
+    }
+
+    /** 结果事件平均解析耗时（微秒，累计平均），未解析过为 -1 */
+    public long getAvgParseUs() {
+        long n = parseCount;
+        return n > 0 ? parseNs / n / 1000L : -1L;
+    }
+
+    /** SDK 错误事件累计数（会话失败、ASR 错误） */
+    public long getErrorEvents() { return errorEvents; }
+
+    /** 自上次调用以来结果延迟的最大值（毫秒），期间无结果为 -1；调用后清零 */
+    public long takePeakLatencyMs() {
+        long v = peakLatencyMs;
+        peakLatencyMs = -1L;
+        return v;
+    }
+
+    /** 最近一句识别结果相对其音频采集时刻的延迟（毫秒），未知时为 -1 */
+    public long getLastLatencyMs() { return lastLatencyMs; }
+
+    /** 平滑后的平均延迟（毫秒），未知时为 -1 */
+    public long getAvgLatencyMs() { return avgLatencyMs; }
+
+    // 结果中的 end_time（会话音频流内毫秒）→ 采集时刻 → 当前延迟
+    private void recordLatency(long endTimeMs) {
+        if (endTimeMs <= 0) return;
+        long captureNs = streamTimeline.timeAt(endTimeMs * sampleRate * 2L / 1000L);
+        if (captureNs == 0L) return;
+        long ms = (System.nanoTime() - captureNs) / 1_000_000L;
+        if (ms < 0) return;
+        lastLatencyMs = ms;
+        if (ms > peakLatencyMs) peakLatencyMs = ms;
+        long avg = avgLatencyMs;
+        avgLatencyMs = (avg < 0) ? ms : (avg * 7 + ms) / 8;
+    }
+
+    /**
+     * 由 VAD 门限切换空闲态：空闲时 onNuiNeedAudioData 最多等待 idleWaitMs 才补一帧保活静音；
+     * 有新数据写入时立即唤醒，不影响语音恢复的时延。
+     */
+    public void setStreamIdle(boolean idle) {
+        this.streamIdle = idle;
+        onQuietChanged();
+    }
+
+    /**
+     * 低功耗暂停（如系统无播放、采集已暂停）：保持会话，取数最多等待 PAUSED_WAIT_MS 才补一帧保活静音；
+     * 恢复后新数据写入即唤醒。
+     */
+    public void setPaused(boolean paused) {
+        this.paused = paused;
+        onQuietChanged();
+    }
+
+    /**
+     * 空闲/暂停持续超过 ms 后挂起云端会话（stopDialog，不释放 NativeNui），省去保活流量与按时长计费；
+     * 语音恢复时立即重开，期间到达的音频在环形缓冲中等待补发。0 表示不挂起。
+     */
+    public void setSuspendAfterMs(int ms) { this.suspendAfterMs = Math.max(0, ms); }
+
+    /** 云端会话当前是否因长时间静默而挂起 */
+    public boolean isDialogSuspended() { return dialogSuspended; }
+
+    // 静默计时：进入空闲/暂停时开始，有语音时清零；已挂起则请求恢复
+    private void onQuietChanged() {
+        synchronized (quietLock) {
+            if (streamIdle || paused) {
+                if (quietSinceNs == 0L) quietSinceNs = System.nanoTime();
+            } else {
+                quietSinceNs = 0L;
+                if (dialogSuspended) requestResume();
+            }
+        }
+    }
+
+    // 取数线程发现静默超时后调用；实际 stopDialog 在会话线程执行，不能在 SDK 回调里关闭会话
+    private void requestSuspend() {
+        java.util.concurrent.ExecutorService ex = dialogExecutor;
+        if (ex == null || suspendPending) return;
+        suspendPending = true;
+        try {
+            ex.execute(this::suspendDialog);
+        } catch (Throwable t) {
+            suspendPending = false;
+        }
+    }
+
+    private void requestResume() {
+        java.util.concurrent.ExecutorService ex = dialogExecutor;
+        if (ex == null) return;
+        try { ex.execute(this::resumeDialog); } catch (Throwable ignore) {}
+    }
+
+    private void suspendDialog() {
+        long quietNs;
+        try {
+            // 排队期间语音已恢复则作罢
+            synchronized (quietLock) {
+                quietNs = quietSinceNs;
+                if (!running || !started || dialogSuspended || quietNs == 0L) return;
+            }
+            try { nui.stopDialog(); } catch (Throwable t) { Log.w(TAG, "stopDialog on suspend failed", t); }
+        } finally {
+            suspendPending = false;
+        }
+        boolean resumeNow;
+        synchronized (quietLock) {
+            started = false;
+            dialogSuspended = true;
+            suspendCount++;
+            // 关闭期间语音已恢复（onQuietChanged 当时未见挂起态）：立即重开
+            resumeNow = quietSinceNs == 0L;
+        }
+        Log.i(TAG, (label != null ? "[" + label + "] " : "") + "dialog suspended after "
+                + (System.nanoTime() - quietNs) / 1_000_000L + "ms quiet");
+        emitStatus("长时间无语音，已暂停云端会话");
+        if (resumeNow) resumeDialog();
+    }
+
+    private void resumeDialog() {
+        if (!running || !dialogSuspended) return;
+        long t0 = System.nanoTime();
+        int ret;
+        try {
+            ret = openDialog();
+        } catch (Throwable t) {
+            Log.w(TAG, "resume dialog failed", t);
+            ret = -1;
+        }
+        if (ret != 0) {
+            // 保持挂起态：下一次语音恢复时重试，缓冲中的音频按积压策略处理
+            emitError("恢复识别失败: ret=" + ret);
+            return;
+        }
+        synchronized (quietLock) {
+            started = true;
+            dialogSuspended = false;
+        }
+        lastResumeMs = (System.nanoTime() - t0) / 1_000_000L;
+        Log.i(TAG, (label != null ? "[" + label + "] " : "") + "dialog resumed in " + lastResumeMs + "ms, backlog=" + getBacklogMs() + "ms");
+        emitStatus("识别中...");
+    }
+
+    /** 空闲态下两次保活帧之间的最长等待（毫秒） */
+    public void setIdleWaitMs(int ms) { this.idleWaitMs = Math.max(100, ms); }
+
     private void emitStatus(String s) { try { if (cb != null) cb.onStatusChange(s); } catch (Throwable ignore) {} }
     private void emitError(String s) { try { if (cb != null) cb.onError(s); } catch (Throwable ignore) {} }
     private void emitTranscription(String t) { try { if (cb != null && t != null) cb.onTranscription(t); } catch (Throwable ignore) {} }
@@ -213,73 +653,22 @@ public class SdkGummyClient {
     private final INativeNuiCallback nuiCallback = new INativeNuiCallback() {
         @Override
         public void onNuiEventCallback(Constants.NuiEvent event, int resultCode, int arg2, KwsResult kwsResult, AsrResult asrResult) {
+            // SDK 回调线程：只取出原始内容（asrResult 返回后可能被复用），解析与分发交给 NuiDispatch
             try {
-                try { emitStatus("NuiEvent=" + String.valueOf(event) + ", code=" + resultCode); } catch (Throwable ignore) {}
-                // 优先解析 allResponse（与官方示例一致）
-                String resp = null;
-                if (asrResult != null) {
-                    try {
-                        java.lang.reflect.Field f = asrResult.getClass().getField("allResponse");
-                        Object v = f.get(asrResult);
-                        if (v instanceof String) resp = (String) v;
-                    } catch (Throwable ignore) {
-                        try { resp = invokeString(asrResult, "getAllResponse"); } catch (Throwable ignore2) {}
-                    }
-                }
-
-                if (resp != null && !resp.isEmpty()) {
-                    org.json.JSONObject o = new org.json.JSONObject(resp);
-                    org.json.JSONObject payload = o.optJSONObject("payload");
-                    org.json.JSONObject output = (payload != null) ? payload.optJSONObject("output") : null;
-                    String asrText = null;
-                    String trText = null;
-                    if (output != null) {
-                        org.json.JSONObject transcription = output.optJSONObject("transcription");
-                        if (transcription != null) asrText = firstNonEmpty(transcription, "text", "result", "transcript");
-                        org.json.JSONArray translations = output.optJSONArray("translations");
-                        if (translations != null && translations.length() > 0) {
-                            StringBuilder sb = new StringBuilder();
-                            for (int i = 0; i < translations.length(); i++) {
-                                org.json.JSONObject it = translations.optJSONObject(i);
-                                if (it != null) {
-                                    String t = firstNonEmpty(it, "text", "result", "translation");
-                                    if (t != null && !t.isEmpty()) sb.append(t);
-                                }
-                            }
-                            trText = sb.toString();
-                        }
-                        if ((asrText == null || asrText.isEmpty())) asrText = firstNonEmpty(output, "text", "result");
-                    }
-                    if ((asrText == null || asrText.isEmpty())) { asrText = deepFindText(o); }
-                    if (asrText != null && !asrText.isEmpty()) {
-                        try { emitStatus("transcription:" + (asrText.length()>20?asrText.substring(0,20)+"…":asrText)); } catch (Throwable ignore) {}
-                        if (config.isTranslationEnabled() && (trText == null || trText.isEmpty())) { emitTranslation(asrText); } else { emitTranscription(asrText);
-                        try { Log.i(TAG, "EXTRACT asrText=" + asrText); } catch (Throwable ignore) {} }
-                    }
-                    if (trText != null && !trText.isEmpty()) {
-                        try { emitStatus("translation:" + (trText.length()>20?trText.substring(0,20)+"…":trText)); } catch (Throwable ignore) {}
-                        emitTranslation(trText);
-                        try { Log.i(TAG, "EXTRACT trText=" + trText); } catch (Throwable ignore) {}
-                    }
-                    org.json.JSONObject header = o.optJSONObject("header");
-                    if (header != null && header.optString("event", "").contains("failed")) {
-                        String em = header.optString("error_message", resp);
-                        emitError("SDK错误:" + em);
-                    }
-                } else if (asrResult != null) {
-                    // 退化：尝试常见 getter
-                    String text = null;
-                    try { text = invokeString(asrResult, "getResult"); } catch (Throwable ignore) {}
-                    if (text == null || text.isEmpty()) {
-                        try { text = invokeString(asrResult, "getText"); } catch (Throwable ignore) {}
-                    }
-                    if (text != null && !text.isEmpty()) {
-                        try { emitStatus("text:" + (text.length()>20?text.substring(0,20)+"…":text)); } catch (Throwable ignore) {}
-                        if (config.isTranslationEnabled()) emitTranslation(text); else emitTranscription(text);
+                String resp = GummyEventParser.allResponseOf(asrResult);
+                String fallback = null;
+                if ((resp == null || resp.isEmpty()) && asrResult != null) {
+                    try { fallback = invokeString(asrResult, "getResult"); } catch (Throwable ignore) {}
+                    if (fallback == null || fallback.isEmpty()) {
+                        try { fallback = invokeString(asrResult, "getText"); } catch (Throwable ignore) {}
                     }
                 }
+                String name = String.valueOf(event);
+                // 中间结果（非句末）会被同句后续结果覆盖，队列满时可挤出
+                boolean partial = name.contains("PARTIAL") && !GummyEventParser.isSentenceEnd(resp);
+                dispatch.offer(new NuiCallbackEvent(false, partial, name, resultCode, resp, fallback));
             } catch (Throwable t) {
-                Log.w(TAG, "onNuiEvent parse error", t);
+                Log.w(TAG, "onNuiEvent enqueue error", t);
             }
         }
 
@@ -291,38 +680,71 @@ public class SdkGummyClient {
         @Override
         public int onNuiNeedAudioData(byte[] buffer, int len) {
             if (buffer == null || len <= 0) return 0;
+            // 上次返回至今本线程的 CPU 即 SDK 处理上一段音频（编码/发送）的开销
+            long cpu = android.os.Debug.threadCpuTimeNanos();
+            if (cpu > 0 && lastCallbackExitCpuNs > 0 && cpu >= lastCallbackExitCpuNs) feedThreadCpuNs += cpu - lastCallbackExitCpuNs;
+            boolean opus = uplinkCodec == ConfigManager.UPLINK_CODEC_OPUS;
+            // 最多阻塞等待100ms以尽量凑齐数据（VAD空闲态等待更久）；有数据写入时立即唤醒
+            int waitMs = paused ? Math.max(idleWaitMs, PAUSED_WAIT_MS) : streamIdle ? idleWaitMs : 100;
+            // Opus：按整帧交付，避免编码器在帧中间切断；上次留下的尾巴拼在开头
+            int want = (opus && len >= frameBytes) ? len - len % frameBytes : len;
+            boolean whole = opus && want >= frameBytes;
             int total = 0;
-            long startTs = System.currentTimeMillis();
-            int maxWaitMs = 100; // 最多等待100ms以尽量凑齐数据
-            while (total < len && (System.currentTimeMillis() - startTs) <= maxWaitMs) {
-                int got = ringBuffer.read(buffer, total, len - total);
-                if (got > 0) {
-                    total += got;
-                } else {
-                    try { Thread.sleep(5); } catch (InterruptedException ignore) {}
+            boolean carried = false;
+            if (whole && opusCarryLen > 0) {
+                System.arraycopy(opusCarry, 0, buffer, 0, opusCarryLen);
+                total = opusCarryLen;
+                opusCarryLen = 0;
+            }
+            long readPos = ringBuffer.readPosition() - total;
+            total += ringBuffer.read(buffer, total, want - total, waitMs);
+            if (whole && total % frameBytes != 0) {
+                // 不足一帧的尾巴再等一帧时长；仍不足时，空闲/暂停/停止（语音已结束）补零成整帧，
+                // 说话中则留到下次回调，不在语音中间插入静音
+                total += ringBuffer.read(buffer, total, frameBytes - total % frameBytes, OPUS_FRAME_MS);
+                int tail = total % frameBytes;
+                if (tail != 0) {
+                    if (streamIdle || paused || !running) {
+                        for (int i = total; i < total + frameBytes - tail; i++) buffer[i] = 0;
+                        total += frameBytes - tail;
+                    } else {
+                        System.arraycopy(buffer, total - tail, opusCarry, 0, tail);
+                        opusCarryLen = tail;
+                        total -= tail;
+                        carried = true;
+                    }
                 }
             }
+            if (carried && total == 0) {
+                // 只凑到不足一帧的语音且已留到下次：本次不交数据，不补静音、不计欠载（补静音会插在这段语音之前）
+                lastCallbackExitCpuNs = android.os.Debug.threadCpuTimeNanos();
+                return 0;
+            }
+            // 本段在 SDK 音频流中的位置 → 采集时刻；补的静音时刻未知
+            streamTimeline.mark(sdkStreamBytes, total > 0 ? ringTimeline.timeAt(readPos) : 0L);
             if (total <= 0) {
-                // 避免返回0导致SDK报错，填充一小段静音
-                int pad = Math.min(len, 320); // 约10ms@16kHz
+                if (!streamIdle && !paused) underruns++;
+                long quietNs = quietSinceNs;
+                int after = suspendAfterMs;
+                if (after > 0 && quietNs != 0L && !dialogSuspended
+                        && System.nanoTime() - quietNs >= after * 1_000_000L) {
+                    requestSuspend();
+                }
+                // 环形缓冲确实没有数据：避免返回0导致SDK报错，填充一小段静音
+                int pad = Math.min(len, frameBytes);
                 for (int i = 0; i < pad; i++) buffer[i] = 0;
                 total = pad;
             }
+            sdkStreamBytes += total;
+            feedThreadAudioBytes += total;
+            lastCallbackExitCpuNs = android.os.Debug.threadCpuTimeNanos();
             return total;
         }
 
         @Override
         public void onNuiLogTrackCallback(Constants.LogLevel level, String log) {
-            try { Log.d(TAG, "sdklog[" + level + "]: " + log); } catch (Throwable ignore) {}
-            try { emitStatus("SDKLog[" + level + "]: " + log); } catch (Throwable ignore) {}
-            try {
-                if (log != null) {
-                    String low = log.toLowerCase();
-                    if (low.contains("null sdk request")) {
-                        emitError("SDK会话未建立：请检查API Key/网络/设备时间");
-                    }
-                }
-            } catch (Throwable ignore) {}
+            // 与结果事件同一队列，保持日志与事件的先后顺序
+            dispatch.offer(new NuiCallbackEvent(true, false, String.valueOf(level), 0, log, null));
         }
 
         @Override
@@ -332,136 +754,108 @@ public class SdkGummyClient {
 
         @Override
         public void onNuiAudioRMSChanged(float rms) {
-            // 音频 RMS 回调（电平变化），当前仅日志观测；若需要可对接 UI 电平
-            try { Log.v(TAG, "rms=" + rms); } catch (Throwable ignore) {}
+            // 音频 RMS 回调（电平变化）：记入共享电平表供诊断，界面电平仍以采集端为准
+            LevelMeter m = levelMeter;
+            if (m != null) m.setSdkRms(rms);
         }
     };
 
-    // 通过反射尝试调用无参 getter，返回 String
-    private static String invokeString(Object target, String method) {
-        try {
-            java.lang.reflect.Method m = target.getClass().getMethod(method);
-            Object v = m.invoke(target);
-            return (v instanceof String) ? (String) v : (v != null ? v.toString() : null);
-        } catch (Throwable t) {
-            return null;
-        }
-    }
-
-    private void copySdkAssetsIfNeeded(java.io.File destRoot) {
+    // 分发线程：解析结果事件并回调上层（状态、字幕、错误）
+    private void handleNuiEvent(NuiCallbackEvent e) {
         try {
-            android.content.res.AssetManager am = context.getAssets();
-            // 读取 copylist
-            java.io.InputStream is = am.open("copylist.txt");
-            java.util.List<String> lines = new java.util.ArrayList<>();
-            try (java.io.BufferedReader br = new java.io.BufferedReader(new java.io.InputStreamReader(is))) {
-                String l; while ((l = br.readLine()) != null) { l = l.trim(); if (!l.isEmpty()) lines.add(l); }
-            }
-            for (String item : lines) {
-                if (item.equals("tts")) {
-                    copyAssetDir(am, "tts", new java.io.File(destRoot, "tts"));
-                } else {
-                    copyAssetFile(am, item, new java.io.File(destRoot, item));
+            try { emitStatus("NuiEvent=" + e.name + ", code=" + e.code); } catch (Throwable ignore) {}
+            boolean errorEvent = e.name.contains("ERROR");
+            if (errorEvent) errorEvents++;
+            // 优先解析 allResponse（与官方示例一致）；流式提取，不构建 JSON DOM
+            String resp = e.payload;
+
+            if (resp != null && !resp.isEmpty()) {
+                GummyEventParser p = eventParser;
+                long t0 = System.nanoTime();
+                boolean parsed = p.parse(resp);
+                parseNs += System.nanoTime() - t0;
+                parseCount++;
+                if (!parsed) Log.w(TAG, "onNuiEvent unparseable response, len=" + resp.length());
+                String asrText = p.transcription;
+                String trText = p.translation;
+                recordLatency(p.endTime);
+                if ((asrText == null || asrText.isEmpty())) asrText = p.outputText;
+                if ((asrText == null || asrText.isEmpty())) asrText = p.anyText;
+                if (asrText != null && !asrText.isEmpty()) {
+                    try { emitStatus("transcription:" + (asrText.length()>20?asrText.substring(0,20)+"…":asrText)); } catch (Throwable ignore) {}
+                    if (config.isTranslationEnabled() && (trText == null || trText.isEmpty())) { emitTranslation(asrText); } else { emitTranscription(asrText);
+                    try { Log.i(TAG, "EXTRACT asrText=" + asrText + " (sentence " + p.sentenceId + " " + p.beginTime + "-" + p.endTime + "ms" + (p.sentenceEnd ? ", end" : "") + ")"); } catch (Throwable ignore) {} }
+                }
+                if (trText != null && !trText.isEmpty()) {
+                    try { emitStatus("translation:" + (trText.length()>20?trText.substring(0,20)+"…":trText)); } catch (Throwable ignore) {}
+                    emitTranslation(trText);
+                    try { Log.i(TAG, "EXTRACT trText=" + trText); } catch (Throwable ignore) {}
+                }
+                if (p.event != null && p.event.contains("failed")) {
+                    if (!errorEvent) errorEvents++;
+                    String em = p.errorMessage != null ? p.errorMessage : resp;
+                    emitError("SDK错误:" + em);
+                    onDialogComplete();
+                } else if (p.event != null && p.event.contains("finished")) {
+                    onDialogComplete();
                 }
-            }
-        } catch (Throwable t) {
-            try { Log.w(TAG, "copySdkAssetsIfNeeded error: " + t.getMessage()); } catch (Throwable ignore) {}
-        }
-    }
-
-    private void copyAssetDir(android.content.res.AssetManager am, String assetDir, java.io.File outDir) throws java.io.IOException {
-        String[] list = am.list(assetDir);
-        if (list == null) return;
-        if (!outDir.exists()) outDir.mkdirs();
-        for (String name : list) {
-            String path = assetDir + "/" + name;
-            String[] sub = am.list(path);
-            if (sub != null && sub.length > 0) {
-                copyAssetDir(am, path, new java.io.File(outDir, name));
             } else {
-                copyAssetFile(am, path, new java.io.File(outDir, name));
+                // 退化：常见 getter 的结果（回调线程上已取出）
+                String text = e.fallbackText;
+                if (text != null && !text.isEmpty()) {
+                    try { emitStatus("text:" + (text.length()>20?text.substring(0,20)+"…":text)); } catch (Throwable ignore) {}
+                    if (config.isTranslationEnabled()) emitTranslation(text); else emitTranscription(text);
+                }
             }
+        } catch (Throwable t) {
+            Log.w(TAG, "onNuiEvent parse error", t);
         }
+        // 会话结束（完成或出错）：末句已分发，stop 可以释放
+        if (e.name.contains("COMPLETE") || e.name.contains("ERROR")) onDialogComplete();
     }
 
-    private void copyAssetFile(android.content.res.AssetManager am, String assetName, java.io.File outFile) throws java.io.IOException {
-        // 若已存在且大小一致则跳过
-        try (java.io.InputStream in = am.open(assetName)) {
-            if (outFile.exists() && outFile.length() == in.available()) return;
-            java.io.File parent = outFile.getParentFile();
-            if (parent != null && !parent.exists()) parent.mkdirs();
-            try (java.io.OutputStream os = new java.io.FileOutputStream(outFile)) {
-                byte[] buf = new byte[8192]; int r; while ((r = in.read(buf)) != -1) os.write(buf, 0, r);
+    private void handleLogTrack(String level, String log) {
+        try { Log.d(TAG, "sdklog[" + level + "]: " + log); } catch (Throwable ignore) {}
+        try { emitStatus("SDKLog[" + level + "]: " + log); } catch (Throwable ignore) {}
+        try {
+            if (log != null) {
+                String low = log.toLowerCase();
+                if (low.contains("null sdk request")) {
+                    emitError("SDK会话未建立：请检查API Key/网络/设备时间");
+                }
             }
-        }
+        } catch (Throwable ignore) {}
     }
 
-    /** 简单线程安全环形缓冲 */
-    static final class PcmRingBuffer {
-        private final byte[] buf;
-        private int r = 0, w = 0, size = 0;
-        PcmRingBuffer(int cap) { buf = new byte[Math.max(8192, cap)]; }
-        synchronized int read(byte[] out, int off, int len) {
-            int n = Math.min(len, size);
-            for (int i = 0; i < n; i++) {
-                out[off + i] = buf[r];
-                r = (r + 1) % buf.length;
-            }
-            size -= n;
-            return n;
-        }
-        synchronized void write(byte[] in, int off, int len) {
-            int n = Math.min(len, in.length - off);
-            for (int i = 0; i < n; i++) {
-                buf[w] = in[off + i];
-                w = (w + 1) % buf.length;
-                if (size < buf.length) size++; else { // 覆盖最旧数据
-                    r = (r + 1) % buf.length;
-                }
-            }
+    // SDK 回调的原始内容：结果事件（事件名、返回码、allResponse 或退化文本）或日志（级别、文本）
+    private static final class NuiCallbackEvent {
+        final boolean log;
+        final boolean partial;
+        final String name;
+        final int code;
+        final String payload;
+        final String fallbackText;
+
+        NuiCallbackEvent(boolean log, boolean partial, String name, int code, String payload, String fallbackText) {
+            this.log = log;
+            this.partial = partial;
+            this.name = name;
+            this.code = code;
+            this.payload = payload;
+            this.fallbackText = fallbackText;
         }
     }
 
-    // 在对象上按候选key取第一个非空字符串
-    private static String firstNonEmpty(org.json.JSONObject obj, String... keys) {
-        for (String k : keys) {
-            String v = obj.optString(k, null);
-            if (v != null && !v.isEmpty() && !"null".equalsIgnoreCase(v)) return v;
-        }
-        return null;
-    }
-
-    // 深度搜索 JSON，返回第一个看起来像文本的字段
-    private static String deepFindText(org.json.JSONObject obj) {
-        java.util.Deque<Object> stack = new java.util.ArrayDeque<>();
-        stack.push(obj);
-        while (!stack.isEmpty()) {
-            Object cur = stack.pop();
-            if (cur instanceof org.json.JSONObject) {
-                org.json.JSONObject jo = (org.json.JSONObject) cur;
-                String v = firstNonEmpty(jo, "text", "result", "transcript", "display_text");
-                if (v != null && !v.isEmpty()) return v;
-                java.util.Iterator<String> it = jo.keys();
-                while (it.hasNext()) {
-                    String k = it.next();
-                    Object nv = jo.opt(k);
-                    if (nv instanceof org.json.JSONObject || nv instanceof org.json.JSONArray) stack.push(nv);
-                }
-            } else if (cur instanceof org.json.JSONArray) {
-                org.json.JSONArray arr = (org.json.JSONArray) cur;
-                for (int i = 0; i < arr.length(); i++) {
-                    Object nv = arr.opt(i);
-                    if (nv instanceof org.json.JSONObject || nv instanceof org.json.JSONArray) stack.push(nv);
-                    else if (nv instanceof String) {
-                        String sv = (String) nv;
-                        if (!sv.isEmpty() && sv.length() < 4096) return sv;
-                    }
-                }
-            }
+    // 通过反射尝试调用无参 getter，返回 String
+    private static String invokeString(Object target, String method) {
+        try {
+            java.lang.reflect.Method m = target.getClass().getMethod(method);
+            Object v = m.invoke(target);
+            return (v instanceof String) ? (String) v : (v != null ? v.toString() : null);
+        } catch (Throwable t) {
+            return null;
         }
-        return null;
     }
-    
 
     private static String mask(String key) {
         if (key == null) return "null";
@@ -59,6 +59,13 @@ public class SettingsActivity extends AppCompatActivity {
     private android.widget.RadioGroup audioSourceGroup;
     private android.widget.RadioButton sourcePlayback;
     private android.widget.RadioButton sourceMic;
+    private android.widget.RadioButton sourceBoth;
+    private android.widget.Switch aecSwitch;
+    private android.widget.Switch uplinkOpusSwitch;
+    private android.widget.Switch adaptiveUplinkSwitch;
+    private android.widget.Spinner captureScopeSpinner;
+    private EditText capturePackagesInput;
+    private android.widget.Switch captureExtraUsagesSwitch;
 
     private ConfigManager configManager;
     private EditText wsEndpointInput;
@@ -114,6 +121,13 @@ public class SettingsActivity extends AppCompatActivity {
         audioSourceGroup = findViewById(R.id.audio_source_group);
         sourcePlayback = findViewById(R.id.source_playback);
         sourceMic = findViewById(R.id.source_mic);
+        sourceBoth = findViewById(R.id.source_both);
+        aecSwitch = findViewById(R.id.aec_switch);
+        uplinkOpusSwitch = findViewById(R.id.uplink_opus_switch);
+        adaptiveUplinkSwitch = findViewById(R.id.adaptive_uplink_switch);
+        captureScopeSpinner = findViewById(R.id.capture_scope_spinner);
+        capturePackagesInput = findViewById(R.id.capture_packages_input);
+        captureExtraUsagesSwitch = findViewById(R.id.capture_extra_usages_switch);
         previewDualSwitch = findViewById(R.id.preview_dual_switch);
         displayModeGroup = findViewById(R.id.display_mode_group);
         modeBoth = findViewById(R.id.mode_both);
@@ -173,6 +187,16 @@ public class SettingsActivity extends AppCompatActivity {
         else if (mode == 1) modeTranslation.setChecked(true);
         else modeTranscript.setChecked(true);
 
+        // 系统音频捕获范围（顺序与 ConfigManager.CAPTURE_SCOPE_* 一致）
+        String[] scopes = {"全部应用", "仅列出的应用", "排除列出的应用", "跟随正在播放的应用"};
+        ArrayAdapter<String> scopeAdapter = new ArrayAdapter<>(this,
+                R.layout.spinner_item_dark, scopes);
+        scopeAdapter.setDropDownViewResource(R.layout.spinner_dropdown_item_dark);
+        captureScopeSpinner.setAdapter(scopeAdapter);
+        captureScopeSpinner.setSelection(configManager.getCaptureScope());
+        capturePackagesInput.setText(configManager.getCapturePackages());
+        captureExtraUsagesSwitch.setChecked(configManager.isCaptureExtraUsages());
+
         // 位置
         String[] positions = {"顶部", "底部"};
         ArrayAdapter<String> posAdapter = new ArrayAdapter<>(this,
@@ -276,15 +300,20 @@ public class SettingsActivity extends AppCompatActivity {
         }
 
         // 加载音频输入源
-        if (configManager.isAudioSourceMic()) {
+        if (configManager.isAudioSourceBoth()) {
+            sourceBoth.setChecked(true);
+        } else if (configManager.isAudioSourceMic()) {
             sourceMic.setChecked(true);
         } else {
             sourcePlayback.setChecked(true);
         }
+        aecSwitch.setChecked(configManager.isAecEnabled());
 
         // 高级：自定义服务地址
         String ws = configManager.getWsEndpoint();
         if (ws != null && !ws.isEmpty()) wsEndpointInput.setText(ws);
+        uplinkOpusSwitch.setChecked(configManager.getUplinkCodec() == ConfigManager.UPLINK_CODEC_OPUS);
+        adaptiveUplinkSwitch.setChecked(configManager.isAdaptiveUplink());
     }
 
     private void saveSettings() {
@@ -327,10 +356,14 @@ public class SettingsActivity extends AppCompatActivity {
         configManager.setOverlayPosition(positionSpinner.getSelectedItemPosition() == 1 ? "bottom" : "top");
 
         // 保存音频输入源
-        configManager.setAudioSource(sourceMic.isChecked() ? "mic" : "playback");
+        configManager.setAudioSource(sourceBoth.isChecked() ? "both" : sourceMic.isChecked() ? "mic" : "playback");
+        configManager.setAecEnabled(aecSwitch.isChecked());
+        saveCaptureScope();
 
         // 保存自定义服务地址
         configManager.setWsEndpoint(wsEndpointInput.getText() == null ? "" : wsEndpointInput.getText().toString().trim());
+        configManager.setUplinkCodec(uplinkOpusSwitch.isChecked() ? ConfigManager.UPLINK_CODEC_OPUS : ConfigManager.UPLINK_CODEC_PCM);
+        configManager.setAdaptiveUplink(adaptiveUplinkSwitch.isChecked());
 
         // 提示保存成功
         Toast.makeText(this, "设置已保存", Toast.LENGTH_SHORT).show();
@@ -362,12 +395,17 @@ public class SettingsActivity extends AppCompatActivity {
         configManager.setOverlayTextAlphaPercent(textAlphaSeek.getProgress());
 
         // 音频源
-        configManager.setAudioSource(sourceMic.isChecked() ? "mic" : "playback");
+        configManager.setAudioSource(sourceBoth.isChecked() ? "both" : sourceMic.isChecked() ? "mic" : "playback");
+        configManager.setAecEnabled(aecSwitch.isChecked());
+        saveCaptureScope();
         // 自定义服务地址
         configManager.setWsEndpoint(wsEndpointInput.getText() == null ? "" : wsEndpointInput.getText().toString().trim());
-        boolean useMic = configManager.isAudioSourceMic();
+        configManager.setUplinkCodec(uplinkOpusSwitch.isChecked() ? ConfigManager.UPLINK_CODEC_OPUS : ConfigManager.UPLINK_CODEC_PCM);
+        configManager.setAdaptiveUplink(adaptiveUplinkSwitch.isChecked());
+        boolean useMic = configManager.usesMicCapture();
+        boolean usePlayback = configManager.usesPlaybackCapture();
 
-        // 麦克风权限（仅在选择麦克风时检查）
+        // 麦克风权限（仅在选择麦克风/双向时检查）
         if (useMic) {
             if (ContextCompat.checkSelfPermission(this, Manifest.permission.RECORD_AUDIO)
                     != PackageManager.PERMISSION_GRANTED) {
@@ -396,8 +434,8 @@ public class SettingsActivity extends AppCompatActivity {
             return;
         }
 
-        // 若选择系统音频且还未取得屏幕捕获授权，则申请
-        if (!useMic) {
+        // 若选择系统音频（含双向）且还未取得屏幕捕获授权，则申请
+        if (usePlayback) {
             if (projectionResultCode == 0 || projectionDataIntent == null) {
                 Intent intent = projectionManager.createScreenCaptureIntent();
                 startActivityForResult(intent, REQUEST_MEDIA_PROJECTION);
@@ -416,7 +454,7 @@ public class SettingsActivity extends AppCompatActivity {
         // 启动前台识别服务
         Intent svc = new Intent(this, RecognitionService.class);
         svc.setAction(RecognitionService.ACTION_START);
-        if (!useMic) {
+        if (usePlayback) {
             svc.putExtra(RecognitionService.EXTRA_RESULT_CODE, projectionResultCode);
             svc.putExtra(RecognitionService.EXTRA_RESULT_DATA, projectionDataIntent);
         }
@@ -444,6 +482,24 @@ public class SettingsActivity extends AppCompatActivity {
         }
     }
 
+    // 保存捕获范围；选择“跟随正在播放的应用”但未授予通知使用权时，引导到系统设置页
+    private void saveCaptureScope() {
+        int previousScope = configManager.getCaptureScope();
+        configManager.setCaptureScope(captureScopeSpinner.getSelectedItemPosition());
+        configManager.setCapturePackages(capturePackagesInput.getText() == null ? "" : capturePackagesInput.getText().toString());
+        configManager.setCaptureExtraUsages(captureExtraUsagesSwitch.isChecked());
+        if (configManager.getCaptureScope() == ConfigManager.CAPTURE_SCOPE_FOLLOW
+                && !androidx.core.app.NotificationManagerCompat.getEnabledListenerPackages(this).contains(getPackageName())) {
+            Toast.makeText(this, "跟随播放应用需要授予通知使用权", Toast.LENGTH_LONG).show();
+            // 仅在切换到跟随时打开授权页，之后每次保存只提示
+            if (previousScope != ConfigManager.CAPTURE_SCOPE_FOLLOW) {
+                try {
+                    startActivity(new Intent(Settings.ACTION_NOTIFICATION_LISTENER_SETTINGS));
+                } catch (ActivityNotFoundException ignored) {}
+            }
+        }
+    }
+
     private String extractLanguageCode(String languageString) {
         // 从 "中文 (zh)" 提取 "zh"
         int start = languageString.indexOf('(');
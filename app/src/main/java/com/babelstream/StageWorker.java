@@ -0,0 +1,234 @@
+package com.babelstream;
+
+import android.util.Log;
+
+/**
+ * 有界单消费者阶段线程
+ * - 上游（如采集线程）只做 offer：入队 + notify，默认不会因下游处理慢而阻塞
+ * - 队列满时挤出最旧的可丢弃项（Handler.isDiscardable）并交给 Handler.onDropped（如释放音频帧），计入 dropped；
+ *   队列中没有可丢弃项时：设置了 maxBlockMs 则生产者最多等待这么久让消费者腾出位置（不可丢的结果事件），
+ *   仍满或未设置时挤出最旧一项。容量固定，不扩容
+ * - 消费线程按指定优先级（android.os.Process.THREAD_PRIORITY_*）运行，逐项回调 Handler.handle
+ * - 每项记录入队时刻，统计队列深度与交接延迟（入队到开始处理），便于发现下游积压
+ * 用 synchronized + wait/notify 实现：队列短、交接频率低（每帧一次），无需更复杂的无锁结构。
+ */
+final class StageWorker<T> {
+    interface Handler<T> {
+        /** 在阶段线程上处理一项；queuedNs 为入队时刻（System.nanoTime） */
+        void handle(T item, long queuedNs);
+
+        /** 队列满被挤出或停止时未处理的项（在 offer/stop 的调用线程上回调） */
+        void onDropped(T item);
+
+        /** 队列满时优先挤出的项（如非语音帧、日志）；默认全部可丢弃 */
+        default boolean isDiscardable(T item) { return true; }
+    }
+
+    private final String name;
+    private final int threadPriority;
+    private final Handler<T> handler;
+    private final long maxBlockMs;
+    private int blockedProducers = 0;
+    private final Object[] items;
+    private final long[] queuedAt;
+    private int head = 0;
+    private int count = 0;
+    private boolean running = false;
+    private Thread thread;
+
+    // 统计：仅在锁内更新
+    private long handled = 0L;
+    private long dropped = 0L;
+    private int maxDepth = 0;
+    private long maxDelayNs = 0L;
+    private long totalDelayNs = 0L;
+
+    StageWorker(String name, int capacity, int threadPriority, Handler<T> handler) {
+        this(name, capacity, threadPriority, handler, 0L);
+    }
+
+    /** maxBlockMs：队列中只剩不可丢弃项时，offer 最多阻塞这么久等消费者腾出位置，超时才挤出最旧一项 */
+    StageWorker(String name, int capacity, int threadPriority, Handler<T> handler, long maxBlockMs) {
+        this.name = name;
+        this.threadPriority = threadPriority;
+        this.handler = handler;
+        this.maxBlockMs = Math.max(0L, maxBlockMs);
+        this.items = new Object[Math.max(1, capacity)];
+        this.queuedAt = new long[items.length];
+    }
+
+    synchronized void start() {
+        if (running) return;
+        running = true;
+        thread = new Thread(this::loop, name);
+        thread.start();
+    }
+
+    /** 入队；队列满时按可丢弃性挤出一项（或短暂等待）。已停止时返回 false，调用方自行处理该项 */
+    boolean offer(T item) {
+        Object evicted = null;
+        synchronized (this) {
+            if (!running) return false;
+            if (count == items.length) {
+                int victim = oldestDiscardable();
+                if (victim < 0 && maxBlockMs > 0) {
+                    awaitSpace();
+                    if (!running) return false;
+                    if (count == items.length) victim = oldestDiscardable();
+                }
+                if (count == items.length) {
+                    if (victim < 0 && maxBlockMs > 0) Log.w(name, "queue still full of non-discardable items after " + maxBlockMs + "ms, dropping oldest");
+                    evicted = removeAt(victim < 0 ? 0 : victim);
+                    dropped++;
+                }
+            }
+            int tail = (head + count) % items.length;
+            items[tail] = item;
+            queuedAt[tail] = System.nanoTime();
+            count++;
+            if (count > maxDepth) maxDepth = count;
+            notifyAll();
+        }
+        if (evicted != null) dropItem(evicted);
+        return true;
+    }
+
+    /** 停止消费线程，未处理的项交给 onDropped */
+    void stop() {
+        Thread t;
+        Object[] rest;
+        synchronized (this) {
+            if (!running) return;
+            running = false;
+            t = thread;
+            thread = null;
+            rest = new Object[count];
+            for (int i = 0; i < count; i++) {
+                int idx = (head + i) % items.length;
+                rest[i] = items[idx];
+                items[idx] = null;
+            }
+            head = 0;
+            count = 0;
+            notifyAll();
+        }
+        if (t != null && t != Thread.currentThread()) {
+            try { t.join(1000); } catch (InterruptedException ignore) {}
+        }
+        for (Object o : rest) dropItem(o);
+    }
+
+    // 从队头起第一个可丢弃项的序号（相对 head），无则 -1（持锁调用）
+    @SuppressWarnings("unchecked")
+    private int oldestDiscardable() {
+        for (int i = 0; i < count; i++) {
+            try {
+                if (handler.isDiscardable((T) items[(head + i) % items.length])) return i;
+            } catch (Throwable t) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // 移除相对 head 的第 k 项：其前的项整体后移一格，保持先后顺序（持锁调用，仅在队列满时发生）
+    private Object removeAt(int k) {
+        int n = items.length;
+        int idx = (head + k) % n;
+        Object o = items[idx];
+        for (int i = k; i > 0; i--) {
+            int to = (head + i) % n;
+            int from = (head + i - 1) % n;
+            items[to] = items[from];
+            queuedAt[to] = queuedAt[from];
+        }
+        items[head] = null;
+        head = (head + 1) % n;
+        count--;
+        return o;
+    }
+
+    // 等待消费者取走一项，最多 maxBlockMs（持锁调用）
+    private void awaitSpace() {
+        long deadline = System.nanoTime() + maxBlockMs * 1_000_000L;
+        blockedProducers++;
+        try {
+            while (running && count == items.length) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) return;
+                try {
+                    wait(Math.max(1L, remaining / 1_000_000L));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        } finally {
+            blockedProducers--;
+        }
+    }
+
+    synchronized int depth() { return count; }
+
+    synchronized long droppedCount() { return dropped; }
+
+    /** 统计摘要（自上次重置起的最大深度/最大与平均交接延迟），只读不重置 */
+    synchronized String stats() {
+        long avgUs = handled > 0 ? totalDelayNs / handled / 1000L : 0L;
+        return name + ": depth=" + count + ", maxDepth=" + maxDepth + ", dropped=" + dropped
+                + ", handoffAvg=" + avgUs + "us, handoffMax=" + (maxDelayNs / 1000L) + "us";
+    }
+
+    /** 同 stats()，调用后重置区间统计 */
+    synchronized String statsAndReset() {
+        String s = stats();
+        handled = 0L;
+        totalDelayNs = 0L;
+        maxDelayNs = 0L;
+        maxDepth = count;
+        return s;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void loop() {
+        try {
+            android.os.Process.setThreadPriority(threadPriority);
+        } catch (Throwable t) {
+            Log.w(name, "setThreadPriority failed: " + t.getMessage());
+        }
+        for (;;) {
+            T item;
+            long queued;
+            synchronized (this) {
+                while (running && count == 0) {
+                    try { wait(); } catch (InterruptedException e) { return; }
+                }
+                if (!running) return;
+                item = (T) items[head];
+                queued = queuedAt[head];
+                items[head] = null;
+                head = (head + 1) % items.length;
+                count--;
+                if (blockedProducers > 0) notifyAll();
+                long delay = System.nanoTime() - queued;
+                handled++;
+                totalDelayNs += delay;
+                if (delay > maxDelayNs) maxDelayNs = delay;
+            }
+            try {
+                handler.handle(item, queued);
+            } catch (Throwable t) {
+                Log.w(name, "stage handler error", t);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void dropItem(Object o) {
+        try {
+            handler.onDropped((T) o);
+        } catch (Throwable t) {
+            Log.w(name, "stage drop error", t);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.babelstream;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 启动任务依赖图：各任务声明依赖，依赖全部成功即提交到启动线程池并发执行
+ * - 任务返回 false 或抛异常视为失败，依赖它的任务不再执行（记为跳过）
+ * - 记录每个任务相对图启动时刻的开始时间与耗时，report() 输出一行，便于发现冷启动回退
+ * - 超时或调用方停止时 cancel()：未开始的任务不再执行，仍在执行的任务记为放弃，
+ *   其结束后（无论成败）交给 Abandoned 释放产物，不再计入结果
+ * 任务之间的数据通过调用方字段传递；图本身只负责调度、等待与计时。
+ */
+final class StartupGraph {
+    interface Task {
+        boolean run() throws Exception;
+    }
+
+    interface Abandoned {
+        /** 被放弃的任务结束，在任务线程回调 */
+        void onAbandoned(String name);
+    }
+
+    private static final int PENDING = 0;
+    private static final int RUNNING = 1;
+    private static final int OK = 2;
+    private static final int FAILED = 3;
+    private static final int SKIPPED = 4;
+    private static final int ABANDONED = 5;
+
+    private static final class Node {
+        final String name;
+        final Task task;
+        final String[] deps;
+        int state = PENDING;
+        long startNs;
+        long endNs;
+
+        Node(String name, Task task, String[] deps) {
+            this.name = name;
+            this.task = task;
+            this.deps = deps;
+        }
+    }
+
+    private final ExecutorService executor;
+    private final Map<String, Node> nodes = new LinkedHashMap<>();
+    private long t0Ns = 0L;
+    private long endNs = 0L;
+    private int unfinished = 0;
+    private boolean cancelled = false;
+    private Abandoned abandoned;
+
+    StartupGraph(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /** 添加任务；deps 须为已添加的任务名 */
+    synchronized void add(String name, Task task, String... deps) {
+        for (String d : deps) {
+            if (!nodes.containsKey(d)) throw new IllegalArgumentException("unknown dependency " + d + " of " + name);
+        }
+        nodes.put(name, new Node(name, task, deps));
+    }
+
+    /** 启动全部任务并等待结束（或超时、被取消）；返回是否全部成功 */
+    boolean runAndWait(long timeoutMs) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutMs * 1_000_000L;
+        synchronized (this) {
+            t0Ns = System.nanoTime();
+            unfinished = nodes.size();
+            schedule();
+            while (unfinished > 0 && !cancelled) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) break;
+                wait(Math.max(1L, remaining / 1_000_000L));
+            }
+            endNs = System.nanoTime();
+            for (Node n : nodes.values()) {
+                if (n.state != OK) return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 取消：未开始的任务记为跳过，仍在执行的记为放弃，结束后交给 listener；重复调用只认第一次的 listener。
+     * 返回是否有任务被放弃。
+     */
+    synchronized boolean cancel(Abandoned listener) {
+        if (!cancelled) {
+            cancelled = true;
+            abandoned = listener;
+        }
+        boolean any = false;
+        for (Node n : nodes.values()) {
+            if (n.state == PENDING) {
+                n.state = SKIPPED;
+                unfinished--;
+            } else if (n.state == RUNNING) {
+                n.state = ABANDONED;
+                unfinished--;
+            }
+            if (n.state == ABANDONED && n.endNs == 0L) any = true;
+        }
+        notifyAll();
+        return any;
+    }
+
+    synchronized boolean succeeded(String name) {
+        Node n = nodes.get(name);
+        return n != null && n.state == OK;
+    }
+
+    /** 例：startup 820ms: mic=180ms@12 recognizer=760ms@0 playback=FAILED@40 */
+    synchronized String report() {
+        long end = endNs > 0 ? endNs : System.nanoTime();
+        StringBuilder sb = new StringBuilder("startup ").append((end - t0Ns) / 1_000_000L).append("ms:");
+        for (Node n : nodes.values()) {
+            sb.append(' ').append(n.name).append('=');
+            switch (n.state) {
+                case OK: sb.append((n.endNs - n.startNs) / 1_000_000L).append("ms"); break;
+                case FAILED: sb.append("FAILED(").append((n.endNs - n.startNs) / 1_000_000L).append("ms)"); break;
+                case SKIPPED: sb.append("SKIPPED"); continue;
+                case RUNNING: sb.append("RUNNING"); break;
+                case ABANDONED: sb.append("ABANDONED"); break;
+                default: sb.append("PENDING"); continue;
+            }
+            sb.append('@').append((n.startNs - t0Ns) / 1_000_000L);
+        }
+        return sb.toString();
+    }
+
+    // 提交依赖已满足的任务；依赖失败的级联记为跳过（持锁调用）
+    private void schedule() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (final Node n : nodes.values()) {
+                if (n.state != PENDING) continue;
+                boolean ready = true;
+                boolean blocked = false;
+                for (String d : n.deps) {
+                    int s = nodes.get(d).state;
+                    if (s == FAILED || s == SKIPPED) blocked = true;
+                    else if (s != OK) ready = false;
+                }
+                if (blocked) {
+                    n.state = SKIPPED;
+                    unfinished--;
+                    changed = true;
+                } else if (ready) {
+                    n.state = RUNNING;
+                    n.startNs = System.nanoTime();
+                    executor.execute(() -> execute(n));
+                }
+            }
+        }
+        if (unfinished <= 0) notifyAll();
+    }
+
+    private void execute(Node n) {
+        boolean ok;
+        try {
+            ok = n.task.run();
+        } catch (Throwable t) {
+            android.util.Log.w("StartupGraph", "task " + n.name + " failed", t);
+            ok = false;
+        }
+        Abandoned late = null;
+        synchronized (this) {
+            n.endNs = System.nanoTime();
+            if (n.state == ABANDONED) {
+                late = abandoned;
+            } else {
+                n.state = ok ? OK : FAILED;
+                unfinished--;
+                if (!cancelled) schedule();
+                else if (unfinished <= 0) notifyAll();
+            }
+        }
+        if (late != null) {
+            try { late.onAbandoned(n.name); } catch (Throwable ignore) {}
+        }
+    }
+}
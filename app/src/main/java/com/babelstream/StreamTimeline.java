@@ -0,0 +1,57 @@
+package com.babelstream;
+
+/**
+ * 字节流位置 → 采集时刻 的标记表（定长，只保留最近的标记）
+ * - 写入方按位置单调递增调用 mark(pos, captureNs)；captureNs 为 0 表示该段时刻未知（如补的静音）
+ * - timeAt(pos) 取不晚于 pos 的最近标记，按 PCM16 单声道字节率线性外推
+ * 识别器内用两张表：环形缓冲写位置 → 采集时刻，SDK 取走的音频流位置 → 采集时刻，
+ * 据此把识别结果的 end_time 换算回采集时刻，得到真实的“音频到字幕”延迟。
+ * 读写分属不同线程且频率低（每帧/每次取数一次），直接同步。
+ */
+final class StreamTimeline {
+    private final long[] positions;
+    private final long[] times;
+    private final int bytesPerSecond;
+    private int head = 0;  // 下一个写入槽
+    private int count = 0;
+
+    StreamTimeline(int capacity, int sampleRate) {
+        this.positions = new long[Math.max(2, capacity)];
+        this.times = new long[positions.length];
+        this.bytesPerSecond = Math.max(1, sampleRate) * 2;
+    }
+
+    synchronized void mark(long pos, long captureNs) {
+        if (count > 0) {
+            int last = (head - 1 + positions.length) % positions.length;
+            if (positions[last] == pos) { times[last] = captureNs; return; }
+            if (positions[last] > pos) return; // 位置回退：忽略
+        }
+        positions[head] = pos;
+        times[head] = captureNs;
+        head = (head + 1) % positions.length;
+        if (count < positions.length) count++;
+    }
+
+    /** pos 处样本的采集时刻；早于最旧标记或时刻未知时返回 0 */
+    synchronized long timeAt(long pos) {
+        if (count == 0) return 0L;
+        int oldest = (head - count + positions.length) % positions.length;
+        if (pos < positions[oldest]) return 0L;
+        // 二分查找最后一个 position <= pos 的标记
+        int lo = 0, hi = count - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (positions[(oldest + mid) % positions.length] <= pos) lo = mid; else hi = mid - 1;
+        }
+        int idx = (oldest + lo) % positions.length;
+        long t = times[idx];
+        if (t == 0L) return 0L;
+        return t + (pos - positions[idx]) * 1_000_000_000L / bytesPerSecond;
+    }
+
+    synchronized void clear() {
+        head = 0;
+        count = 0;
+    }
+}
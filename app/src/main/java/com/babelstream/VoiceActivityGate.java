@@ -0,0 +1,120 @@
+package com.babelstream;
+
+/**
+ * 客户端语音活动门限（VAD）
+ * 位于采集回调与识别器环形缓冲之间：只有判为语音（含拖尾）的音频才送入识别器，
+ * 非语音期间识别器进入空闲态，由 SdkGummyClient 以稀疏保活帧或挂起代替持续上传静音。
+ * 判决：以 10ms 子块为单位，结合能量（相对自适应噪声底 + 绝对下限）与过零率；
+ * 语音结束后保持 hangoverMs 的拖尾，语音开始时先补发 preRollMs 的前导音频，避免吞字。
+ * 前导音频由 PreRollBuffer 持续保存最近 preRollMs 的每一帧；按样本位置记录已送达识别器的进度，
+ * 恢复推流时先补发窗口内尚未送达的部分，再送当前帧；换上的新识别器从接管位置起接收，不与旧会话重叠。
+ */
+public final class VoiceActivityGate {
+    public static final int MODE_OFF = 0;        // 不门控：全部上传（旧行为）
+    public static final int MODE_KEEPALIVE = 1;  // 非语音期间仅发送稀疏保活帧
+    public static final int MODE_SUSPEND = 2;    // 非语音期间挂起上传，仅在长时间无数据时兜底保活
+
+    private static final float ABS_FLOOR_DB = -55f;   // 低于此电平一律视为非语音
+    private static final float MARGIN_DB = 8f;        // 高出噪声底多少视为语音
+    private static final float NOISE_RISE_DB_PER_SEC = 1.5f;
+    private static final float ZCR_MIN = 0.005f;      // 过低：直流/低频嗡声
+    private static final float ZCR_MAX = 0.6f;        // 过高：宽带嘶声
+
+    private final int mode;
+    private final int sampleRate;
+    private final int blockSamples;
+    private final int hangoverSamples;
+    private final PreRollBuffer preRoll;
+    private SdkGummyClient boundRecognizer = null;
+    private long sentUntilPos = 0L; // 已送达 boundRecognizer 的前导缓冲位置
+
+    private float noiseDb = -60f;
+    private int hangLeft = 0;
+    private volatile boolean active = true; // 首个非语音帧会将识别器切入空闲态；isActive 在其他线程读取
+
+    public VoiceActivityGate(int mode, int sampleRate, int hangoverMs, int preRollMs) {
+        this.mode = mode;
+        this.sampleRate = sampleRate > 0 ? sampleRate : 16000;
+        this.blockSamples = Math.max(1, this.sampleRate / 100);
+        this.hangoverSamples = (int) ((long) this.sampleRate * Math.max(0, hangoverMs) / 1000);
+        this.preRoll = new PreRollBuffer(this.sampleRate, preRollMs);
+    }
+
+    public int getMode() { return mode; }
+    public boolean isActive() { return active; }
+
+    /**
+     * 处理一帧：语音（含拖尾）写入识别器，非语音只留在前导缓冲。
+     * 调用方仍负责释放帧。
+     */
+    public void process(AudioFrame frame, SdkGummyClient recognizer) {
+        if (frame == null || frame.length <= 0) return;
+        // 新识别器：首个会话从前导窗口开始；链路切换换上的会话从接管位置开始，
+        // 此前的音频已送达旧会话（或为非语音），不再重复补发
+        boolean fresh = recognizer != null && recognizer != boundRecognizer;
+        if (fresh) {
+            sentUntilPos = boundRecognizer == null ? preRoll.oldestPosition() : preRoll.position();
+            boundRecognizer = recognizer;
+        }
+        // 逐帧判决始终进行：即使不门控，也用于识别器积压时区分可丢弃/压缩的非语音
+        // 拖尾内的帧同样按语音标注，积压时不会被当作非语音丢弃/压缩掉句尾
+        boolean voiced = detect(frame.samples, frame.length);
+        boolean inSpeech = voiced;
+        if (voiced) {
+            hangLeft = hangoverSamples;
+        } else if (hangLeft > 0) {
+            hangLeft -= frame.length;
+            inSpeech = true;
+        }
+        boolean speech = mode == MODE_OFF || inSpeech;
+        if (speech) {
+            boolean resumed = !active;
+            active = true;
+            if (recognizer != null) {
+                if (fresh || resumed) preRoll.flushTo(recognizer, sentUntilPos);
+                if (resumed && mode != MODE_OFF) recognizer.setStreamIdle(false);
+                recognizer.offerPcm(frame, inSpeech);
+            }
+        } else if (active) {
+            active = false;
+            if (recognizer != null) recognizer.setStreamIdle(true);
+        }
+        preRoll.append(frame);
+        if (speech && recognizer != null) sentUntilPos = preRoll.position();
+    }
+
+    // 10ms 子块逐块判决，任一子块像语音即整帧视为语音；噪声底按最安静子块跟踪
+    private boolean detect(short[] s, int n) {
+        boolean speechLike = false;
+        float quietestDb = 0f;
+        for (int start = 0; start < n; start += blockSamples) {
+            int end = Math.min(n, start + blockSamples);
+            long sum = 0;
+            int zc = 0;
+            int prev = s[start];
+            for (int i = start; i < end; i++) {
+                int v = s[i];
+                sum += (long) v * v;
+                if ((v ^ prev) < 0) zc++;
+                prev = v;
+            }
+            int len = end - start;
+            double meanSq = (double) sum / len;
+            float db = (float) (10.0 * Math.log10(meanSq / (32768.0 * 32768.0) + 1e-10));
+            float zcr = (float) zc / len;
+            if (db > ABS_FLOOR_DB && db > noiseDb + MARGIN_DB && zcr >= ZCR_MIN && zcr <= ZCR_MAX) {
+                speechLike = true;
+            }
+            if (start == 0 || db < quietestDb) quietestDb = db;
+        }
+        // 噪声底：遇到更安静的块快速下降，否则缓慢上浮，使持续背景噪声逐步被吸收
+        float frameSec = (float) n / sampleRate;
+        if (quietestDb < noiseDb) {
+            noiseDb = 0.7f * noiseDb + 0.3f * quietestDb;
+        } else {
+            noiseDb = Math.min(quietestDb, noiseDb + NOISE_RISE_DB_PER_SEC * frameSec);
+        }
+        if (noiseDb < -90f) noiseDb = -90f;
+        return speechLike;
+    }
+}
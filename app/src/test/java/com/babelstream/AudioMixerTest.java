@@ -0,0 +1,129 @@
+package com.babelstream;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class AudioMixerTest {
+
+    private static final long T0 = 1_000_000_000L;
+
+    private final AudioFrame.Pool pool = new AudioFrame.Pool(640, 8);
+    private final List<short[]> out = new ArrayList<>();
+    private final List<Integer> sources = new ArrayList<>();
+    private final List<Long> times = new ArrayList<>();
+
+    private final AudioMixer.Sink sink = (source, frame) -> {
+        sources.add(source);
+        times.add(frame.captureTimeNs);
+        out.add(java.util.Arrays.copyOf(frame.samples, frame.length));
+    };
+
+    private void push(AudioMixer mx, int source, long ns, int n, int value) {
+        AudioFrame f = pool.acquire(n);
+        java.util.Arrays.fill(f.samples, 0, n, (short) value);
+        f.length = n;
+        f.sampleRate = 16000;
+        f.captureTimeNs = ns;
+        try {
+            mx.push(source, f);
+        } finally {
+            f.release();
+        }
+    }
+
+    private short[] joined() {
+        int total = 0;
+        for (short[] s : out) total += s.length;
+        short[] all = new short[total];
+        int off = 0;
+        for (short[] s : out) {
+            System.arraycopy(s, 0, all, off, s.length);
+            off += s.length;
+        }
+        return all;
+    }
+
+    @Test
+    public void dualModeForwardsFramesAsIs() {
+        AudioMixer mx = new AudioMixer(AudioMixer.MODE_DUAL, 16000, sink);
+        push(mx, AudioMixer.SOURCE_MIC, T0, 160, 7);
+        push(mx, AudioMixer.SOURCE_PLAYBACK, T0, 160, 9);
+        assertEquals(2, out.size());
+        assertEquals(AudioMixer.SOURCE_MIC, (int) sources.get(0));
+        assertEquals(AudioMixer.SOURCE_PLAYBACK, (int) sources.get(1));
+        assertEquals(9, out.get(1)[0]);
+    }
+
+    @Test
+    public void mixesAlignedFrames() {
+        AudioMixer mx = new AudioMixer(AudioMixer.MODE_MIX, 16000, sink);
+        push(mx, AudioMixer.SOURCE_MIC, T0, 320, 100);
+        assertEquals(0, out.size());
+        push(mx, AudioMixer.SOURCE_PLAYBACK, T0, 320, 50);
+        short[] all = joined();
+        assertEquals(320, all.length);
+        assertEquals(150, all[0]);
+        assertEquals(150, all[319]);
+        assertEquals(AudioMixer.SOURCE_MIXED, (int) sources.get(0));
+        assertEquals(T0, (long) times.get(0));
+    }
+
+    @Test
+    public void alignsByCaptureTime() {
+        AudioMixer mx = new AudioMixer(AudioMixer.MODE_MIX, 16000, sink);
+        push(mx, AudioMixer.SOURCE_MIC, T0, 320, 100);
+        push(mx, AudioMixer.SOURCE_PLAYBACK, T0 + 10_000_000L, 320, 50); // 晚 160 个样本
+        short[] all = joined();
+        assertEquals(320, all.length);
+        assertEquals(100, all[159]);
+        assertEquals(150, all[160]);
+    }
+
+    @Test
+    public void saturatesSum() {
+        AudioMixer mx = new AudioMixer(AudioMixer.MODE_MIX, 16000, sink);
+        push(mx, AudioMixer.SOURCE_MIC, T0, 160, 30000);
+        push(mx, AudioMixer.SOURCE_PLAYBACK, T0, 160, 30000);
+        assertEquals(Short.MAX_VALUE, joined()[0]);
+    }
+
+    @Test
+    public void zeroCaptureTimeContinuesTheLane() {
+        AudioMixer mx = new AudioMixer(AudioMixer.MODE_MIX, 16000, sink);
+        push(mx, AudioMixer.SOURCE_MIC, T0, 320, 100);
+        push(mx, AudioMixer.SOURCE_MIC, 0L, 320, 100);
+        push(mx, AudioMixer.SOURCE_PLAYBACK, T0, 640, 50);
+        short[] all = joined();
+        assertEquals(640, all.length);
+        for (short v : all) assertEquals(150, v);
+        assertEquals(T0, (long) times.get(0));
+    }
+
+    @Test
+    public void singleLaneFlowsAfterMaxWait() {
+        AudioMixer mx = new AudioMixer(AudioMixer.MODE_MIX, 16000, sink);
+        long t = T0;
+        for (int i = 0; i < 7; i++, t += 20_000_000L) push(mx, AudioMixer.SOURCE_MIC, t, 320, 100);
+        assertEquals(0, out.size()); // 2240 样本 < 150ms
+        push(mx, AudioMixer.SOURCE_MIC, t, 320, 100);
+        assertEquals(2560, joined().length);
+    }
+
+    @Test
+    public void fillsTimestampGapWithSilence() {
+        AudioMixer mx = new AudioMixer(AudioMixer.MODE_MIX, 16000, sink);
+        push(mx, AudioMixer.SOURCE_MIC, T0, 160, 100);
+        push(mx, AudioMixer.SOURCE_MIC, T0 + 50_000_000L, 160, 100); // 缺口 40ms
+        push(mx, AudioMixer.SOURCE_PLAYBACK, T0, 960, 0);
+        short[] all = joined();
+        assertEquals(960, all.length);
+        assertEquals(100, all[159]);
+        assertEquals(0, all[160]);
+        assertEquals(0, all[799]);
+        assertEquals(100, all[800]);
+    }
+}
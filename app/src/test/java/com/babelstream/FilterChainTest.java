@@ -0,0 +1,96 @@
+package com.babelstream;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class FilterChainTest {
+
+    // 固定增益、可报告延迟、记录 reset 次数的测试滤波级
+    private static final class GainStage implements AudioFilter {
+        final float gain;
+        final int latency;
+        int resets;
+
+        GainStage(float gain, int latency) {
+            this.gain = gain;
+            this.latency = latency;
+        }
+
+        @Override public String name() { return "gain"; }
+        @Override public void process(float[] buf, int n) { for (int i = 0; i < n; i++) buf[i] *= gain; }
+        @Override public void reset() { resets++; }
+        @Override public int latencySamples() { return latency; }
+    }
+
+    private final AudioFrame.Pool pool = new AudioFrame.Pool(320, 4);
+
+    private AudioFrame frame(long captureTimeNs, int... samples) {
+        AudioFrame f = pool.acquire(samples.length);
+        for (int i = 0; i < samples.length; i++) f.samples[i] = (short) samples[i];
+        f.length = samples.length;
+        f.sampleRate = 16000;
+        f.captureTimeNs = captureTimeNs;
+        return f;
+    }
+
+    @Test
+    public void emptyChainLeavesFrameUntouched() {
+        FilterChain chain = new FilterChain(16000, Collections.<AudioFilter>emptyList());
+        AudioFrame f = frame(5L, 1, 2, 3);
+        chain.process(f);
+        assertEquals(5L, f.captureTimeNs);
+        assertEquals(2, f.samples[1]);
+        assertEquals("filters: none", chain.statsAndReset());
+    }
+
+    @Test
+    public void clipsAndRecomputesLevel() {
+        FilterChain chain = new FilterChain(16000, Arrays.<AudioFilter>asList(new GainStage(4f, 0)));
+        AudioFrame f = frame(0L, 10000, -10000, 100);
+        chain.process(f);
+        assertEquals(Short.MAX_VALUE, f.samples[0]);
+        assertEquals(Short.MIN_VALUE, f.samples[1]);
+        assertEquals(400, f.samples[2]);
+        long sum = 32767L * 32767 + 32768L * 32768 + 400 * 400;
+        assertEquals(sum, f.sumSquares);
+        assertEquals(LevelMeter.percentFromSumSquares(sum, 3), f.level);
+    }
+
+    @Test
+    public void shiftsCaptureTimeByTotalLatency() {
+        List<AudioFilter> stages = new ArrayList<>();
+        stages.add(new GainStage(1f, 160));
+        stages.add(new GainStage(1f, 96));
+        FilterChain chain = new FilterChain(16000, stages);
+        AudioFrame f = frame(1_000_000_000L, new int[160]);
+        chain.process(f);
+        assertEquals(1_000_000_000L - 16_000_000L, f.captureTimeNs);
+
+        AudioFrame unknown = frame(0L, new int[160]);
+        chain.process(unknown);
+        assertEquals(0L, unknown.captureTimeNs);
+    }
+
+    @Test
+    public void resetsStagesOnCaptureDiscontinuity() {
+        GainStage stage = new GainStage(1f, 0);
+        FilterChain chain = new FilterChain(16000, Arrays.<AudioFilter>asList(stage));
+        long t = 1_000_000_000L;
+        for (int i = 0; i < 5; i++) {
+            chain.process(frame(t, new int[160]));
+            t += 10_000_000L + (i % 2 == 0 ? 3_000_000L : -3_000_000L); // 小抖动视为连续
+        }
+        assertEquals(0, stage.resets);
+        t += 500_000_000L; // 换设备/暂停后恢复
+        chain.process(frame(t, new int[160]));
+        assertEquals(1, stage.resets);
+        chain.process(frame(t + 10_000_000L, new int[160]));
+        assertEquals(1, stage.resets);
+    }
+}
@@ -0,0 +1,95 @@
+package com.babelstream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/** 高通、限幅、AGC 各级的基本特性 */
+public class FilterStagesTest {
+
+    private static float[] sine(int n, double hz, double amp) {
+        float[] s = new float[n];
+        for (int i = 0; i < n; i++) s[i] = (float) (amp * Math.sin(2 * Math.PI * hz * i / 16000.0));
+        return s;
+    }
+
+    private static void run(AudioFilter f, float[] buf) {
+        float[] chunk = new float[160];
+        for (int off = 0; off < buf.length; off += 160) {
+            int n = Math.min(160, buf.length - off);
+            System.arraycopy(buf, off, chunk, 0, n);
+            f.process(chunk, n);
+            System.arraycopy(chunk, 0, buf, off, n);
+        }
+    }
+
+    private static float peak(float[] buf, int from, int to) {
+        float p = 0f;
+        for (int i = from; i < to; i++) p = Math.max(p, Math.abs(buf[i]));
+        return p;
+    }
+
+    private static double rmsDbfs(float[] buf, int from, int to) {
+        double e = 0;
+        for (int i = from; i < to; i++) e += (double) buf[i] * buf[i];
+        return 10 * Math.log10(e / (to - from) / (32768.0 * 32768.0));
+    }
+
+    @Test
+    public void highPassRemovesDcAndKeepsVoiceBand() {
+        float[] dc = new float[8000];
+        java.util.Arrays.fill(dc, 1000f);
+        HighPassFilter hp = new HighPassFilter(16000, 80);
+        run(hp, dc);
+        assertTrue(peak(dc, 7000, 8000) < 1f);
+
+        float[] tone = sine(8000, 1000, 10000);
+        run(new HighPassFilter(16000, 80), tone);
+        assertEquals(10000f, peak(tone, 4000, 8000), 200f);
+    }
+
+    @Test
+    public void highPassResetClearsState() {
+        HighPassFilter hp = new HighPassFilter(16000, 80);
+        run(hp, sine(1600, 50, 20000));
+        hp.reset();
+        float[] silence = new float[160];
+        hp.process(silence, silence.length);
+        assertEquals(0f, peak(silence, 0, silence.length), 0f);
+    }
+
+    @Test
+    public void limiterCapsPeaksAndPassesQuietAudio() {
+        float[] loud = sine(8000, 440, 40000);
+        run(new PeakLimiter(16000), loud);
+        assertTrue(peak(loud, 0, loud.length) <= 32767f * 0.89f + 1f);
+
+        float[] quiet = sine(1600, 440, 1000);
+        float[] in = quiet.clone();
+        run(new PeakLimiter(16000), quiet);
+        for (int i = 0; i < quiet.length; i++) assertEquals(in[i], quiet[i], 0f);
+    }
+
+    @Test
+    public void agcRaisesQuietSpeechTowardTarget() {
+        float[] s = sine(16000, 300, 2606); // 约 -25dBFS
+        run(new AutomaticGainControl(16000), s);
+        assertEquals(-20.0, rmsDbfs(s, 12000, 16000), 1.0);
+    }
+
+    @Test
+    public void agcLowersLoudInputWithinLimit() {
+        float[] s = sine(16000, 300, 26000); // 约 -5dBFS
+        run(new AutomaticGainControl(16000), s);
+        assertEquals(-15.0, rmsDbfs(s, 8000, 16000), 1.0); // 增益下限 -10dB
+    }
+
+    @Test
+    public void agcLeavesAudioBelowGateUntouched() {
+        float[] s = sine(16000, 300, 30); // 约 -64dBFS
+        float[] in = s.clone();
+        run(new AutomaticGainControl(16000), s);
+        for (int i = 0; i < s.length; i++) assertEquals(in[i], s[i], 1e-3f);
+    }
+}
@@ -0,0 +1,145 @@
+package com.babelstream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class GummyEventParserTest {
+
+    private final GummyEventParser parser = new GummyEventParser();
+
+    @Test
+    public void extractsTranscriptionAndTranslations() {
+        String json = "{\"header\":{\"event\":\"result-generated\",\"task_id\":\"t1\"},"
+                + "\"payload\":{\"output\":{"
+                + "\"transcription\":{\"sentence_id\":3,\"begin_time\":1200,\"end_time\":2400,"
+                + "\"text\":\"你好\",\"sentence_end\":true},"
+                + "\"translations\":[{\"lang\":\"en\",\"text\":\"Hello\"},{\"lang\":\"en\",\"text\":\" there\"}]}}}";
+        assertTrue(parser.parse(json));
+        assertEquals("result-generated", parser.event);
+        assertEquals("你好", parser.transcription);
+        assertEquals(3L, parser.sentenceId);
+        assertEquals(1200L, parser.beginTime);
+        assertEquals(2400L, parser.endTime);
+        assertTrue(parser.sentenceEnd);
+        assertEquals("Hello there", parser.translation);
+        assertNull(parser.errorMessage);
+    }
+
+    @Test
+    public void decodesEscapes() {
+        String json = "{\"payload\":{\"output\":{\"transcription\":"
+                + "{\"text\":\"a\\\"b\\\\c\\/d\\ne\\tf\\u4e2d\\u6587\"}}}}";
+        assertTrue(parser.parse(json));
+        assertEquals("a\"b\\c/d\ne\tf中文", parser.transcription);
+    }
+
+    @Test
+    public void escapedQuoteDoesNotEndKeyOrValue() {
+        String json = "{\"x\\\"y\":\"v\\\"}\",\"payload\":{\"output\":{\"text\":\"ok\"}}}";
+        assertTrue(parser.parse(json));
+        assertEquals("ok", parser.outputText);
+    }
+
+    @Test
+    public void prefersTextThenResultThenTranscript() {
+        assertTrue(parser.parse("{\"payload\":{\"output\":{\"transcription\":"
+                + "{\"transcript\":\"c\",\"result\":\"b\",\"text\":\"a\"}}}}"));
+        assertEquals("a", parser.transcription);
+
+        // 空串与 "null" 不算值，回退到下一候选
+        assertTrue(parser.parse("{\"payload\":{\"output\":{\"transcription\":"
+                + "{\"text\":\"\",\"result\":\"null\",\"transcript\":\"c\"}}}}"));
+        assertEquals("c", parser.transcription);
+
+        assertTrue(parser.parse("{\"payload\":{\"output\":{\"translations\":"
+                + "[{\"translation\":\"z\",\"result\":\"y\"},{\"translation\":\"x\"}]}}}"));
+        assertEquals("yx", parser.translation);
+    }
+
+    @Test
+    public void skipsNestedValuesOutsideTargetFields() {
+        String json = "{\"header\":{\"attributes\":{\"event\":\"nested\"},\"event\":\"result-generated\"},"
+                + "\"payload\":{\"usage\":{\"duration\":[1,2.5,-3e2,{\"text\":\"deep\"}],\"ok\":false,\"n\":null},"
+                + "\"output\":{\"transcription\":{\"words\":[{\"text\":\"w1\",\"begin_time\":5}],"
+                + "\"text\":\"sentence\",\"begin_time\":-12.5E3}}}}";
+        assertTrue(parser.parse(json));
+        assertEquals("result-generated", parser.event);
+        assertEquals("sentence", parser.transcription);
+        assertEquals(-12L, parser.beginTime); // 小数与指数部分跳过
+        assertFalse(parser.sentenceEnd);
+        // 兜底文本取第一个出现的像文本字段，即使在无关层级
+        assertEquals("deep", parser.anyText);
+    }
+
+    @Test
+    public void fallsBackToOutputAndAnyText() {
+        assertTrue(parser.parse("{\"payload\":{\"output\":{\"result\":\"r\",\"text\":\"t\"}}}"));
+        assertNull(parser.transcription);
+        assertEquals("t", parser.outputText);
+
+        assertTrue(parser.parse("{\"data\":{\"list\":[\"first\",\"second\"]}}"));
+        assertNull(parser.outputText);
+        assertEquals("first", parser.anyText);
+
+        assertTrue(parser.parse("{\"a\":{\"b\":{\"display_text\":\"shown\"}}}"));
+        assertEquals("shown", parser.anyText);
+    }
+
+    @Test
+    public void extractsErrorMessage() {
+        assertTrue(parser.parse("{\"header\":{\"event\":\"task-failed\",\"error_code\":\"X\","
+                + "\"error_message\":\"bad \\\"key\\\"\"}}"));
+        assertEquals("task-failed", parser.event);
+        assertEquals("bad \"key\"", parser.errorMessage);
+    }
+
+    @Test
+    public void invalidInputReturnsFalseAndKeepsExtractedFields() {
+        assertFalse(parser.parse(null));
+        assertFalse(parser.parse("not json"));
+        assertFalse(parser.parse("{\"header\":{\"event\":\"result-generated\"},\"payload\":{\"output\""));
+        assertEquals("result-generated", parser.event);
+    }
+
+    @Test
+    public void resetsFieldsBetweenParses() {
+        assertTrue(parser.parse("{\"header\":{\"event\":\"e\"},\"payload\":{\"output\":{\"transcription\":"
+                + "{\"text\":\"a\",\"sentence_id\":1,\"sentence_end\":true},\"translations\":[{\"text\":\"b\"}]}}}"));
+        assertTrue(parser.parse("{}"));
+        assertNull(parser.event);
+        assertNull(parser.transcription);
+        assertNull(parser.translation);
+        assertNull(parser.anyText);
+        assertEquals(-1L, parser.sentenceId);
+        assertFalse(parser.sentenceEnd);
+    }
+
+    public static final class FieldResult {
+        public String allResponse = "{\"f\":1}";
+    }
+
+    public static final class GetterResult {
+        public String getAllResponse() { return "{\"g\":1}"; }
+    }
+
+    @Test
+    public void readsAllResponseByFieldOrGetter() {
+        assertEquals("{\"f\":1}", GummyEventParser.allResponseOf(new FieldResult()));
+        assertEquals("{\"g\":1}", GummyEventParser.allResponseOf(new GetterResult()));
+        assertEquals("{\"f\":1}", GummyEventParser.allResponseOf(new FieldResult()));
+        assertNull(GummyEventParser.allResponseOf(new Object()));
+        assertNull(GummyEventParser.allResponseOf(null));
+    }
+
+    @Test
+    public void detectsSentenceEndWithoutParsing() {
+        assertTrue(GummyEventParser.isSentenceEnd("{\"transcription\":{\"text\":\"a\",\"sentence_end\" : true}}"));
+        assertFalse(GummyEventParser.isSentenceEnd("{\"transcription\":{\"text\":\"a\",\"sentence_end\":false}}"));
+        assertFalse(GummyEventParser.isSentenceEnd("{\"text\":\"\\\"sentence_end\\\"\"}"));
+        assertFalse(GummyEventParser.isSentenceEnd(null));
+    }
+}
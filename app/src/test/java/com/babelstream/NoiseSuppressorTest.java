@@ -0,0 +1,88 @@
+package com.babelstream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class NoiseSuppressorTest {
+
+    private static void run(NoiseSuppressor ns, float[] buf, int block) {
+        float[] chunk = new float[block];
+        for (int off = 0; off < buf.length; off += block) {
+            int n = Math.min(block, buf.length - off);
+            System.arraycopy(buf, off, chunk, 0, n);
+            ns.process(chunk, n);
+            System.arraycopy(chunk, 0, buf, off, n);
+        }
+    }
+
+    private static double energy(float[] buf, int from, int to) {
+        double e = 0;
+        for (int i = from; i < to; i++) e += (double) buf[i] * buf[i];
+        return e;
+    }
+
+    @Test
+    public void latencyIsOneFullFrame() {
+        assertEquals(256, new NoiseSuppressor(16000).latencySamples());
+        assertEquals(512, new NoiseSuppressor(32000).latencySamples());
+    }
+
+    @Test
+    public void impulseAfterDigitalSilencePassesUnattenuated() {
+        NoiseSuppressor ns = new NoiseSuppressor(16000);
+        float[] buf = new float[16000];
+        buf[8000] = 1000f;
+        run(ns, buf, 160);
+        int at = 8000 + ns.latencySamples();
+        assertEquals(1000f, buf[at], 1f);
+        for (int i = 0; i < buf.length; i++) {
+            if (i != at) assertEquals(0f, buf[i], 1f);
+        }
+    }
+
+    @Test
+    public void attenuatesStationaryNoise() {
+        NoiseSuppressor ns = new NoiseSuppressor(16000);
+        Random r = new Random(1);
+        float[] buf = new float[16000 * 3];
+        for (int i = 0; i < buf.length; i++) buf[i] = (float) (r.nextGaussian() * 300);
+        float[] in = buf.clone();
+        run(ns, buf, 160);
+        int lat = ns.latencySamples();
+        double ratio = energy(buf, 16000 + lat, buf.length) / energy(in, 16000, buf.length - lat);
+        assertTrue("noise reduced by " + 10 * Math.log10(ratio) + "dB", 10 * Math.log10(ratio) < -6);
+    }
+
+    @Test
+    public void keepsToneAboveNoise() {
+        NoiseSuppressor ns = new NoiseSuppressor(16000);
+        Random r = new Random(2);
+        float[] buf = new float[16000 * 3];
+        for (int i = 0; i < buf.length; i++) {
+            buf[i] = (float) (r.nextGaussian() * 100);
+            if (i >= 32000) buf[i] += (float) (5000 * Math.sin(2 * Math.PI * 1000 * i / 16000.0));
+        }
+        float[] in = buf.clone();
+        run(ns, buf, 160);
+        int lat = ns.latencySamples();
+        double ratio = energy(buf, 40000 + lat, buf.length) / energy(in, 40000, buf.length - lat);
+        assertEquals(0.0, 10 * Math.log10(ratio), 1.0);
+    }
+
+    @Test
+    public void resetClearsState() {
+        NoiseSuppressor ns = new NoiseSuppressor(16000);
+        float[] noise = new float[8000];
+        Random r = new Random(3);
+        for (int i = 0; i < noise.length; i++) noise[i] = (float) (r.nextGaussian() * 1000);
+        run(ns, noise, 160);
+        ns.reset();
+        float[] silence = new float[4000];
+        run(ns, silence, 160);
+        assertEquals(0.0, energy(silence, 0, silence.length), 0.0);
+    }
+}
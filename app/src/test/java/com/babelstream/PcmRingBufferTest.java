@@ -0,0 +1,139 @@
+package com.babelstream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PcmRingBufferTest {
+
+    private static byte[] seq(int n, int start) {
+        byte[] b = new byte[n];
+        for (int i = 0; i < n; i++) b[i] = (byte) (start + i);
+        return b;
+    }
+
+    private static byte[] read(PcmRingBuffer rb, int n) {
+        byte[] out = new byte[n];
+        assertEquals(n, rb.read(out, 0, n));
+        return out;
+    }
+
+    @Test
+    public void capacityIsPowerOfTwoAtLeast8k() {
+        assertEquals(8192, new PcmRingBuffer(100).capacity());
+        assertEquals(8192, new PcmRingBuffer(8192).capacity());
+        assertEquals(16384, new PcmRingBuffer(8193).capacity());
+    }
+
+    @Test
+    public void bytesWrapAroundTheEnd() {
+        PcmRingBuffer rb = new PcmRingBuffer(8192);
+        rb.write(seq(6000, 0), 0, 6000);
+        read(rb, 6000);
+        byte[] in = seq(5000, 7);
+        rb.write(in, 0, 5000); // 跨过数组末尾
+        assertEquals(5000, rb.available());
+        assertArrayEquals(in, read(rb, 5000));
+        assertEquals(11000L, rb.writePosition());
+        assertEquals(11000L, rb.readPosition());
+    }
+
+    @Test
+    public void samplesAreLittleEndianAndWrap() {
+        PcmRingBuffer rb = new PcmRingBuffer(8192);
+        rb.write(new byte[8190], 0, 8190);
+        read(rb, 8190);
+        rb.write(new short[] { 0x0102, -2, 0x7fff }, 0, 3); // 首个样本在末尾，其余回绕到开头
+        assertArrayEquals(new byte[] { 0x02, 0x01, (byte) 0xfe, (byte) 0xff, (byte) 0xff, 0x7f }, read(rb, 6));
+    }
+
+    @Test
+    public void shortWriteHonoursOffsetAndCount() {
+        PcmRingBuffer rb = new PcmRingBuffer(8192);
+        rb.write(new short[] { 9, 1, 2, 9 }, 1, 2);
+        assertArrayEquals(new byte[] { 1, 0, 2, 0 }, read(rb, 4));
+    }
+
+    @Test
+    public void oddByteWritesStayAligned() {
+        PcmRingBuffer rb = new PcmRingBuffer(8192);
+        byte[] in = seq(8, 1);
+        rb.write(in, 1, 5); // 奇数长度：末字节舍去
+        assertEquals(4L, rb.writePosition());
+        rb.write(new short[] { 0x0a0b }, 0, 1);
+        assertArrayEquals(new byte[] { 2, 3, 4, 5, 0x0b, 0x0a }, read(rb, 6));
+        rb.write(in, 7, 1); // 不足一个样本：不写入
+        assertEquals(6L, rb.writePosition());
+    }
+
+    @Test
+    public void oddReadsDoNotDisturbWriter() {
+        PcmRingBuffer rb = new PcmRingBuffer(8192);
+        rb.write(new short[] { 1, 2, 3 }, 0, 3);
+        assertArrayEquals(new byte[] { 1, 0, 2 }, read(rb, 3));
+        rb.write(new short[] { 4 }, 0, 1);
+        assertArrayEquals(new byte[] { 0, 3, 0, 4, 0 }, read(rb, 5));
+    }
+
+    @Test
+    public void overflowDropsOldestAndCountsOverrun() {
+        PcmRingBuffer rb = new PcmRingBuffer(8192);
+        rb.write(seq(8000, 0), 0, 8000);
+        rb.write(seq(300, 0), 0, 300);
+        assertEquals(108L, rb.overrunBytes());
+        assertEquals(8192, rb.available());
+        assertEquals(108L, rb.readPosition());
+        byte[] out = read(rb, 8192);
+        assertEquals((byte) 108, out[0]);
+        assertEquals((byte) 299, out[8191]);
+    }
+
+    @Test
+    public void oversizedWriteKeepsNewestCapacity() {
+        PcmRingBuffer rb = new PcmRingBuffer(8192);
+        byte[] in = seq(10000, 0);
+        rb.write(in, 0, in.length);
+        assertEquals(8192, rb.available());
+        byte[] out = read(rb, 8192);
+        assertEquals(in[10000 - 8192], out[0]);
+        assertEquals(in[9999], out[8191]);
+    }
+
+    @Test
+    public void clearDropsUnread() {
+        PcmRingBuffer rb = new PcmRingBuffer(8192);
+        rb.write(seq(100, 0), 0, 100);
+        rb.clear();
+        assertEquals(0, rb.available());
+        assertEquals(0, rb.read(new byte[10], 0, 10));
+    }
+
+    @Test
+    public void blockingReadTimesOutWithPartialData() {
+        PcmRingBuffer rb = new PcmRingBuffer(8192);
+        rb.write(seq(10, 0), 0, 10);
+        long t0 = System.nanoTime();
+        assertEquals(10, rb.read(new byte[64], 0, 64, 30));
+        assertTrue((System.nanoTime() - t0) / 1_000_000L >= 25);
+    }
+
+    @Test
+    public void blockingReadWakesOnWrite() throws Exception {
+        final PcmRingBuffer rb = new PcmRingBuffer(8192);
+        Thread producer = new Thread(() -> {
+            try { Thread.sleep(20); } catch (InterruptedException ignore) {}
+            rb.write(seq(32, 0), 0, 32);
+            try { Thread.sleep(20); } catch (InterruptedException ignore) {}
+            rb.write(seq(32, 32), 0, 32);
+        });
+        producer.start();
+        byte[] out = new byte[64];
+        long t0 = System.nanoTime();
+        assertEquals(64, rb.read(out, 0, 64, 2000));
+        assertTrue((System.nanoTime() - t0) / 1_000_000L < 1000);
+        assertArrayEquals(seq(64, 0), out);
+        producer.join();
+    }
+}
@@ -0,0 +1,116 @@
+package com.babelstream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PolyphaseResamplerTest {
+
+    private static short[] sine(int n, int rate, double hz, double amp) {
+        short[] s = new short[n];
+        for (int i = 0; i < n; i++) s[i] = (short) Math.round(amp * Math.sin(2 * Math.PI * hz * i / rate));
+        return s;
+    }
+
+    // 分块送入，返回全部输出
+    private static short[] run(PolyphaseResampler rs, short[] in, int block) {
+        short[] all = new short[rs.maxOutput(in.length) + in.length / block + 16];
+        short[] chunk = new short[block];
+        short[] out = new short[rs.maxOutput(block)];
+        int total = 0;
+        for (int off = 0; off < in.length; off += block) {
+            int n = Math.min(block, in.length - off);
+            System.arraycopy(in, off, chunk, 0, n);
+            int got = rs.process(chunk, n, out);
+            assertTrue(got <= rs.maxOutput(n));
+            System.arraycopy(out, 0, all, total, got);
+            total += got;
+        }
+        return java.util.Arrays.copyOf(all, total);
+    }
+
+    private static double peak(short[] s, int from) {
+        int p = 0;
+        for (int i = from; i < s.length; i++) p = Math.max(p, Math.abs(s[i]));
+        return p;
+    }
+
+    @Test
+    public void passthroughCopiesAndSumsSquares() {
+        PolyphaseResampler rs = new PolyphaseResampler(16000, 16000, PolyphaseResampler.QUALITY_MEDIUM);
+        assertTrue(rs.isPassthrough());
+        short[] out = new short[4];
+        assertEquals(3, rs.process(new short[] { 3, -4, 5 }, 3, out));
+        assertArrayEquals(new short[] { 3, -4, 5, 0 }, out);
+        assertEquals(50L, rs.lastSumSquares());
+    }
+
+    @Test
+    public void downmixIsTheSameInPassthroughAndResampling() {
+        short[] quad = new short[4 * 4800];
+        for (int i = 0; i < quad.length; i += 4) {
+            quad[i] = 100; quad[i + 1] = 200; quad[i + 2] = 300; quad[i + 3] = 400;
+        }
+        PolyphaseResampler same = new PolyphaseResampler(48000, 48000, PolyphaseResampler.QUALITY_MEDIUM);
+        short[] a = new short[4800];
+        assertEquals(4800, same.processInterleaved(quad, 4800, 4, a));
+        assertEquals(250, a[100]);
+
+        PolyphaseResampler down = new PolyphaseResampler(48000, 16000, PolyphaseResampler.QUALITY_MEDIUM);
+        short[] b = new short[down.maxOutput(4800)];
+        int n = down.processInterleaved(quad, 4800, 4, b);
+        assertTrue(n > 1000);
+        assertEquals(250, b[n - 1], 2);
+
+        short[] stereo = { 100, 301, -7, 8 };
+        short[] c = new short[2];
+        same.processInterleaved(stereo, 2, 2, c);
+        assertEquals(200, c[0]);
+        assertEquals(0, c[1]);
+    }
+
+    @Test
+    public void integerDecimationKeepsRateAndAmplitude() {
+        PolyphaseResampler rs = new PolyphaseResampler(48000, 16000, PolyphaseResampler.QUALITY_MEDIUM);
+        short[] in = sine(48000, 48000, 1000, 10000);
+        short[] out = run(rs, in, 480);
+        assertEquals(16000, out.length, 1);
+        assertEquals(10000, peak(out, 1000), 300);
+    }
+
+    @Test
+    public void rationalRatioKeepsRateAndAmplitude() {
+        PolyphaseResampler rs = new PolyphaseResampler(44100, 16000, PolyphaseResampler.QUALITY_HIGH);
+        short[] in = sine(44100, 44100, 1000, 10000);
+        short[] out = run(rs, in, 441);
+        assertEquals(16000, out.length, 2);
+        assertEquals(10000, peak(out, 1000), 300);
+    }
+
+    @Test
+    public void upsamplingKeepsRate() {
+        PolyphaseResampler rs = new PolyphaseResampler(8000, 16000, PolyphaseResampler.QUALITY_LOW);
+        short[] out = run(rs, sine(8000, 8000, 500, 8000), 160);
+        assertEquals(16000, out.length, 2);
+        assertEquals(8000, peak(out, 1000), 400);
+    }
+
+    @Test
+    public void rejectsAboveNyquistWhenDecimating() {
+        PolyphaseResampler rs = new PolyphaseResampler(48000, 16000, PolyphaseResampler.QUALITY_HIGH);
+        short[] out = run(rs, sine(48000, 48000, 12000, 10000), 480);
+        assertTrue(peak(out, 1000) < 500);
+    }
+
+    @Test
+    public void resetClearsHistory() {
+        PolyphaseResampler rs = new PolyphaseResampler(48000, 16000, PolyphaseResampler.QUALITY_MEDIUM);
+        run(rs, sine(4800, 48000, 1000, 20000), 480);
+        rs.reset();
+        short[] out = run(rs, new short[4800], 480);
+        assertEquals(0, peak(out, 0), 0);
+        assertEquals(0L, rs.lastSumSquares());
+    }
+}